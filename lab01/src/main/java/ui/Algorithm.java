@@ -15,17 +15,59 @@ public enum Algorithm {
 	UCS("UCS"),
 	
 	/** A* heuristic algorithm. */
-	ASTAR("A-STAR");
+	ASTAR("A-STAR", true),
+	
+	/** Bidirectional breadth-first search algorithm. */
+	BIBFS("BIBFS"),
+	
+	/** Bidirectional uniform-cost search algorithm. */
+	BIUCS("BIUCS"),
+	
+	/** Iterative deepening A* heuristic algorithm. */
+	IDASTAR("IDA-STAR", true),
+	
+	/** Simplified memory-bounded A* heuristic algorithm. */
+	SMASTAR("SMA-STAR", true),
+	
+	/** Hash distributed parallel A* heuristic algorithm. */
+	HDASTAR("HDA-STAR", true),
+	
+	/** Anytime repairing A* heuristic algorithm. */
+	ARASTAR("ARA-STAR", true),
+	
+	/** Parallel level-synchronous, direction-optimizing breadth-first search algorithm. */
+	PBFS("PBFS"),
+	
+	/** Beam search algorithm, which keeps a fixed number of states with the best heuristic in each level. */
+	BEAM("BEAM", true),
+	
+	/** Greedy best-first search algorithm with a fixed number of open states. */
+	GREEDY("GREEDY", true),
+	
+	/** Jump point search algorithm for grid maps. */
+	JPS("JPS", true);
 
 	/** Name of the algorithm. */
 	private String name;
+	/** Flag that marks if algorithm uses heuristic function. */
+	private boolean heuristic;
 	
 	/**
 	 * Sets algorithm name.
 	 * @param name
 	 */
 	Algorithm(String name) {
+		this(name, false);
+	}
+	
+	/**
+	 * Sets algorithm name and marks if it uses heuristic function.
+	 * @param name
+	 * @param heuristic
+	 */
+	Algorithm(String name, boolean heuristic) {
 		this.name = name;
+		this.heuristic = heuristic;
 	}
 	
 	/**
@@ -34,4 +76,24 @@ public enum Algorithm {
 	String getName() {
 		return name;
 	}
+	
+	/**
+	 * @return <code>true</code> if algorithm uses heuristic function, otherwise <code>false</code>
+	 */
+	boolean isHeuristic() {
+		return heuristic;
+	}
+	
+	/**
+	 * Finds algorithm by its command line option, which is its constant name in any case.
+	 * @param option command line option, for example <code>astar</code>
+	 * @return found algorithm
+	 * @throws IllegalArgumentException if there is no such algorithm
+	 */
+	static Algorithm parse(String option) {
+		for(Algorithm a : values()) {
+			if(a.name().equalsIgnoreCase(option)) return a;
+		}
+		throw new IllegalArgumentException("Wrong algorithm: " + option);
+	}
 }
@@ -0,0 +1,257 @@
+package ui;
+
+import java.util.Arrays;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Class is used to search the state graph with anytime repairing A* (ARA*).<br>
+ * Search starts as weighted A* with heuristic values multiplied by the given weight, which finds
+ * a path quickly, and then repeats the search with lower weights until the weight is 1 or the
+ * deadline passes. Each repetition keeps prices found so far, and continues from open states and
+ * from closed states which were reached cheaper after they were expanded, so it expands only the
+ * states whose prices can still improve. Goal is tested when a state is reached, and each found
+ * path comes with a bound on how many times its cost can be greater than the cost of the cheapest
+ * path, which holds if heuristic is optimistic. States without heuristic value are treated as
+ * having value 0.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class AnytimeSearch {
+	
+	/** Amount by which the weight is decreased after each search. */
+	public static final double WEIGHT_STEP = 0.5;
+	
+	/** Graph to search. */
+	private StateGraph graph;
+	/** Number of states expanded by the last search. */
+	private int visited;
+	/** Bound on suboptimality of the path found by the last search. */
+	private double bound = Double.NaN;
+	
+	/** Price of each state, <code>Infinity</code> if state wasn't reached. */
+	private double[] price;
+	/** Parent of each reached state, <code>-1</code> for the initial state. */
+	private int[] parent;
+	/** Flags marking states expanded in the current repetition. */
+	private boolean[] closed;
+	/** Flags marking closed states reached cheaper in the current repetition. */
+	private boolean[] incons;
+	/** Ids of reached states, in the order they were reached. */
+	private int[] reached;
+	/** Number of reached states. */
+	private int reachedCount;
+	/** Open states ordered by price increased by weighted heuristic. */
+	private IndexedHeap open;
+	/** Goal state reached with the lowest price, <code>-1</code> if none was reached. */
+	private int best;
+	
+	/**
+	 * Constructor creates new search over given graph.
+	 * 
+	 * @param graph to search
+	 */
+	public AnytimeSearch(StateGraph graph) {
+		this.graph = graph;
+	}
+	
+	/**
+	 * @return number of states expanded by the last search
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * @return bound on suboptimality of the path found by the last search, <code>NaN</code> if no path was found
+	 */
+	public double getBound() {
+		return bound;
+	}
+	
+	/**
+	 * Searches with ARA*. The first search isn't stopped by the deadline, so a path is found if
+	 * there is one. Every later search which finds a cheaper path or proves a lower bound reports
+	 * its path, and the last reported path is returned.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @param weight initial weight of the heuristic, at least 1
+	 * @param deadline value of {@link System#nanoTime()} after which no new search is started
+	 * @param improved receives each found path with its bound on suboptimality
+	 * @return ids of states on the found path, or <code>null</code> if there is no path
+	 * @throws IllegalArgumentException if weight is lower than 1
+	 */
+	public int[] araStar(int init, boolean[] goal, double weight, long deadline, ObjDoubleConsumer<int[]> improved) {
+		if(!(weight >= 1.0))
+			throw new IllegalArgumentException("Weight must be at least 1, was " + weight + ".");
+		
+		int n = graph.size();
+		price = new double[n];
+		parent = new int[n];
+		closed = new boolean[n];
+		incons = new boolean[n];
+		reached = new int[1 << 10];
+		reachedCount = 0;
+		open = new IndexedHeap(n);
+		Arrays.fill(price, Double.POSITIVE_INFINITY);
+		visited = 0;
+		bound = Double.NaN;
+		best = -1;
+		
+		reach(init, 0.0, -1);
+		if(goal[init]) {
+			visited = 1;
+			bound = 1.0;
+			int[] path = {init};
+			improved.accept(path, bound);
+			return path;
+		}
+		
+		double eps = weight;
+		open.add(init, eps * h(init));
+		improve(goal, eps, Long.MAX_VALUE);
+		if(best < 0) return null;
+		
+		int[] path = path(best);
+		bound = Math.min(eps, suboptimality());
+		improved.accept(path, bound);
+		
+		while(bound > 1.0 && System.nanoTime() < deadline) {
+			eps = Math.max(1.0, eps - WEIGHT_STEP);
+			reopen(eps);
+			double cost = price[best];
+			boolean finished = improve(goal, eps, deadline);
+			
+			double next;
+			if(finished) {
+				next = Math.min(eps, suboptimality());
+			} else if(price[best] < cost) {
+				next = bound * price[best] / cost;
+			} else {
+				break;
+			}
+			if(price[best] < cost || next < bound) {
+				path = path(best);
+				bound = Math.min(bound, next);
+				improved.accept(path, bound);
+			}
+			if(!finished) break;
+		}
+		return path;
+	}
+	
+	/**
+	 * Helper method that expands open states until no open state has lower key than the best
+	 * reached goal state. Goal states are not expanded, since paths through them can't reach
+	 * another goal state cheaper.
+	 * 
+	 * @param goal flags marking goal states
+	 * @param eps weight of the heuristic
+	 * @param deadline value of {@link System#nanoTime()} after which the search stops, checked only after a goal is reached
+	 * @return <code>true</code> if the search finished, <code>false</code> if the deadline passed
+	 */
+	private boolean improve(boolean[] goal, double eps, long deadline) {
+		while(!open.isEmpty()) {
+			int s = open.peek();
+			if(best >= 0 && open.key(s) >= price[best] + eps * h(best)) break;
+			open.poll();
+			closed[s] = true;
+			visited++;
+			if(goal[s]) continue;
+			if(best >= 0 && (visited & 0x3FF) == 0 && System.nanoTime() >= deadline) return false;
+			
+			for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+				int t = graph.succState(e);
+				double p = price[s] + graph.succCost(e);
+				if(p >= price[t]) continue;
+				
+				reach(t, p, s);
+				if(goal[t] && (best < 0 || p < price[best])) best = t;
+				if(closed[t]) {
+					incons[t] = true;
+				} else if(open.contains(t)) {
+					open.decreaseKey(t, p + eps * h(t));
+				} else {
+					open.add(t, p + eps * h(t));
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Helper method that prepares the next search: open states and closed states reached
+	 * cheaper after they were expanded are opened with keys for the new weight, and all
+	 * other states are no longer closed.
+	 * 
+	 * @param eps new weight of the heuristic
+	 */
+	private void reopen(double eps) {
+		for(int i = 0; i < reachedCount; i++) {
+			int s = reached[i];
+			if(incons[s]) closed[s] = false;
+		}
+		open.clear();
+		for(int i = 0; i < reachedCount; i++) {
+			int s = reached[i];
+			if(!closed[s]) open.add(s, price[s] + eps * h(s));
+			closed[s] = false;
+			incons[s] = false;
+		}
+	}
+	
+	/**
+	 * Helper method that computes the bound on suboptimality of the best reached goal, dividing
+	 * its price by the lowest price increased by heuristic of the open and inconsistent states,
+	 * which is not greater than the cost of the cheapest path.
+	 * 
+	 * @return bound on suboptimality
+	 */
+	private double suboptimality() {
+		double lower = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < reachedCount; i++) {
+			int s = reached[i];
+			if(open.contains(s) || incons[s]) lower = Math.min(lower, price[s] + h(s));
+		}
+		if(lower >= price[best]) return 1.0;
+		return lower > 0.0 ? price[best] / lower : Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Helper method that records price and parent of the reached state.
+	 * 
+	 * @param s id of the state
+	 * @param p price of the state
+	 * @param from parent of the state, <code>-1</code> if there is none
+	 */
+	private void reach(int s, double p, int from) {
+		if(price[s] == Double.POSITIVE_INFINITY) {
+			if(reachedCount == reached.length) reached = Arrays.copyOf(reached, 2 * reachedCount);
+			reached[reachedCount++] = s;
+		}
+		price[s] = p;
+		parent[s] = from;
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return ids of states on the path from the initial state to the state
+	 */
+	private int[] path(int s) {
+		int length = 0;
+		for(int p = s; p >= 0; p = parent[p]) length++;
+		int[] path = new int[length];
+		for(int p = s, i = length - 1; p >= 0; p = parent[p]) path[i--] = p;
+		return path;
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return heuristic value of the state, or 0 if it is not defined
+	 */
+	private double h(int s) {
+		return graph.hasHeuristic(s) ? graph.heuristic(s) : 0.0;
+	}
+	
+}
@@ -0,0 +1,255 @@
+package ui;
+
+/**
+ * Class is used to search the state graph with beam search or greedy best-first search whose
+ * frontier has a fixed size.<br>
+ * Both searches choose states only by their heuristic values, and prefer the state with the lower
+ * id when the values are equal. Beam search expands the states of the beam one level at a time,
+ * and keeps only the given number of best successors as the next beam. Greedy best-first search
+ * always expands the best open state, and when the open list is full, drops its worst state to
+ * make room for a better one. Each state is reached at most once, so dropped states are not
+ * reached again and the searches may miss a path that exists. Found paths are not necessarily the
+ * cheapest ones. States without heuristic value are treated as having value 0.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class BeamSearch {
+	
+	/** Graph to search. */
+	private StateGraph graph;
+	/** Number of states expanded by the last search. */
+	private int visited;
+	/** Number of reached states which the last search dropped from the frontier. */
+	private long pruned;
+	
+	/** Parent of each reached state, <code>-1</code> for the initial state. */
+	private int[] parent;
+	/** Flags marking reached states. */
+	private boolean[] reached;
+	
+	/**
+	 * Constructor creates new search over given graph.
+	 * 
+	 * @param graph to search
+	 */
+	public BeamSearch(StateGraph graph) {
+		this.graph = graph;
+	}
+	
+	/**
+	 * @return number of states expanded by the last search
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * @return number of reached states which the last search dropped from the frontier
+	 */
+	public long getPruned() {
+		return pruned;
+	}
+	
+	/**
+	 * Searches level by level, keeping only the best states of each level.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @param width maximal number of states in one level
+	 * @return ids of states on the found path, or <code>null</code> if no path was found
+	 * @throws IllegalArgumentException if width is lower than 1
+	 */
+	public int[] beam(int init, boolean[] goal, int width) {
+		Frontier beam = prepare(init, width);
+		Frontier next = new Frontier(width);
+		beam.add(init, heuristic(init));
+		
+		while(!beam.isEmpty()) {
+			next.clear();
+			while(!beam.isEmpty()) {
+				int s = beam.poll();
+				visited++;
+				if(goal[s]) return path(s);
+				
+				for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+					int t = graph.succState(e);
+					if(reached[t]) continue;
+					reached[t] = true;
+					parent[t] = s;
+					if(!next.add(t, heuristic(t))) pruned++;
+				}
+			}
+			Frontier done = beam;
+			beam = next;
+			next = done;
+		}
+		return null;
+	}
+	
+	/**
+	 * Searches greedily by heuristic, keeping at most the given number of open states.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @param width maximal number of open states
+	 * @return ids of states on the found path, or <code>null</code> if no path was found
+	 * @throws IllegalArgumentException if width is lower than 1
+	 */
+	public int[] greedy(int init, boolean[] goal, int width) {
+		Frontier open = prepare(init, width);
+		open.add(init, heuristic(init));
+		
+		while(!open.isEmpty()) {
+			int s = open.poll();
+			visited++;
+			if(goal[s]) return path(s);
+			
+			for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+				int t = graph.succState(e);
+				if(reached[t]) continue;
+				reached[t] = true;
+				parent[t] = s;
+				if(!open.add(t, heuristic(t))) pruned++;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Helper method that prepares arrays for the next search.
+	 * 
+	 * @param init id of the initial state
+	 * @param width capacity of the frontier
+	 * @return empty frontier of given capacity
+	 * @throws IllegalArgumentException if width is lower than 1
+	 */
+	private Frontier prepare(int init, int width) {
+		if(width < 1)
+			throw new IllegalArgumentException("Beam width must be at least 1, was " + width + ".");
+		int n = graph.size();
+		parent = new int[n];
+		reached = new boolean[n];
+		visited = 0;
+		pruned = 0;
+		parent[init] = -1;
+		reached[init] = true;
+		return new Frontier(width);
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return heuristic value of the state, 0 if it has none
+	 */
+	private double heuristic(int s) {
+		return graph.hasHeuristic(s) ? graph.heuristic(s) : 0.0;
+	}
+	
+	/**
+	 * Helper method that finds the path to the state by following parents.
+	 * 
+	 * @param s id of the reached state
+	 * @return ids of states on the path from the initial state to the state
+	 */
+	private int[] path(int s) {
+		int length = 0;
+		for(int p = s; p >= 0; p = parent[p]) length++;
+		int[] path = new int[length];
+		for(int p = s, i = length - 1; p >= 0; p = parent[p]) path[i--] = p;
+		return path;
+	}
+	
+	/**
+	 * Class models frontier of fixed capacity, kept in primitive arrays sorted from the worst state
+	 * to the best one. Best state is removed from the end, and the worst one is dropped from the
+	 * start, so only states before the position of an added state are moved.
+	 */
+	private static class Frontier {
+		
+		/** Ids of states, from the worst to the best. */
+		private final int[] states;
+		/** Heuristic values of states. */
+		private final double[] keys;
+		/** Number of states in the frontier. */
+		private int size;
+		
+		/**
+		 * @param capacity maximal number of states
+		 */
+		Frontier(int capacity) {
+			states = new int[capacity];
+			keys = new double[capacity];
+		}
+		
+		/**
+		 * @return <code>true</code> if frontier has no states, otherwise <code>false</code>
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}
+		
+		/**
+		 * Removes all states.
+		 */
+		void clear() {
+			size = 0;
+		}
+		
+		/**
+		 * Removes the best state.
+		 * 
+		 * @return id of the removed state
+		 */
+		int poll() {
+			return states[--size];
+		}
+		
+		/**
+		 * Adds the state, dropping the worst state if frontier is full.
+		 * 
+		 * @param s id of the state
+		 * @param key heuristic value of the state
+		 * @return <code>true</code> if no state was dropped, otherwise <code>false</code>
+		 */
+		boolean add(int s, double key) {
+			int lo = 0;
+			int hi = size;
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if(better(s, key, states[mid], keys[mid])) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			
+			if(size < states.length) {
+				System.arraycopy(states, lo, states, lo + 1, size - lo);
+				System.arraycopy(keys, lo, keys, lo + 1, size - lo);
+				size++;
+				states[lo] = s;
+				keys[lo] = key;
+				return true;
+			}
+			if(lo == 0) return false;
+			System.arraycopy(states, 1, states, 0, lo - 1);
+			System.arraycopy(keys, 1, keys, 0, lo - 1);
+			states[lo - 1] = s;
+			keys[lo - 1] = key;
+			return false;
+		}
+		
+		/**
+		 * @param s id of the first state
+		 * @param key heuristic value of the first state
+		 * @param t id of the second state
+		 * @param other heuristic value of the second state
+		 * @return <code>true</code> if the first state should be expanded before the second one
+		 */
+		private static boolean better(int s, double key, int t, double other) {
+			int c = Double.compare(key, other);
+			return c < 0 || c == 0 && s < t;
+		}
+	}
+	
+}
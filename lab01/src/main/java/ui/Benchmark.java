@@ -0,0 +1,389 @@
+package ui;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Program which measures throughput and allocation of searches and checks on reproducible
+ * synthetic state spaces, see {@link SyntheticGraph}.<br>
+ * Each benchmark runs a number of warmup iterations which are not measured, and then a number of
+ * measured iterations, each with new search or check objects. Throughput is the number of expanded
+ * nodes per second, or the number of checked states per second for checks. Allocation is read from
+ * the thread which runs the iteration, so parallel checks are not measured.<br>
+ * Results are printed as one JSON line per benchmark, and also appended to a file if it is given,
+ * so files of different commits can be compared with <code>--compare</code>.<br>
+ * Use parameters:<br>
+ * --graph grid/geometric/puzzle (grid by default)<br>
+ * --size grid_width/number_of_points/puzzle_width (300, 100000 and 3 by default)<br>
+ * --branching 4_or_8/nearest_points/random_walk_steps (4, 6 and 40 by default)<br>
+ * --obstacles fraction_of_blocked_cells (for grid, 0 by default)<br>
+ * --seed seed_of_the_random_generator (1 by default)<br>
+ * --alg comma_separated_algorithms (bfs,ucs,astar by default)<br>
+ * --check (also benchmark checks of the heuristic)<br>
+ * --limit number_of_checked_states (for checks of puzzle)<br>
+ * --warmup number_of_warmup_iterations (3 by default)<br>
+ * --iterations number_of_measured_iterations (5 by default)<br>
+ * --out path_to_results (append results to the file)<br>
+ * --compare path_to_baseline (print change of throughput and allocation against results in the file)<br>
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class Benchmark {
+	
+	/** Bean used to read allocated bytes of the current thread, <code>null</code> if it is not supported. */
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+	/** Pattern which reads one number field of a result line. */
+	private static final Pattern FIELD = Pattern.compile("\"([a-z_]+)\":(-?[0-9.]+)");
+	/** Pattern which reads id of a result line. */
+	private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]*)\"");
+	
+	/** State space of graph benchmarks, <code>null</code> for puzzle. */
+	private StateSpace ss;
+	/** Generated state space of puzzle benchmarks, <code>null</code> for graphs. */
+	private StateGenerator generator;
+	/** Description of the state space, used as a part of the id of each benchmark. */
+	private String space;
+	/** Number of checked states of the generated state space. */
+	private int limit = Check.DEFAULT_LIMIT;
+	/** Number of warmup iterations. */
+	private int warmup = 3;
+	/** Number of measured iterations. */
+	private int iterations = 5;
+	
+	/**
+	 * Constructor creates benchmarks of a state space.
+	 * 
+	 * @param ss state space to benchmark
+	 * @param space description of the state space
+	 */
+	public Benchmark(StateSpace ss, String space) {
+		this.ss = ss;
+		this.space = space;
+	}
+	
+	/**
+	 * Constructor creates benchmarks of a generated state space.
+	 * 
+	 * @param generator of the state space to benchmark
+	 * @param space description of the state space
+	 */
+	public Benchmark(StateGenerator generator, String space) {
+		this.generator = generator;
+		this.space = space;
+	}
+	
+	/**
+	 * @param limit number of checked states of the generated state space
+	 */
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+	
+	/**
+	 * @param warmup number of warmup iterations
+	 * @param iterations number of measured iterations
+	 * @throws IllegalArgumentException if there are no measured iterations or number of warmup iterations is negative
+	 */
+	public void setIterations(int warmup, int iterations) {
+		if(warmup < 0 || iterations < 1)
+			throw new IllegalArgumentException("Benchmark needs at least 1 iteration and no negative warmup, was "
+					+ warmup + " and " + iterations + ".");
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+	
+	/**
+	 * Measures the search algorithm.
+	 * 
+	 * @param algorithm to run
+	 * @return result as one JSON line
+	 */
+	public String search(Algorithm algorithm) {
+		return measure(algorithm.getName(), () -> {
+			Search search = generator != null ? new Search(generator, algorithm) : new Search(ss, algorithm);
+			search.runAlgorithm();
+			return search.getMetrics();
+		});
+	}
+	
+	/**
+	 * Measures the check of the heuristic. Output of the check is discarded.
+	 * 
+	 * @param consistent <code>true</code> to check consistency, <code>false</code> to check optimism
+	 * @return result as one JSON line
+	 */
+	public String check(boolean consistent) {
+		return measure(consistent ? "HEURISTIC-CONSISTENT" : "HEURISTIC-OPTIMISTIC", () -> {
+			Check check = generator != null ? new Check(generator, limit, true) : new Check(ss, false, true);
+			PrintStream out = System.out;
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			try {
+				if(consistent) {
+					check.checkConsistent();
+				} else {
+					check.checkOptimistic();
+				}
+			} finally {
+				System.setOut(out);
+			}
+			return check.getMetrics();
+		});
+	}
+	
+	/**
+	 * Helper method that runs warmup and measured iterations of the run.
+	 * 
+	 * @param name of the search or check
+	 * @param run one iteration, returning its metrics
+	 * @return result as one JSON line
+	 */
+	private String measure(String name, Run run) {
+		for(int i = 0; i < warmup; i++) {
+			run.run();
+		}
+		
+		double[] throughput = new double[iterations];
+		long operations = 0;
+		long nanos = 0;
+		long allocated = 0;
+		for(int i = 0; i < iterations; i++) {
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			SearchMetrics metrics = run.run();
+			long time = System.nanoTime() - start;
+			allocated += allocatedBytes() - bytes;
+			nanos += time;
+			operations = metrics.getExpanded();
+			throughput[i] = operations * 1e9 / Math.max(1, time);
+		}
+		Arrays.sort(throughput);
+		
+		double mean = 0;
+		for(double t : throughput) {
+			mean += t / iterations;
+		}
+		double deviation = 0;
+		for(double t : throughput) {
+			deviation += (t - mean) * (t - mean) / iterations;
+		}
+		
+		StringBuilder sb = new StringBuilder(512);
+		sb.append("{\"id\":\"").append(name).append(' ').append(space).append('"');
+		sb.append(",\"warmup\":").append(warmup);
+		sb.append(",\"iterations\":").append(iterations);
+		sb.append(",\"expanded\":").append(operations);
+		field(sb, "expansions_per_sec", mean);
+		field(sb, "expansions_per_sec_min", throughput[0]);
+		field(sb, "expansions_per_sec_median", throughput[iterations / 2]);
+		field(sb, "expansions_per_sec_max", throughput[iterations - 1]);
+		field(sb, "expansions_per_sec_stdev", Math.sqrt(deviation));
+		field(sb, "ms_per_op", nanos / 1e6 / iterations);
+		if(THREADS != null) {
+			field(sb, "alloc_bytes_per_op", (double) allocated / iterations);
+			field(sb, "alloc_mb_per_sec", allocated / 1048576.0 * 1e9 / Math.max(1, nanos));
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+	
+	/**
+	 * Helper method that appends number field to the JSON object.
+	 * 
+	 * @param sb JSON object
+	 * @param key of the field
+	 * @param value of the field
+	 */
+	private static void field(StringBuilder sb, String key, double value) {
+		sb.append(",\"").append(key).append("\":").append(String.format(Locale.ROOT, "%.3f", value));
+	}
+	
+	/**
+	 * @return bytes allocated by the current thread, or 0 if it can't be measured
+	 */
+	private static long allocatedBytes() {
+		return THREADS == null ? 0L : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/**
+	 * @return bean which measures allocation of threads, or <code>null</code> if it is not supported
+	 */
+	private static com.sun.management.ThreadMXBean threads() {
+		if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return null;
+		var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if(!threads.isThreadAllocatedMemorySupported()) return null;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+	
+	/**
+	 * Compares results with the baseline results of the same ids and prints change of mean
+	 * throughput and allocation for each of them.
+	 * 
+	 * @param results result lines
+	 * @param baselinePath path to the baseline results
+	 * @throws IOException if baseline can't be read
+	 */
+	private static void compare(List<String> results, String baselinePath) throws IOException {
+		Map<String, String> baseline = new HashMap<>();
+		for(String line : Files.readAllLines(Path.of(baselinePath), StandardCharsets.UTF_8)) {
+			Matcher m = ID.matcher(line);
+			if(m.find()) baseline.put(m.group(1), line);
+		}
+		
+		for(String line : results) {
+			Matcher m = ID.matcher(line);
+			if(!m.find()) continue;
+			String id = m.group(1);
+			String old = baseline.get(id);
+			if(old == null) {
+				System.out.println("# " + id + " [NEW]");
+				continue;
+			}
+			Map<String, Double> before = fields(old);
+			Map<String, Double> after = fields(line);
+			System.out.printf(Locale.ROOT, "# %s [EXPANSIONS_PER_SEC]: %+.1f%% [ALLOC_BYTES_PER_OP]: %+.1f%%%n", id,
+					change(before.get("expansions_per_sec"), after.get("expansions_per_sec")),
+					change(before.get("alloc_bytes_per_op"), after.get("alloc_bytes_per_op")));
+		}
+	}
+	
+	/**
+	 * @param line result line
+	 * @return number fields of the line
+	 */
+	private static Map<String, Double> fields(String line) {
+		Map<String, Double> fields = new HashMap<>();
+		Matcher m = FIELD.matcher(line);
+		while(m.find()) {
+			fields.put(m.group(1), Double.parseDouble(m.group(2)));
+		}
+		return fields;
+	}
+	
+	/**
+	 * @param before baseline value, <code>null</code> if it is missing
+	 * @param after new value, <code>null</code> if it is missing
+	 * @return relative change in percents, or <code>NaN</code> if it can't be computed
+	 */
+	private static double change(Double before, Double after) {
+		if(before == null || after == null || before == 0) return Double.NaN;
+		return 100.0 * (after - before) / before;
+	}
+	
+	public static void main(String[] args) {
+		String graph = "grid";
+		int size = -1;
+		int branching = -1;
+		double obstacles = 0;
+		long seed = 1;
+		String algorithms = "bfs,ucs,astar";
+		boolean check = false;
+		int limit = Check.DEFAULT_LIMIT;
+		int warmup = 3;
+		int iterations = 5;
+		String outPath = null;
+		String comparePath = null;
+		
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "--graph" -> graph = args[++i];
+			case "--size" -> size = Integer.parseInt(args[++i]);
+			case "--branching" -> branching = Integer.parseInt(args[++i]);
+			case "--obstacles" -> obstacles = Double.parseDouble(args[++i]);
+			case "--seed" -> seed = Long.parseLong(args[++i]);
+			case "--alg" -> algorithms = args[++i];
+			case "--check" -> check = true;
+			case "--limit" -> limit = Integer.parseInt(args[++i]);
+			case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+			case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+			case "--out" -> outPath = args[++i];
+			case "--compare" -> comparePath = args[++i];
+			}
+		}
+		
+		Benchmark benchmark = switch(graph) {
+		case "grid" -> {
+			size = size < 0 ? 300 : size;
+			branching = branching < 0 ? 4 : branching;
+			String space = String.format(Locale.ROOT, "grid-%d-%d-%.2f-%d", size, branching, obstacles, seed);
+			yield new Benchmark(SyntheticGraph.grid(size, branching, obstacles, seed), space);
+		}
+		case "geometric" -> {
+			size = size < 0 ? 100_000 : size;
+			branching = branching < 0 ? 6 : branching;
+			String space = "geometric-" + size + "-" + branching + "-" + seed;
+			yield new Benchmark(SyntheticGraph.geometric(size, branching, seed), space);
+		}
+		case "puzzle" -> {
+			size = size < 0 ? 3 : size;
+			branching = branching < 0 ? 40 : branching;
+			String space = "puzzle-" + size + "-" + branching + "-" + seed;
+			yield new Benchmark(SyntheticGraph.puzzle(size, branching, seed), space);
+		}
+		default -> throw new IllegalArgumentException("Wrong graph: " + graph);
+		};
+		benchmark.setLimit(limit);
+		benchmark.setIterations(warmup, iterations);
+		
+		List<String> results = new ArrayList<>();
+		for(String option : algorithms.split(",")) {
+			if(option.isBlank()) continue;
+			results.add(benchmark.search(Algorithm.parse(option.trim())));
+			System.out.println(results.get(results.size() - 1));
+		}
+		if(check) {
+			results.add(benchmark.check(false));
+			System.out.println(results.get(results.size() - 1));
+			results.add(benchmark.check(true));
+			System.out.println(results.get(results.size() - 1));
+		}
+		
+		try {
+			if(outPath != null) {
+				try(BufferedWriter out = Files.newBufferedWriter(Path.of(outPath), StandardCharsets.UTF_8,
+						StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+					for(String line : results) {
+						out.write(line);
+						out.newLine();
+					}
+				}
+			}
+			if(comparePath != null) {
+				compare(results, comparePath);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * One measured iteration.
+	 */
+	@FunctionalInterface
+	private interface Run {
+		
+		/**
+		 * Runs the iteration.
+		 * 
+		 * @return metrics of the iteration
+		 */
+		SearchMetrics run();
+	}
+	
+}
@@ -0,0 +1,231 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Class is used to search the state graph from the initial state forward and from the goal
+ * states backward at the same time, until the two searches meet.<br>
+ * Backward search runs over the reversed graph, starting from all goal states at once.
+ * Breadth-first variant finds a path with the fewest transitions, and uniform-cost variant
+ * finds the cheapest path.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class BidirectionalSearch {
+	
+	/** Graph to search. */
+	private StateGraph graph;
+	/** Graph with reversed transitions. */
+	private StateGraph reversed;
+	/** Number of states expanded by the last search, in either direction. */
+	private int visited;
+	
+	/**
+	 * Constructor creates new search over given graph.
+	 * 
+	 * @param graph to search
+	 */
+	public BidirectionalSearch(StateGraph graph) {
+		this.graph = graph;
+		this.reversed = graph.reverse();
+	}
+	
+	/**
+	 * @return number of states expanded by the last search, in either direction
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * Searches for the path with the fewest transitions. Searches expand whole levels, always
+	 * on the side with the smaller frontier, and stop after the first level in which they meet.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @return ids of states on the found path, or <code>null</code> if there is no path
+	 */
+	public int[] bfs(int init, boolean[] goal) {
+		int n = graph.size();
+		visited = 1;
+		if(goal[init]) return new int[] {init};
+		
+		int[] depthF = new int[n];
+		int[] depthB = new int[n];
+		int[] parentF = new int[n];
+		int[] parentB = new int[n];
+		Arrays.fill(depthF, -1);
+		Arrays.fill(depthB, -1);
+		boolean[] expanded = new boolean[n];
+		visited = 0;
+		
+		int[] frontF = {init};
+		int sizeF = 1;
+		depthF[init] = 0;
+		parentF[init] = -1;
+		int[] frontB = new int[16];
+		int sizeB = 0;
+		for(int i = 0; i < n; i++) {
+			if(!goal[i]) continue;
+			if(sizeB == frontB.length) frontB = Arrays.copyOf(frontB, 2 * sizeB);
+			frontB[sizeB++] = i;
+			depthB[i] = 0;
+			parentB[i] = -1;
+		}
+		
+		int[] next = new int[16];
+		while(sizeF > 0 && sizeB > 0) {
+			boolean forward = sizeF <= sizeB;
+			StateGraph g = forward ? graph : reversed;
+			int[] front = forward ? frontF : frontB;
+			int size = forward ? sizeF : sizeB;
+			int[] depth = forward ? depthF : depthB;
+			int[] other = forward ? depthB : depthF;
+			int[] parent = forward ? parentF : parentB;
+			
+			int best = Integer.MAX_VALUE;
+			int meetFrom = -1;
+			int meetTo = -1;
+			int nextSize = 0;
+			for(int i = 0; i < size; i++) {
+				int s = front[i];
+				if(!expanded[s]) {
+					expanded[s] = true;
+					visited++;
+				}
+				for(int e = g.succStart(s), end = g.succEnd(s); e < end; e++) {
+					int t = g.succState(e);
+					if(other[t] >= 0 && depth[s] + 1 + other[t] < best) {
+						best = depth[s] + 1 + other[t];
+						meetFrom = s;
+						meetTo = t;
+					}
+					if(depth[t] < 0) {
+						depth[t] = depth[s] + 1;
+						parent[t] = s;
+						if(nextSize == next.length) next = Arrays.copyOf(next, 2 * nextSize);
+						next[nextSize++] = t;
+					}
+				}
+			}
+			
+			if(meetFrom >= 0) {
+				return forward ? join(parentF, meetFrom, parentB, meetTo) : join(parentF, meetTo, parentB, meetFrom);
+			}
+			
+			int[] tmp = front;
+			if(forward) {
+				frontF = next;
+				sizeF = nextSize;
+			} else {
+				frontB = next;
+				sizeB = nextSize;
+			}
+			next = tmp;
+		}
+		return null;
+	}
+	
+	/**
+	 * Searches for the cheapest path, expanding the side with fewer open states. Search stops
+	 * when the sum of the lowest open prices on both sides is not lower than the cheapest path
+	 * found through a state reached from both sides.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @return ids of states on the found path, or <code>null</code> if there is no path
+	 */
+	public int[] ucs(int init, boolean[] goal) {
+		int n = graph.size();
+		visited = 1;
+		if(goal[init]) return new int[] {init};
+		
+		double[] priceF = new double[n];
+		double[] priceB = new double[n];
+		int[] parentF = new int[n];
+		int[] parentB = new int[n];
+		Arrays.fill(priceF, Double.POSITIVE_INFINITY);
+		Arrays.fill(priceB, Double.POSITIVE_INFINITY);
+		boolean[] closedF = new boolean[n];
+		boolean[] closedB = new boolean[n];
+		IndexedHeap openF = new IndexedHeap(n);
+		IndexedHeap openB = new IndexedHeap(n);
+		visited = 0;
+		
+		priceF[init] = 0.0;
+		parentF[init] = -1;
+		openF.add(init, 0.0);
+		for(int i = 0; i < n; i++) {
+			if(!goal[i]) continue;
+			priceB[i] = 0.0;
+			parentB[i] = -1;
+			openB.add(i, 0.0);
+		}
+		
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+		while(!openF.isEmpty() && !openB.isEmpty()) {
+			if(openF.key(openF.peek()) + openB.key(openB.peek()) >= best) break;
+			
+			boolean forward = openF.size() <= openB.size();
+			StateGraph g = forward ? graph : reversed;
+			IndexedHeap open = forward ? openF : openB;
+			double[] price = forward ? priceF : priceB;
+			double[] other = forward ? priceB : priceF;
+			int[] parent = forward ? parentF : parentB;
+			boolean[] closed = forward ? closedF : closedB;
+			
+			int s = open.poll();
+			closed[s] = true;
+			if(!(forward ? closedB : closedF)[s]) visited++;
+			for(int e = g.succStart(s), end = g.succEnd(s); e < end; e++) {
+				int t = g.succState(e);
+				double p = price[s] + g.succCost(e);
+				if(closed[t] || p >= price[t]) continue;
+				
+				price[t] = p;
+				parent[t] = s;
+				if(open.contains(t)) {
+					open.decreaseKey(t, p);
+				} else {
+					open.add(t, p);
+				}
+				if(p + other[t] < best) {
+					best = p + other[t];
+					meet = t;
+				}
+			}
+		}
+		
+		return meet < 0 ? null : join(parentF, meet, parentB, meet);
+	}
+	
+	/**
+	 * Helper method that joins path found by the forward search with the path found by the backward search.
+	 * 
+	 * @param parentF parents in the forward search
+	 * @param last last state of the forward path
+	 * @param parentB parents in the backward search, which are next states on the path to the goal
+	 * @param first first state of the backward path, skipped if it is the same as the last state of the forward path
+	 * @return ids of states on the joined path
+	 */
+	private static int[] join(int[] parentF, int last, int[] parentB, int first) {
+		int length = 0;
+		for(int s = last; s >= 0; s = parentF[s]) length++;
+		int start = first == last ? parentB[first] : first;
+		for(int s = start; s >= 0; s = parentB[s]) length++;
+		
+		int[] path = new int[length];
+		int i = 0;
+		for(int s = last; s >= 0; s = parentF[s]) path[i++] = s;
+		for(int l = 0, r = i - 1; l < r; l++, r--) {
+			int tmp = path[l];
+			path[l] = path[r];
+			path[r] = tmp;
+		}
+		for(int s = start; s >= 0; s = parentB[s]) path[i++] = s;
+		return path;
+	}
+	
+}
@@ -0,0 +1,231 @@
+package ui;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Class models monotone bucket queue of state ids (Dial's algorithm) for integer keys.<br>
+ * Keys of states in the queue are never lower than the key of the last removed state nor
+ * greater than it by more than the maximal transition cost, which holds for uniform cost search
+ * with non-negative integer costs. States are kept in a circular array of buckets, one for each
+ * key in that range, so finding the next key doesn't depend on the number of states. Each bucket
+ * is a small binary heap of state ids, so states with equal keys come out ordered by their ids,
+ * the same way they do from {@link IndexedHeap}. Decreasing a key adds the state to its new
+ * bucket and leaves the old entry, which is skipped when it is reached.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class BucketQueue implements StateQueue {
+	
+	/** Greatest maximal transition cost for which bucket queue is used. */
+	public static final int MAX_COST = 1 << 16;
+	
+	/** Heap of state ids in each bucket, <code>null</code> until the bucket is used. */
+	private int[][] buckets;
+	/** Number of entries in each bucket. */
+	private int[] counts;
+	/** Key of each state. */
+	private double[] keys;
+	/** Flags marking states which are in the queue. */
+	private boolean[] queued;
+	/** Number of states in the queue. */
+	private int size;
+	/** Key of the current bucket, which is the key of the last removed state or lower. */
+	private long base;
+	/** Index of the current bucket. */
+	private int cursor;
+	/** Flag marking that the current bucket was set by the first added state. */
+	private boolean started;
+	
+	/**
+	 * Constructor creates empty queue for states with ids lower than given capacity.
+	 * 
+	 * @param capacity number of states
+	 * @param maxCost maximal difference between key of an added state and key of the last removed state
+	 * @throws IllegalArgumentException if maximal cost is negative or greater than {@link #MAX_COST}
+	 */
+	public BucketQueue(int capacity, int maxCost) {
+		if(maxCost < 0 || maxCost > MAX_COST)
+			throw new IllegalArgumentException("Maximal cost must be from 0 to " + MAX_COST + ", was " + maxCost + ".");
+		buckets = new int[maxCost + 1][];
+		counts = new int[maxCost + 1];
+		keys = new double[capacity];
+		queued = new boolean[capacity];
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * @return number of states in the queue
+	 */
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean contains(int state) {
+		return state < queued.length && queued[state];
+	}
+	
+	/**
+	 * @param state id of the state
+	 * @return key of the state
+	 */
+	public double key(int state) {
+		return keys[state];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalArgumentException if state is already in the queue, or key is not an integer
+	 * in the range of the current bucket and the buckets after it
+	 */
+	@Override
+	public void add(int state, double key) {
+		if(state >= queued.length) grow(state + 1);
+		if(contains(state))
+			throw new IllegalArgumentException("State " + state + " is already in the queue.");
+		if(!started) {
+			check(key, key);
+			base = (long) key;
+			cursor = Math.floorMod(base, buckets.length);
+			started = true;
+		} else {
+			check(key, base);
+		}
+		
+		keys[state] = key;
+		queued[state] = true;
+		size++;
+		push(state, key);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalArgumentException if key is not an integer in the range of the current bucket
+	 * and the buckets after it
+	 */
+	@Override
+	public void decreaseKey(int state, double key) {
+		if(!contains(state))
+			throw new IllegalArgumentException("State " + state + " is not in the queue.");
+		if(Double.compare(key, keys[state]) > 0)
+			throw new IllegalArgumentException("Key " + key + " is greater than " + keys[state] + ".");
+		check(key, base);
+		
+		if(key == keys[state]) return;
+		keys[state] = key;
+		push(state, key);
+	}
+	
+	@Override
+	public int poll() {
+		if(size == 0)
+			throw new NoSuchElementException();
+		
+		while(true) {
+			while(counts[cursor] > 0) {
+				int state = pop(cursor);
+				if(queued[state] && keys[state] == base) {
+					queued[state] = false;
+					size--;
+					return state;
+				}
+			}
+			base++;
+			if(++cursor == buckets.length) cursor = 0;
+		}
+	}
+	
+	@Override
+	public void clear() {
+		for(int b = 0; b < buckets.length; b++) {
+			for(int i = 0; i < counts[b]; i++) {
+				queued[buckets[b][i]] = false;
+			}
+			counts[b] = 0;
+		}
+		size = 0;
+		started = false;
+	}
+	
+	/**
+	 * Helper method that checks if key can be added to the queue.
+	 * 
+	 * @param key of the state
+	 * @param min key of the current bucket
+	 * @throws IllegalArgumentException if key is not an integer from the key of the current bucket
+	 * to the key of the last bucket
+	 */
+	private void check(double key, double min) {
+		if(key != Math.rint(key) || key < min || key >= min + buckets.length || Math.abs(key) > (1L << 53))
+			throw new IllegalArgumentException("Key " + key + " is not an integer from " + min + " to " + (min + buckets.length - 1) + ".");
+	}
+	
+	/**
+	 * Helper method that grows the queue so it can hold states with ids lower than given capacity.
+	 * 
+	 * @param capacity minimal number of states
+	 */
+	private void grow(int capacity) {
+		int length = Math.max(capacity, 2 * queued.length);
+		keys = Arrays.copyOf(keys, length);
+		queued = Arrays.copyOf(queued, length);
+	}
+	
+	/**
+	 * Helper method that adds state to the bucket of given key.
+	 * 
+	 * @param state id of the state
+	 * @param key of the state
+	 */
+	private void push(int state, double key) {
+		int b = Math.floorMod((long) key, buckets.length);
+		int[] heap = buckets[b];
+		int i = counts[b]++;
+		if(heap == null) {
+			heap = buckets[b] = new int[16];
+		} else if(i == heap.length) {
+			heap = buckets[b] = Arrays.copyOf(heap, 2 * i);
+		}
+		
+		while(i > 0) {
+			int parent = (i - 1) >>> 1;
+			if(heap[parent] <= state) break;
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = state;
+	}
+	
+	/**
+	 * Helper method that removes the lowest state id from the bucket.
+	 * 
+	 * @param b index of the bucket
+	 * @return removed state id
+	 */
+	private int pop(int b) {
+		int[] heap = buckets[b];
+		int top = heap[0];
+		int n = --counts[b];
+		int state = heap[n];
+		int i = 0;
+		int half = n >>> 1;
+		while(i < half) {
+			int child = 2 * i + 1;
+			if(child + 1 < n && heap[child + 1] < heap[child]) child++;
+			if(heap[child] >= state) break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = state;
+		return top;
+	}
+	
+}
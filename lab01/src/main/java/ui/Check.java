@@ -1,18 +1,48 @@
 package ui;
 
-import java.util.Set;
-import java.util.TreeSet;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
- * Class is used to check if given state space is optimistic/consistent.
+ * Class is used to check if given state space is optimistic/consistent.<br>
+ * Results are written through a buffered writer. Consistency can be checked in parallel,
+ * in which case states are split in chunks checked on a fork-join pool, and the chunks are
+ * written in the same order the sequential check would write them.<br>
+ * Generated state spaces can't be checked whole, so only the first states reached breadth-first
+ * from the initial state are checked. Real cost of each of them is found by a search which reaches
+ * a limited number of states, and states whose real cost wasn't found are reported as unknown.
  * 
  * @author Ana Bagić
  *
  */
 public class Check {
-
+	
+	/** Default number of checked states of a generated state space. */
+	public static final int DEFAULT_LIMIT = 100;
+	/** Maximal number of states reached by the search for the real cost of one state of a generated state space. */
+	private static final int SEARCH_LIMIT = 1 << 20;
+	/** Minimal number of transitions checked in one chunk. */
+	private static final int CHUNK_EDGES = 1 << 14;
+	/** Size of the output buffer. */
+	private static final int BUFFER_SIZE = 1 << 16;
+	
 	/** State space to check. */
 	private StateSpace ss;
+	/** Generated state space to check, used instead of the stored one if it is set. */
+	private StateGenerator generator;
+	/** Number of checked states of the generated state space. */
+	private int limit;
+	/** Flag that marks if consistency should be checked in parallel. */
+	private boolean parallel;
+	/** Flag that marks if only violated conditions and the conclusion should be printed. */
+	private boolean summary;
+	/** Counters and time of the checks. */
+	private SearchMetrics metrics = new SearchMetrics();
 	
 	/**
 	 * Constructor creates new object using given state space.
@@ -20,60 +50,354 @@ public class Check {
 	 * @param ss state space to check
 	 */
 	public Check(StateSpace ss) {
+		this(ss, false, false);
+	}
+	
+	/**
+	 * Constructor creates new object using given state space and check options.
+	 * 
+	 * @param ss state space to check
+	 * @param parallel <code>true</code> if consistency should be checked in parallel
+	 * @param summary <code>true</code> if only violated conditions and the conclusion should be printed
+	 */
+	public Check(StateSpace ss, boolean parallel, boolean summary) {
 		this.ss = ss;
+		this.parallel = parallel;
+		this.summary = summary;
 	}
 	
 	/**
-	 * Checks if given state space is optimistic and prints the results.
+	 * Constructor creates new object using given generated state space.
+	 * 
+	 * @param generator of the state space to check
+	 * @param limit number of states to check
+	 * @param summary <code>true</code> if only violated conditions and the conclusion should be printed
+	 */
+	public Check(StateGenerator generator, int limit, boolean summary) {
+		this.generator = generator;
+		this.limit = limit;
+		this.summary = summary;
+	}
+	
+	/**
+	 * Sets metrics to which checks add their time and counters: checked states, checked
+	 * conditions and violated conditions.
+	 * 
+	 * @param metrics to add to
+	 */
+	public void setMetrics(SearchMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return metrics of the checks
+	 */
+	public SearchMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Checks if given state space is optimistic and prints the results.<br>
+	 * Real costs to the goal are computed for all states at once, using one search
+	 * from the goal states over the reversed graph. If goal is unreachable from a state,
+	 * its real cost is <code>Infinity</code>.
 	 */
 	public void checkOptimistic() {
+		metrics.setName("HEURISTIC-OPTIMISTIC");
+		metrics.start(SearchMetrics.Phase.CHECK);
+		try {
+			runOptimistic();
+		} finally {
+			metrics.stop(SearchMetrics.Phase.CHECK);
+		}
+	}
+	
+	/**
+	 * Checks if given state space is consistent and prints the results.
+	 */
+	public void checkConsistent() {
+		metrics.setName("HEURISTIC-CONSISTENT");
+		metrics.start(SearchMetrics.Phase.CHECK);
+		try {
+			runConsistent();
+		} finally {
+			metrics.stop(SearchMetrics.Phase.CHECK);
+		}
+	}
+	
+	/**
+	 * Helper method that checks if given state space is optimistic and prints the results.
+	 */
+	private void runOptimistic() {
+		if(generator != null) {
+			checkOptimisticGenerated();
+			return;
+		}
+		
 		boolean optimistic = true;
-		Search search = new Search(ss, Algorithm.UCS);
-		var heur = ss.getHeurFunction();
-		var states = new TreeSet<>(heur.keySet());
+		StateGraph graph = ss.getGraph();
+		DistanceTable table = DistanceTable.toGoals(graph, graph.flags(ss.getGoalStates()));
+		PrintWriter out = writer();
 		
-		System.out.println("# HEURISTIC-OPTIMISTIC " + ss.getHeuristicPath());
+		out.println("# HEURISTIC-OPTIMISTIC " + ss.getHeuristicPath());
 		
-		 for(String state : states) {
-			 ss.setInitialState(state);
-			 Node result = search.runAlgorithm();
-			 boolean con = heur.get(state) <= result.getPrice();
-			 System.out.print("[CONDITION]: " + (con ? "[OK] " : "[ERR] "));
-			 System.out.print("h(" + state + ") <= h*: ");
-			 System.out.println(heur.get(state) + " <= " + result.getPrice());
-			 
+		for(int state = 0; state < graph.size(); state++) {
+			if(!graph.hasHeuristic(state)) continue;
+			double h = graph.heuristic(state);
+			double real = table.pathCost(state);
+			boolean con = h <= real;
+			metrics.expanded++;
+			metrics.generated++;
+			if(!con) metrics.violated++;
+			if(!con || !summary) {
+				out.print("[CONDITION]: " + (con ? "[OK] " : "[ERR] "));
+				out.print("h(" + graph.name(state) + ") <= h*: ");
+				out.println(h + " <= " + real);
+			}
+			
 			if(!con) optimistic = false;
-		 }
+		}
 		
-		System.out.println("[CONCLUSION]: Heuristic " + (optimistic ? "is" : "is not") + " optimistic.");
+		out.println("[CONCLUSION]: Heuristic " + (optimistic ? "is" : "is not") + " optimistic.");
+		out.flush();
 	}
 	
 	/**
-	 * Checks if given state space is consistent and prints the results.
+	 * Helper method that checks if given state space is consistent and prints the results.
 	 */
-	public void checkConsistent() {
+	private void runConsistent() {
+		if(generator != null) {
+			checkConsistentGenerated();
+			return;
+		}
+		
 		boolean consistent = true;
-		var succ = ss.getSuccFunction();
-		var heur = ss.getHeurFunction();
-		Set<String> states = new TreeSet<>(succ.keySet());
+		StateGraph graph = ss.getGraph();
+		PrintWriter out = writer();
+		
+		out.println("# HEURISTIC-CONSISTENT " + ss.getHeuristicPath());
 		
-		System.out.println("# HEURISTIC-CONSISTENT " + ss.getHeuristicPath());
+		if(parallel) {
+			ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+			Queue<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+			int window = 4 * pool.getParallelism();
+			int from = 0;
+			while(from < graph.size() || !pending.isEmpty()) {
+				while(from < graph.size() && pending.size() < window) {
+					int start = from;
+					int end = chunkEnd(graph, from);
+					pending.add(pool.submit(() -> checkConsistent(graph, start, end)));
+					from = end;
+				}
+				Chunk chunk = pending.poll().join();
+				out.append(chunk.text);
+				count(chunk);
+				if(!chunk.consistent) consistent = false;
+			}
+			pool.shutdown();
+		} else {
+			for(int from = 0; from < graph.size(); ) {
+				int end = chunkEnd(graph, from);
+				Chunk chunk = checkConsistent(graph, from, end);
+				out.append(chunk.text);
+				count(chunk);
+				if(!chunk.consistent) consistent = false;
+				from = end;
+			}
+		}
+		
+		out.println("[CONCLUSION]: Heuristic " + (consistent ? "is" : "is not") + " consistent.");
+		out.flush();
+	}
+	
+	/**
+	 * Helper method that checks if generated state space is optimistic and prints the results.
+	 * Real cost to the goal is computed with a separate uniform-cost search from every checked state,
+	 * which stops after reaching {@value #SEARCH_LIMIT} states. When only violated conditions are
+	 * printed, it also doesn't expand states above the heuristic value, as the condition holds if no
+	 * goal is found within it.
+	 */
+	private void checkOptimisticGenerated() {
+		boolean optimistic = true;
+		int unknown = 0;
+		ImplicitSearch search = new ImplicitSearch(generator);
+		PrintWriter out = writer();
 		
-		for(String state : states) {
-			double s1Heur = heur.get(state);
-			for(var e : succ.get(state).entrySet()) {
-				double s2Heur = heur.get(e.getKey());
-				double c = e.getValue();
+		out.println("# HEURISTIC-OPTIMISTIC " + generator.getName());
+		
+		StateIndex states = reachable();
+		for(int id = 0; id < states.size(); id++) {
+			long state = states.state(id);
+			double h = generator.heuristic(state);
+			search.setLimits(SEARCH_LIMIT, summary ? h : Double.POSITIVE_INFINITY);
+			Node n = search.search(state, Algorithm.UCS);
+			metrics.expanded++;
+			metrics.generated++;
+			if(search.isLimited()) {
+				unknown++;
+				out.print("[CONDITION]: [UNKNOWN] ");
+				out.print("h(" + generator.name(state) + ") <= h*: ");
+				out.println(h + " <= ?");
+				continue;
+			}
+			
+			double real = n == null ? Double.POSITIVE_INFINITY : n.getPrice();
+			boolean con = h <= real;
+			if(!con) metrics.violated++;
+			if(!con || !summary) {
+				out.print("[CONDITION]: " + (con ? "[OK] " : "[ERR] "));
+				out.print("h(" + generator.name(state) + ") <= h*: ");
+				out.println(h + " <= " + real);
+			}
+			
+			if(!con) optimistic = false;
+		}
+		
+		if(!optimistic || unknown == 0) {
+			out.println("[CONCLUSION]: Heuristic " + (optimistic ? "is" : "is not") + " optimistic.");
+		} else {
+			out.println("[CONCLUSION]: Heuristic is optimistic for states with known real cost, real cost of "
+					+ unknown + " states is unknown.");
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Helper method that checks if generated state space is consistent and prints the results.
+	 */
+	private void checkConsistentGenerated() {
+		boolean consistent = true;
+		long[] next = new long[generator.maxSuccessors()];
+		double[] costs = new double[next.length];
+		PrintWriter out = writer();
+		
+		out.println("# HEURISTIC-CONSISTENT " + generator.getName());
+		
+		StateIndex states = reachable();
+		for(int id = 0; id < states.size(); id++) {
+			long state = states.state(id);
+			double s1Heur = generator.heuristic(state);
+			metrics.expanded++;
+			for(int i = 0, k = generator.successors(state, next, costs); i < k; i++) {
+				double s2Heur = generator.heuristic(next[i]);
+				boolean con = s1Heur <= s2Heur + costs[i];
+				metrics.generated++;
+				if(!con) metrics.violated++;
+				if(!con || !summary) {
+					out.print("[CONDITION]: " + (con ? "[OK] " : "[ERR] "));
+					out.print("h(" + generator.name(state) + ") <= h(" + generator.name(next[i]) + ") + c: ");
+					out.println(s1Heur + " <= " + s2Heur + " + " + costs[i]);
+				}
+				
+				if(!con) consistent = false;
+			}
+		}
+		
+		out.println("[CONCLUSION]: Heuristic " + (consistent ? "is" : "is not") + " consistent.");
+		out.flush();
+	}
+	
+	/**
+	 * Helper method that finds states to check in the generated state space.
+	 * 
+	 * @return first states reached breadth-first from the initial state, at most limit of them
+	 */
+	private StateIndex reachable() {
+		StateIndex states = new StateIndex();
+		long[] next = new long[generator.maxSuccessors()];
+		double[] costs = new double[next.length];
+		states.add(generator.initialState());
+		for(int id = 0; id < states.size() && states.size() < limit; id++) {
+			for(int i = 0, k = generator.successors(states.state(id), next, costs); i < k && states.size() < limit; i++) {
+				states.add(next[i]);
+			}
+		}
+		return states;
+	}
+	
+	/**
+	 * Helper method that checks consistency of transitions of states in given range.
+	 * Only states which have successors are checked.
+	 * 
+	 * @param graph to check
+	 * @param from id of the first state
+	 * @param to id after the last state
+	 * @return results of the check
+	 */
+	private Chunk checkConsistent(StateGraph graph, int from, int to) {
+		Chunk chunk = new Chunk();
+		StringBuilder sb = chunk.text;
+		for(int state = from; state < to; state++) {
+			double s1Heur = graph.heuristic(state);
+			chunk.states++;
+			for(int e = graph.succStart(state), end = graph.succEnd(state); e < end; e++) {
+				int next = graph.succState(e);
+				double s2Heur = graph.heuristic(next);
+				double c = graph.succCost(e);
 				boolean con = s1Heur <= s2Heur + c;
+				chunk.conditions++;
+				if(!con) chunk.violated++;
 				
-				System.out.print("[CONDITION]: " + (con ? "[OK] " : "[ERR] "));
-				System.out.print("h(" + state + ") <= h(" + e.getKey() + ") + c: ");
-				System.out.println(s1Heur + " <= " + s2Heur + " + " + c);
+				if(!con || !summary) {
+					sb.append("[CONDITION]: ").append(con ? "[OK] " : "[ERR] ");
+					sb.append("h(").append(graph.name(state)).append(") <= h(").append(graph.name(next)).append(") + c: ");
+					sb.append(s1Heur).append(" <= ").append(s2Heur).append(" + ").append(c).append(System.lineSeparator());
+				}
 				
-				if(!con) consistent = false;
+				if(!con) chunk.consistent = false;
 			}
 		}
+		return chunk;
+	}
+	
+	/**
+	 * Helper method that adds counters of the checked chunk to the metrics.
+	 * 
+	 * @param chunk checked chunk
+	 */
+	private void count(Chunk chunk) {
+		metrics.expanded += chunk.states;
+		metrics.generated += chunk.conditions;
+		metrics.violated += chunk.violated;
+	}
+	
+	/**
+	 * Helper method that finds end of the chunk starting at given state.
+	 * 
+	 * @param graph to split in chunks
+	 * @param from id of the first state in the chunk
+	 * @return id after the last state in the chunk
+	 */
+	private static int chunkEnd(StateGraph graph, int from) {
+		int to = from + 1;
+		while(to < graph.size() && graph.succStart(to) - graph.succStart(from) < CHUNK_EDGES) {
+			to++;
+		}
+		return to;
+	}
+	
+	/**
+	 * @return buffered writer to the standard output
+	 */
+	private static PrintWriter writer() {
+		System.out.flush();
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_SIZE));
+	}
+	
+	/**
+	 * Class models results of checking one chunk of states.
+	 */
+	private static class Chunk {
 		
-		System.out.println("[CONCLUSION]: Heuristic " + (consistent ? "is" : "is not") + " consistent.");
+		/** Printed conditions. */
+		final StringBuilder text = new StringBuilder();
+		/** Flag that marks if all conditions are satisfied. */
+		boolean consistent = true;
+		/** Number of checked states. */
+		int states;
+		/** Number of checked conditions. */
+		int conditions;
+		/** Number of violated conditions. */
+		int violated;
 	}
 }
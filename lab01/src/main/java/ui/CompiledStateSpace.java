@@ -0,0 +1,299 @@
+package ui;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class is used to write state space to a binary file and load it back.<br>
+ * File contains the state table, successor arrays and heuristic values of the compact
+ * {@link StateGraph} form, so loading it only copies arrays from the memory mapped file.
+ * Format (big-endian):
+ * <pre>
+ * int magic, int version, int states, int transitions,
+ * int initial state id (-1 if there is none), int goal count, int[] goal ids,
+ * int heuristic path length (-1 if there is none), byte[] heuristic path,
+ * int[states + 1] name offsets, byte[] names (UTF-8),
+ * int[states + 1] transition offsets, int[transitions] next states, double[transitions] costs,
+ * double[states] heuristic values
+ * </pre>
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class CompiledStateSpace {
+	
+	/** Magic number at the start of the file ("UISS"). */
+	private static final int MAGIC = 0x55495353;
+	/** Version of the format. */
+	private static final int VERSION = 1;
+	/** Largest part of the file mapped at once. */
+	private static final long MAX_MAPPING = 1 << 30;
+	
+	/** Number of bytes read by the last load. */
+	private long bytesRead;
+	/** Time spent in the last load, in nanoseconds. */
+	private long loadNanos;
+	
+	/**
+	 * Checks if file at given path is a compiled state space.
+	 * 
+	 * @param path of the file
+	 * @return <code>true</code> if file starts with the magic number, otherwise <code>false</code>
+	 * @throws IOException if reading fails
+	 */
+	public static boolean isCompiled(String path) throws IOException {
+		try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+			ByteBuffer bb = ByteBuffer.allocate(4);
+			while(bb.hasRemaining() && channel.read(bb) >= 0);
+			return !bb.hasRemaining() && bb.getInt(0) == MAGIC;
+		}
+	}
+	
+	/**
+	 * Writes given state space to a binary file.
+	 * 
+	 * @param ss state space to write
+	 * @param path of the file
+	 * @throws IOException if writing fails
+	 */
+	public static void write(StateSpace ss, String path) throws IOException {
+		StateGraph graph = ss.getGraph();
+		int n = graph.size();
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(path)), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(graph.edgeCount());
+			
+			out.writeInt(graph.indexOf(ss.getInitState()) < 0 ? -1 : graph.indexOf(ss.getInitState()));
+			boolean[] goal = graph.flags(ss.getGoalStates());
+			int goals = 0;
+			for(boolean g : goal) {
+				if(g) goals++;
+			}
+			out.writeInt(goals);
+			for(int i = 0; i < n; i++) {
+				if(goal[i]) out.writeInt(i);
+			}
+			
+			if(ss.getHeuristicPath() == null) {
+				out.writeInt(-1);
+			} else {
+				byte[] h = ss.getHeuristicPath().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(h.length);
+				out.write(h);
+			}
+			
+			byte[][] names = new byte[n][];
+			int offset = 0;
+			out.writeInt(offset);
+			for(int i = 0; i < n; i++) {
+				names[i] = graph.name(i).getBytes(StandardCharsets.UTF_8);
+				offset += names[i].length;
+				out.writeInt(offset);
+			}
+			for(byte[] name : names) {
+				out.write(name);
+			}
+			
+			for(int i = 0; i <= n; i++) {
+				out.writeInt(i < n ? graph.succStart(i) : graph.edgeCount());
+			}
+			for(int e = 0; e < graph.edgeCount(); e++) {
+				out.writeInt(graph.succState(e));
+			}
+			for(int e = 0; e < graph.edgeCount(); e++) {
+				out.writeDouble(graph.succCost(e));
+			}
+			for(int i = 0; i < n; i++) {
+				out.writeDouble(graph.heuristic(i));
+			}
+		}
+	}
+	
+	/**
+	 * Loads state space from a binary file. Heuristic function is the one the file was compiled with.
+	 * 
+	 * @param path of the file
+	 * @param hPath path to the heuristic function descriptor, or <code>null</code> to use the compiled one
+	 * @return loaded state space
+	 * @throws IOException if reading fails or file is not a compiled state space
+	 * @throws IllegalArgumentException if given heuristic differs from the compiled one
+	 */
+	public StateSpace load(String path, String hPath) throws IOException {
+		long start = System.nanoTime();
+		try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+			Reader in = new Reader(channel);
+			if(in.readInt() != MAGIC)
+				throw new IOException(path + " is not a compiled state space.");
+			int version = in.readInt();
+			if(version != VERSION)
+				throw new IOException("Unsupported version " + version + " of compiled state space " + path + ".");
+			
+			int n = in.readInt();
+			int m = in.readInt();
+			int initial = in.readInt();
+			int[] goals = in.readInts(in.readInt());
+			int hLength = in.readInt();
+			String compiledHPath = hLength < 0 ? null : new String(in.readBytes(hLength), StandardCharsets.UTF_8);
+			if(hPath != null && !hPath.equals(compiledHPath))
+				throw new IllegalArgumentException("State space was compiled with heuristic " + compiledHPath + ".");
+			
+			int[] nameOffsets = in.readInts(n + 1);
+			byte[] nameBytes = in.readBytes(nameOffsets[n]);
+			String[] names = new String[n];
+			for(int i = 0; i < n; i++) {
+				names[i] = new String(nameBytes, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8);
+			}
+			
+			int[] offsets = in.readInts(n + 1);
+			int[] targets = in.readInts(m);
+			double[] costs = in.readDoubles(m);
+			double[] heuristic = in.readDoubles(n);
+			
+			StateSpace ss = new StateSpace();
+			if(initial >= 0) ss.setInitialState(names[initial]);
+			Set<String> goalStates = new HashSet<>();
+			for(int g : goals) {
+				goalStates.add(names[g]);
+			}
+			ss.setGoalStates(goalStates);
+			ss.setGraph(new StateGraph(names, offsets, targets, costs, heuristic));
+			ss.setHeuristicPath(compiledHPath);
+			
+			bytesRead = in.position;
+			loadNanos = System.nanoTime() - start;
+			return ss;
+		}
+	}
+	
+	/**
+	 * @return number of bytes read by the last load
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	/**
+	 * @return time spent in the last load, in nanoseconds
+	 */
+	public long getLoadNanos() {
+		return loadNanos;
+	}
+	
+	/**
+	 * @return throughput of the last load in megabytes per second
+	 */
+	public double getThroughput() {
+		return loadNanos == 0 ? 0 : bytesRead / 1e6 / (loadNanos / 1e9);
+	}
+	
+	/**
+	 * Class is used to read arrays from the file, mapping it into memory part by part.
+	 */
+	private static class Reader {
+		
+		/** Channel of the file. */
+		private final FileChannel channel;
+		/** Currently mapped part of the file. */
+		private MappedByteBuffer buffer;
+		/** Position of the next byte to read. */
+		long position;
+		
+		/**
+		 * Constructor creates reader for the given channel.
+		 * 
+		 * @param channel of the file
+		 */
+		Reader(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		/**
+		 * @return next integer
+		 * @throws IOException if reading fails
+		 */
+		int readInt() throws IOException {
+			return readInts(1)[0];
+		}
+		
+		/**
+		 * @param count number of bytes to read
+		 * @return read bytes
+		 * @throws IOException if reading fails
+		 */
+		byte[] readBytes(int count) throws IOException {
+			byte[] result = new byte[count];
+			for(int i = 0; i < count; ) {
+				int k = (int) Math.min(count - i, ensure(1));
+				buffer.get(result, i, k);
+				i += k;
+				position += k;
+			}
+			return result;
+		}
+		
+		/**
+		 * @param count number of integers to read
+		 * @return read integers
+		 * @throws IOException if reading fails
+		 */
+		int[] readInts(int count) throws IOException {
+			int[] result = new int[count];
+			for(int i = 0; i < count; ) {
+				int k = (int) Math.min(count - i, ensure(Integer.BYTES) / Integer.BYTES);
+				buffer.asIntBuffer().get(result, i, k);
+				buffer.position(buffer.position() + k * Integer.BYTES);
+				i += k;
+				position += (long) k * Integer.BYTES;
+			}
+			return result;
+		}
+		
+		/**
+		 * @param count number of doubles to read
+		 * @return read doubles
+		 * @throws IOException if reading fails
+		 */
+		double[] readDoubles(int count) throws IOException {
+			double[] result = new double[count];
+			for(int i = 0; i < count; ) {
+				int k = (int) Math.min(count - i, ensure(Double.BYTES) / Double.BYTES);
+				buffer.asDoubleBuffer().get(result, i, k);
+				buffer.position(buffer.position() + k * Double.BYTES);
+				i += k;
+				position += (long) k * Double.BYTES;
+			}
+			return result;
+		}
+		
+		/**
+		 * Helper method that maps next part of the file if less than given number of bytes
+		 * is left in the mapped part.
+		 * 
+		 * @param bytes needed number of bytes
+		 * @return number of bytes left in the mapped part
+		 * @throws IOException if file ends before given number of bytes
+		 */
+		private long ensure(int bytes) throws IOException {
+			if(buffer == null || buffer.remaining() < bytes) {
+				long size = Math.min(MAX_MAPPING, channel.size() - position);
+				if(size < bytes)
+					throw new IOException("Compiled state space ends unexpectedly.");
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			}
+			return buffer.remaining();
+		}
+	}
+	
+}
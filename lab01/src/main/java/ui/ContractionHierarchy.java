@@ -0,0 +1,746 @@
+package ui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Class models contraction hierarchy of a state graph, used to answer repeated cheapest path
+ * queries while visiting only a small part of the graph.<br>
+ * States are contracted one by one, in the order of their priority (number of added shortcuts
+ * minus number of removed transitions, increased by number of contracted neighbours), and their
+ * position in that order is their rank. Contracting a state adds a shortcut between each of its
+ * neighbours whose cheapest connection goes through it, unless a local witness search finds a
+ * strictly cheaper path around it, so every cheapest path of the graph is kept by some path in the
+ * hierarchy. Query is a bidirectional Dijkstra search which only goes to states of higher rank,
+ * forward from the initial state and backward from all goal states, and shortcuts of the found
+ * path are unpacked to transitions of the graph.<br>
+ * Query also reports if the found path is the only (nearly) cheapest one. UCS chooses between
+ * equally cheap paths by its order of expansion, so only unique paths are the ones UCS would find.
+ * Hierarchy can be saved to a file and loaded back for the same graph, which is recognized by its
+ * {@link StateGraph#checksum()}. Format (big-endian):
+ * <pre>
+ * int magic, int version, int states, int transitions, long checksum, int edges,
+ * int[states] ranks, then for each edge: int from, int to, double cost,
+ * int first unpacked edge, int second unpacked edge, byte ambiguous flag
+ * </pre>
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class ContractionHierarchy {
+	
+	/** Magic number at the start of the file ("UICH"). */
+	private static final int MAGIC = 0x55494348;
+	/** Version of the format. */
+	private static final int VERSION = 2;
+	/** Relative difference of path costs under which paths are considered equally cheap. */
+	private static final double TIE = 1e-9;
+	/** Maximal number of states settled by one witness search. */
+	private static final int WITNESS_LIMIT = 64;
+	
+	/** Graph the hierarchy was built for. */
+	private StateGraph graph;
+	/** Rank of each state in the contraction order. */
+	private int[] rank;
+	/** Number of edges, which are transitions of the graph followed by shortcuts. */
+	private int edgeCount;
+	/** Source state of each edge. */
+	private int[] from;
+	/** Target state of each edge. */
+	private int[] to;
+	/** Cost of each edge. */
+	private double[] cost;
+	/** First of the two edges a shortcut is made of, <code>-1</code> for transitions. */
+	private int[] first;
+	/** Second of the two edges a shortcut is made of, <code>-1</code> for transitions. */
+	private int[] second;
+	/** Flags marking edges which replaced another equally cheap path between the same states. */
+	private boolean[] ambiguous;
+	/** Offsets of edges going up from each state in {@link #upEdges}. */
+	private int[] upStart;
+	/** Edges to states of higher rank, grouped by source state. */
+	private int[] upEdges;
+	/** Offsets of edges coming down to each state in {@link #downEdges}. */
+	private int[] downStart;
+	/** Edges from states of higher rank, grouped by target state. */
+	private int[] downEdges;
+	/** Query state of each thread. */
+	private final ThreadLocal<Query> queries = ThreadLocal.withInitial(Query::new);
+	
+	/**
+	 * Constructor creates hierarchy using given arrays.
+	 * 
+	 * @param graph the hierarchy was built for
+	 * @param rank of each state
+	 * @param edgeCount number of edges
+	 * @param from source states of edges
+	 * @param to target states of edges
+	 * @param cost costs of edges
+	 * @param first first unpacked edges
+	 * @param second second unpacked edges
+	 * @param ambiguous flags of edges
+	 */
+	private ContractionHierarchy(StateGraph graph, int[] rank, int edgeCount, int[] from, int[] to, double[] cost,
+			int[] first, int[] second, boolean[] ambiguous) {
+		this.graph = graph;
+		this.rank = rank;
+		this.edgeCount = edgeCount;
+		this.from = from;
+		this.to = to;
+		this.cost = cost;
+		this.first = first;
+		this.second = second;
+		this.ambiguous = ambiguous;
+		index();
+	}
+	
+	/**
+	 * Builds contraction hierarchy of the given graph.
+	 * 
+	 * @param graph to build the hierarchy for
+	 * @return built hierarchy
+	 * @throws IllegalArgumentException if some transition has negative cost
+	 */
+	public static ContractionHierarchy build(StateGraph graph) {
+		return new Builder(graph).build();
+	}
+	
+	/**
+	 * Loads hierarchy saved by {@link #save(String)} for the given graph.
+	 * 
+	 * @param graph the hierarchy was built for
+	 * @param path of the file
+	 * @return loaded hierarchy
+	 * @throws IOException if reading fails, file is not a saved hierarchy or it was saved for a different graph
+	 */
+	public static ContractionHierarchy load(StateGraph graph, String path) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(path)), 1 << 16))) {
+			if(in.readInt() != MAGIC)
+				throw new IOException(path + " is not a contraction hierarchy.");
+			int version = in.readInt();
+			if(version != VERSION)
+				throw new IOException("Unsupported version " + version + " of contraction hierarchy " + path + ".");
+			int n = in.readInt();
+			int m = in.readInt();
+			long checksum = in.readLong();
+			if(n != graph.size() || m != graph.edgeCount() || checksum != graph.checksum())
+				throw new IOException("Contraction hierarchy " + path + " was saved for a different state space.");
+			
+			int edges = in.readInt();
+			int[] rank = new int[n];
+			for(int i = 0; i < n; i++) {
+				rank[i] = in.readInt();
+			}
+			int[] from = new int[edges];
+			int[] to = new int[edges];
+			double[] cost = new double[edges];
+			int[] first = new int[edges];
+			int[] second = new int[edges];
+			boolean[] ambiguous = new boolean[edges];
+			for(int e = 0; e < edges; e++) {
+				from[e] = in.readInt();
+				to[e] = in.readInt();
+				cost[e] = in.readDouble();
+				first[e] = in.readInt();
+				second[e] = in.readInt();
+				ambiguous[e] = in.readBoolean();
+			}
+			return new ContractionHierarchy(graph, rank, edges, from, to, cost, first, second, ambiguous);
+		}
+	}
+	
+	/**
+	 * Saves the hierarchy to a binary file.
+	 * 
+	 * @param path of the file
+	 * @throws IOException if writing fails
+	 */
+	public void save(String path) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(path)), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(rank.length);
+			out.writeInt(graph.edgeCount());
+			out.writeLong(graph.checksum());
+			out.writeInt(edgeCount);
+			for(int r : rank) {
+				out.writeInt(r);
+			}
+			for(int e = 0; e < edgeCount; e++) {
+				out.writeInt(from[e]);
+				out.writeInt(to[e]);
+				out.writeDouble(cost[e]);
+				out.writeInt(first[e]);
+				out.writeInt(second[e]);
+				out.writeBoolean(ambiguous[e]);
+			}
+		}
+	}
+	
+	/**
+	 * Checks if the hierarchy was built for given graph. Graphs which differ only in heuristic
+	 * values share the hierarchy, graphs with different states, transitions or costs don't.
+	 * 
+	 * @param graph to check
+	 * @return <code>true</code> if hierarchy can be used for the graph, otherwise <code>false</code>
+	 */
+	public boolean fits(StateGraph graph) {
+		return graph.size() == rank.length && graph.checksum() == this.graph.checksum();
+	}
+	
+	/**
+	 * @return number of edges, including shortcuts
+	 */
+	public int edgeCount() {
+		return edgeCount;
+	}
+	
+	/**
+	 * Returns query state of the current thread, so queries can run on many threads at once.
+	 * 
+	 * @return query of the current thread
+	 */
+	public Query query() {
+		return queries.get();
+	}
+	
+	/**
+	 * Helper method that groups edges going up by their source state and edges coming down by
+	 * their target state.
+	 */
+	private void index() {
+		int n = rank.length;
+		upStart = new int[n + 1];
+		downStart = new int[n + 1];
+		for(int e = 0; e < edgeCount; e++) {
+			if(rank[from[e]] < rank[to[e]]) {
+				upStart[from[e] + 1]++;
+			} else {
+				downStart[to[e] + 1]++;
+			}
+		}
+		for(int i = 0; i < n; i++) {
+			upStart[i + 1] += upStart[i];
+			downStart[i + 1] += downStart[i];
+		}
+		upEdges = new int[upStart[n]];
+		downEdges = new int[downStart[n]];
+		int[] up = Arrays.copyOf(upStart, n);
+		int[] down = Arrays.copyOf(downStart, n);
+		for(int e = 0; e < edgeCount; e++) {
+			if(rank[from[e]] < rank[to[e]]) {
+				upEdges[up[from[e]]++] = e;
+			} else {
+				downEdges[down[to[e]]++] = e;
+			}
+		}
+	}
+	
+	/**
+	 * @param c cost of the path
+	 * @return difference of costs under which paths are considered equally cheap
+	 */
+	private static double tie(double c) {
+		return TIE * Math.max(1.0, c);
+	}
+	
+	/**
+	 * Class models state of the queries of one thread. Arrays are allocated once and entries
+	 * left by previous queries are recognised by the number of the query.
+	 * 
+	 * @author Ana Bagić
+	 *
+	 */
+	public class Query {
+		
+		/** Lowest found cost from the initial state and to the goal states. */
+		private double[][] dist = new double[2][rank.length];
+		/** Edge through which each state was reached in each direction. */
+		private int[][] parent = new int[2][rank.length];
+		/** Flags marking states reached by two (nearly) equally cheap paths in each direction. */
+		private boolean[][] tied = new boolean[2][rank.length];
+		/** Number of the query in which each state was reached in each direction. */
+		private int[][] mark = new int[2][rank.length];
+		/** Open states of each direction. */
+		private IndexedHeap[] open = {new IndexedHeap(rank.length), new IndexedHeap(rank.length)};
+		/** Number of the current query. */
+		private int run;
+		/** Flag marking that the last found path is the only (nearly) cheapest one. */
+		private boolean unique;
+		/** Number of states settled by the last query. */
+		private int settled;
+		
+		/**
+		 * Finds the cheapest path from the initial state to the nearest goal state.
+		 * 
+		 * @param init id of the initial state
+		 * @param goals ids of the goal states
+		 * @return ids of states on the found path, or <code>null</code> if no goal state is reachable
+		 */
+		public int[] path(int init, int[] goals) {
+			run++;
+			settled = 0;
+			unique = true;
+			open[0].clear();
+			open[1].clear();
+			reach(0, init, 0.0, -1);
+			for(int g : goals) {
+				if(mark[1][g] != run) reach(1, g, 0.0, -1);
+			}
+			
+			double best = Double.POSITIVE_INFINITY;
+			int meet = -1;
+			boolean tiedMeet = false;
+			while(true) {
+				boolean f = !open[0].isEmpty() && open[0].key(open[0].peek()) <= best + tie(best);
+				boolean b = !open[1].isEmpty() && open[1].key(open[1].peek()) <= best + tie(best);
+				if(!f && !b) break;
+				int d = f && (!b || open[0].key(open[0].peek()) <= open[1].key(open[1].peek())) ? 0 : 1;
+				
+				int s = open[d].poll();
+				settled++;
+				if(mark[1 - d][s] == run) {
+					double total = dist[0][s] + dist[1][s];
+					if(total < best) {
+						tiedMeet = best - total <= tie(total) && meet != s;
+						best = total;
+						meet = s;
+					} else if(total - best <= tie(best) && s != meet) {
+						tiedMeet = true;
+					}
+				}
+				
+				if(d == 0) {
+					for(int i = upStart[s], end = upStart[s + 1]; i < end; i++) {
+						int e = upEdges[i];
+						relax(0, to[e], dist[0][s] + cost[e], e);
+					}
+				} else {
+					for(int i = downStart[s], end = downStart[s + 1]; i < end; i++) {
+						int e = downEdges[i];
+						relax(1, from[e], dist[1][s] + cost[e], e);
+					}
+				}
+			}
+			if(meet < 0) return null;
+			
+			unique = !tiedMeet;
+			int[] up = new int[16];
+			int count = 0;
+			for(int s = meet; parent[0][s] >= 0; s = from[parent[0][s]]) {
+				if(tied[0][s]) unique = false;
+				if(count == up.length) up = Arrays.copyOf(up, 2 * count);
+				up[count++] = parent[0][s];
+			}
+			int[] edges = new int[16];
+			int length = 0;
+			for(int i = count - 1; i >= 0; i--) {
+				if(length == edges.length) edges = Arrays.copyOf(edges, 2 * length);
+				edges[length++] = up[i];
+			}
+			for(int s = meet; parent[1][s] >= 0; s = to[parent[1][s]]) {
+				if(tied[1][s]) unique = false;
+				if(length == edges.length) edges = Arrays.copyOf(edges, 2 * length);
+				edges[length++] = parent[1][s];
+			}
+			return unpack(init, edges, length);
+		}
+		
+		/**
+		 * @return <code>true</code> if the last found path is the only (nearly) cheapest one, otherwise <code>false</code>
+		 */
+		public boolean isUnique() {
+			return unique;
+		}
+		
+		/**
+		 * @return number of states settled by the last query
+		 */
+		public int getSettled() {
+			return settled;
+		}
+		
+		/**
+		 * Helper method that records the state reached in given direction and opens it.
+		 * 
+		 * @param d direction, 0 forward and 1 backward
+		 * @param s id of the state
+		 * @param c cost of the state
+		 * @param e edge through which state was reached, <code>-1</code> if there is none
+		 */
+		private void reach(int d, int s, double c, int e) {
+			mark[d][s] = run;
+			dist[d][s] = c;
+			parent[d][s] = e;
+			tied[d][s] = false;
+			open[d].add(s, c);
+		}
+		
+		/**
+		 * Helper method that updates the state if it is reached cheaper, and marks it as tied if it
+		 * is reached through another edge as (nearly) cheap.
+		 * 
+		 * @param d direction, 0 forward and 1 backward
+		 * @param s id of the state
+		 * @param c cost of the state through the edge
+		 * @param e edge through which state is reached
+		 */
+		private void relax(int d, int s, double c, int e) {
+			if(mark[d][s] != run) {
+				reach(d, s, c, e);
+			} else if(c < dist[d][s]) {
+				tied[d][s] = dist[d][s] - c <= tie(c);
+				dist[d][s] = c;
+				parent[d][s] = e;
+				if(open[d].contains(s)) {
+					open[d].decreaseKey(s, c);
+				} else {
+					open[d].add(s, c);
+				}
+			} else if(c - dist[d][s] <= tie(c) && parent[d][s] != e) {
+				tied[d][s] = true;
+			}
+		}
+		
+		/**
+		 * Helper method that replaces shortcuts of the path by the transitions they are made of.
+		 * Path is not unique if some unpacked edge replaced an equally cheap path.
+		 * 
+		 * @param init id of the initial state
+		 * @param edges edges of the path
+		 * @param length number of edges
+		 * @return ids of states on the path
+		 */
+		private int[] unpack(int init, int[] edges, int length) {
+			int[] path = new int[length + 1];
+			int count = 0;
+			path[count++] = init;
+			int[] stack = new int[Math.max(16, length)];
+			for(int i = 0; i < length; i++) {
+				int top = 0;
+				stack[top++] = edges[i];
+				while(top > 0) {
+					int e = stack[--top];
+					if(ambiguous[e]) unique = false;
+					if(first[e] < 0) {
+						if(count == path.length) path = Arrays.copyOf(path, 2 * count);
+						path[count++] = to[e];
+						continue;
+					}
+					if(top + 2 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+					stack[top++] = second[e];
+					stack[top++] = first[e];
+				}
+			}
+			return Arrays.copyOf(path, count);
+		}
+		
+	}
+	
+	/**
+	 * Class builds the hierarchy. Edges are kept in growing arrays with linked lists of edges
+	 * going out of and coming into each state, and edges of contracted states are skipped.
+	 * 
+	 * @author Ana Bagić
+	 *
+	 */
+	private static class Builder {
+		
+		/** Graph to build the hierarchy for. */
+		private StateGraph graph;
+		/** Number of edges. */
+		private int count;
+		/** Source state of each edge. */
+		private int[] from;
+		/** Target state of each edge. */
+		private int[] to;
+		/** Cost of each edge. */
+		private double[] cost;
+		/** First of the two edges a shortcut is made of, <code>-1</code> for transitions. */
+		private int[] first;
+		/** Second of the two edges a shortcut is made of, <code>-1</code> for transitions. */
+		private int[] second;
+		/** Flags marking edges which replaced another equally cheap path. */
+		private boolean[] ambiguous;
+		/** Next edge going out of the same state, <code>-1</code> if there is none. */
+		private int[] nextOut;
+		/** Next edge coming into the same state, <code>-1</code> if there is none. */
+		private int[] nextIn;
+		/** First edge going out of each state, <code>-1</code> if there is none. */
+		private int[] headOut;
+		/** First edge coming into each state, <code>-1</code> if there is none. */
+		private int[] headIn;
+		/** Flags marking contracted states. */
+		private boolean[] contracted;
+		/** Number of contracted neighbours of each state. */
+		private int[] neighbours;
+		/** Last contracted neighbour of each state, used to update each neighbour once. */
+		private int[] updated;
+		/** Cost of each state found by the current witness search. */
+		private double[] witness;
+		/** Number of the witness search in which each state was reached. */
+		private int[] witnessMark;
+		/** Number of the current witness search. */
+		private int witnessRun;
+		/** Open states of the witness search. */
+		private IndexedHeap witnessOpen;
+		
+		/**
+		 * Constructor creates builder with the transitions of the graph.
+		 * 
+		 * @param graph to build the hierarchy for
+		 * @throws IllegalArgumentException if some transition has negative cost
+		 */
+		private Builder(StateGraph graph) {
+			this.graph = graph;
+			int n = graph.size();
+			int m = Math.max(16, 2 * graph.edgeCount());
+			from = new int[m];
+			to = new int[m];
+			cost = new double[m];
+			first = new int[m];
+			second = new int[m];
+			ambiguous = new boolean[m];
+			nextOut = new int[m];
+			nextIn = new int[m];
+			headOut = new int[n];
+			headIn = new int[n];
+			Arrays.fill(headOut, -1);
+			Arrays.fill(headIn, -1);
+			contracted = new boolean[n];
+			neighbours = new int[n];
+			updated = new int[n];
+			Arrays.fill(updated, -1);
+			witness = new double[n];
+			witnessMark = new int[n];
+			witnessOpen = new IndexedHeap(n);
+			
+			for(int s = 0; s < n; s++) {
+				for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+					if(graph.succCost(e) < 0.0)
+						throw new IllegalArgumentException("Transition " + graph.name(s) + " => " + graph.name(graph.succState(e)) + " has negative cost.");
+					if(graph.succState(e) != s) addEdge(s, graph.succState(e), graph.succCost(e), -1, -1);
+				}
+			}
+		}
+		
+		/**
+		 * Contracts all states and makes the hierarchy.
+		 * 
+		 * @return built hierarchy
+		 */
+		private ContractionHierarchy build() {
+			int n = graph.size();
+			IndexedHeap queue = new IndexedHeap(n);
+			for(int s = 0; s < n; s++) {
+				queue.add(s, priority(s));
+			}
+			
+			int[] rank = new int[n];
+			int next = 0;
+			while(!queue.isEmpty()) {
+				int s = queue.poll();
+				double p = priority(s);
+				if(!queue.isEmpty() && p > queue.key(queue.peek())) {
+					queue.add(s, p);
+					continue;
+				}
+				
+				shortcuts(s, true);
+				contracted[s] = true;
+				rank[s] = next++;
+				for(int e = headOut[s]; e >= 0; e = nextOut[e]) {
+					update(to[e], s);
+				}
+				for(int e = headIn[s]; e >= 0; e = nextIn[e]) {
+					update(from[e], s);
+				}
+			}
+			
+			return new ContractionHierarchy(graph, rank, count, Arrays.copyOf(from, count), Arrays.copyOf(to, count),
+					Arrays.copyOf(cost, count), Arrays.copyOf(first, count), Arrays.copyOf(second, count),
+					Arrays.copyOf(ambiguous, count));
+		}
+		
+		/**
+		 * Helper method that updates the neighbour of the contracted state: its number of contracted
+		 * neighbours and its lists of edges. Its priority is updated lazily, when it is removed from
+		 * the queue.
+		 * 
+		 * @param s id of the neighbour
+		 * @param contractedState id of the contracted state
+		 */
+		private void update(int s, int contractedState) {
+			if(contracted[s] || updated[s] == contractedState) return;
+			updated[s] = contractedState;
+			neighbours[s]++;
+			prune(s);
+		}
+		
+		/**
+		 * Helper method that removes edges between the state and contracted states from its lists,
+		 * so later searches don't scan them. Removed edges stay in the hierarchy.
+		 * 
+		 * @param s id of the state
+		 */
+		private void prune(int s) {
+			int kept = -1;
+			for(int e = headOut[s], next; e >= 0; e = next) {
+				next = nextOut[e];
+				if(contracted[to[e]]) continue;
+				nextOut[e] = kept;
+				kept = e;
+			}
+			headOut[s] = kept;
+			
+			kept = -1;
+			for(int e = headIn[s], next; e >= 0; e = next) {
+				next = nextIn[e];
+				if(contracted[from[e]]) continue;
+				nextIn[e] = kept;
+				kept = e;
+			}
+			headIn[s] = kept;
+		}
+		
+		/**
+		 * @param s id of the state
+		 * @return priority of contracting the state, lower is contracted first
+		 */
+		private double priority(int s) {
+			int removed = 0;
+			for(int e = headOut[s]; e >= 0; e = nextOut[e]) {
+				if(!contracted[to[e]]) removed++;
+			}
+			for(int e = headIn[s]; e >= 0; e = nextIn[e]) {
+				if(!contracted[from[e]]) removed++;
+			}
+			return shortcuts(s, false) - removed + neighbours[s];
+		}
+		
+		/**
+		 * Helper method that finds shortcuts needed to contract the state, adding them if asked.
+		 * 
+		 * @param s id of the state
+		 * @param add <code>true</code> if shortcuts should be added
+		 * @return number of needed shortcuts
+		 */
+		private int shortcuts(int s, boolean add) {
+			double maxOut = 0.0;
+			for(int e = headOut[s]; e >= 0; e = nextOut[e]) {
+				if(!contracted[to[e]]) maxOut = Math.max(maxOut, cost[e]);
+			}
+			
+			int needed = 0;
+			for(int in = headIn[s]; in >= 0; in = nextIn[in]) {
+				int u = from[in];
+				if(contracted[u]) continue;
+				search(u, s, cost[in] + maxOut);
+				for(int out = headOut[s]; out >= 0; out = nextOut[out]) {
+					int w = to[out];
+					if(contracted[w] || w == u) continue;
+					double c = cost[in] + cost[out];
+					if(witnessMark[w] == witnessRun && witness[w] < c - tie(c)) continue;
+					needed++;
+					if(add) addEdge(u, w, c, in, out);
+				}
+			}
+			return needed;
+		}
+		
+		/**
+		 * Helper method that runs witness search from the state, which doesn't go through the
+		 * contracted or the skipped state, and stops at given cost or after settling
+		 * {@link ContractionHierarchy#WITNESS_LIMIT} states.
+		 * 
+		 * @param source id of the state to search from
+		 * @param skipped id of the state which is being contracted
+		 * @param limit greatest cost of interest
+		 */
+		private void search(int source, int skipped, double limit) {
+			witnessRun++;
+			witnessOpen.clear();
+			witnessMark[source] = witnessRun;
+			witness[source] = 0.0;
+			witnessOpen.add(source, 0.0);
+			for(int settled = 0; !witnessOpen.isEmpty() && settled < WITNESS_LIMIT; settled++) {
+				int s = witnessOpen.poll();
+				if(witness[s] > limit) break;
+				for(int e = headOut[s]; e >= 0; e = nextOut[e]) {
+					int t = to[e];
+					if(contracted[t] || t == skipped) continue;
+					double c = witness[s] + cost[e];
+					if(witnessMark[t] != witnessRun) {
+						witnessMark[t] = witnessRun;
+						witness[t] = c;
+						witnessOpen.add(t, c);
+					} else if(c < witness[t]) {
+						witness[t] = c;
+						if(witnessOpen.contains(t)) {
+							witnessOpen.decreaseKey(t, c);
+						} else {
+							witnessOpen.add(t, c);
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Helper method that adds edge between the states, or updates the existing one if the new
+		 * edge is cheaper. Existing edge which is as (nearly) cheap as the new one is marked as ambiguous.
+		 * 
+		 * @param u id of the source state
+		 * @param w id of the target state
+		 * @param c cost of the edge
+		 * @param a first edge a shortcut is made of, <code>-1</code> for transition
+		 * @param b second edge a shortcut is made of, <code>-1</code> for transition
+		 */
+		private void addEdge(int u, int w, double c, int a, int b) {
+			for(int e = headOut[u]; e >= 0; e = nextOut[e]) {
+				if(to[e] != w) continue;
+				if(c < cost[e] - tie(c)) {
+					cost[e] = c;
+					first[e] = a;
+					second[e] = b;
+					ambiguous[e] = false;
+				} else if(c <= cost[e] + tie(c)) {
+					cost[e] = Math.min(cost[e], c);
+					ambiguous[e] = true;
+				}
+				return;
+			}
+			
+			if(count == from.length) {
+				int length = 2 * count;
+				from = Arrays.copyOf(from, length);
+				to = Arrays.copyOf(to, length);
+				cost = Arrays.copyOf(cost, length);
+				first = Arrays.copyOf(first, length);
+				second = Arrays.copyOf(second, length);
+				ambiguous = Arrays.copyOf(ambiguous, length);
+				nextOut = Arrays.copyOf(nextOut, length);
+				nextIn = Arrays.copyOf(nextIn, length);
+			}
+			int e = count++;
+			from[e] = u;
+			to[e] = w;
+			cost[e] = c;
+			first[e] = a;
+			second[e] = b;
+			ambiguous[e] = false;
+			nextOut[e] = headOut[u];
+			headOut[u] = e;
+			nextIn[e] = headIn[w];
+			headIn[w] = e;
+		}
+		
+	}
+	
+}
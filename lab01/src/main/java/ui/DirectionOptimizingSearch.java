@@ -0,0 +1,333 @@
+package ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class is used to search the state graph with level-synchronous, direction-optimizing breadth-first
+ * search on several threads.<br>
+ * Search finds all states of one level before the next one, and keeps reached states and the
+ * current level in bitmaps with one bit per state. Each level is split among the threads by words
+ * of the bitmaps. Top-down step expands states of the current level and claims their unreached
+ * successors by setting their bits atomically. Bottom-up step goes through unreached states and
+ * looks for any predecessor in the current level, which is cheaper when the level is large, since
+ * each state stops at the first such predecessor. Search switches to bottom-up steps when the
+ * transitions of the current level outnumber a fraction of the transitions of unreached states,
+ * and back to top-down steps when the level gets small.<br>
+ * Search stops at the first level with a goal state and returns a path with the fewest transitions
+ * to the goal state with the lowest id in that level. Only levels of states are recorded during the
+ * search, and the path is found afterwards by following predecessors with the lowest ids, so it
+ * doesn't depend on the order in which threads reach the states.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class DirectionOptimizingSearch {
+	
+	/** Top-down steps are used while transitions of the level are fewer than unexplored transitions divided by this value. */
+	private static final int ALPHA = 14;
+	/** Bottom-up steps are used while the level has more states than all states divided by this value. */
+	private static final int BETA = 24;
+	/** Number of tasks each thread gets in one step. */
+	private static final int TASKS_PER_THREAD = 8;
+	
+	/** Graph to search. */
+	private StateGraph graph;
+	/** Reversed graph, used by bottom-up steps. */
+	private StateGraph reverse;
+	/** Number of worker threads. */
+	private int threads;
+	/** Number of states reached by the last search. */
+	private int visited;
+	/** Number of bottom-up steps made by the last search. */
+	private int bottomUpSteps;
+	
+	/** Flags marking goal states. */
+	private boolean[] goal;
+	/** Level of each reached state, <code>-1</code> for states which were not reached. */
+	private int[] level;
+	/** Bitmap of reached states. */
+	private AtomicLongArray seen;
+	/** Bitmap of states in the current level. */
+	private AtomicLongArray frontier;
+	/** Bitmap of states in the next level. */
+	private AtomicLongArray next;
+	
+	/**
+	 * Constructor creates new search over given graph.
+	 * 
+	 * @param graph to search
+	 * @param threads number of worker threads
+	 * @throws IllegalArgumentException if number of threads is lower than 1
+	 */
+	public DirectionOptimizingSearch(StateGraph graph, int threads) {
+		if(threads < 1)
+			throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads + ".");
+		this.graph = graph;
+		this.threads = threads;
+	}
+	
+	/**
+	 * @return number of states reached by the last search, including the last level
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * @return number of bottom-up steps made by the last search
+	 */
+	public int getBottomUpSteps() {
+		return bottomUpSteps;
+	}
+	
+	/**
+	 * Searches for the path with the fewest transitions.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @return ids of states on the found path, or <code>null</code> if there is no path
+	 */
+	public int[] bfs(int init, boolean[] goal) {
+		int n = graph.size();
+		int words = (n + 63) >>> 6;
+		this.goal = goal;
+		level = new int[n];
+		Arrays.fill(level, -1);
+		seen = new AtomicLongArray(words);
+		frontier = new AtomicLongArray(words);
+		next = new AtomicLongArray(words);
+		bottomUpSteps = 0;
+		
+		level[init] = 0;
+		seen.set(init >>> 6, 1L << init);
+		frontier.set(init >>> 6, 1L << init);
+		visited = 1;
+		if(goal[init]) return new int[] {init};
+		
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			long frontierEdges = graph.succEnd(init) - graph.succStart(init);
+			long unexplored = graph.edgeCount() - frontierEdges;
+			long frontierSize = 1;
+			boolean bottomUp = false;
+			int found = -1;
+			for(int depth = 0; frontierSize > 0 && found < 0; depth++) {
+				if(!bottomUp && frontierEdges > unexplored / ALPHA) {
+					bottomUp = true;
+					if(reverse == null) reverse = graph.reverse();
+				} else if(bottomUp && frontierSize < n / BETA) {
+					bottomUp = false;
+				}
+				
+				Step step = step(pool, depth, bottomUp, words);
+				if(bottomUp) bottomUpSteps++;
+				
+				AtomicLongArray done = frontier;
+				frontier = next;
+				next = done;
+				for(int w = 0; w < words; w++) {
+					next.set(w, 0L);
+				}
+				
+				visited += step.size;
+				frontierSize = step.size;
+				frontierEdges = step.edges;
+				unexplored -= step.edges;
+				found = step.goal;
+			}
+			return found < 0 ? null : path(found);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Helper method that finds the next level with tasks run in the pool.
+	 * 
+	 * @param pool running the tasks
+	 * @param depth level of the current states
+	 * @param bottomUp <code>true</code> for bottom-up step, <code>false</code> for top-down step
+	 * @param words number of words in the bitmaps
+	 * @return merged result of all tasks
+	 */
+	private Step step(ForkJoinPool pool, int depth, boolean bottomUp, int words) {
+		int tasks = Math.min(words, threads * TASKS_PER_THREAD);
+		List<ForkJoinTask<Step>> pending = new ArrayList<>(tasks);
+		for(int i = 0; i < tasks; i++) {
+			int from = (int) ((long) words * i / tasks);
+			int to = (int) ((long) words * (i + 1) / tasks);
+			pending.add(pool.submit(() -> bottomUp ? bottomUp(depth, from, to) : topDown(depth, from, to)));
+		}
+		
+		Step total = new Step();
+		for(ForkJoinTask<Step> task : pending) {
+			total.merge(task.join());
+		}
+		return total;
+	}
+	
+	/**
+	 * Helper method that expands states of the current level in the given words of the bitmap.
+	 * 
+	 * @param depth level of the current states
+	 * @param from index of the first word
+	 * @param to index after the last word
+	 * @return states claimed for the next level
+	 */
+	private Step topDown(int depth, int from, int to) {
+		Step step = new Step();
+		for(int w = from; w < to; w++) {
+			for(long bits = frontier.get(w); bits != 0L; bits &= bits - 1) {
+				int s = (w << 6) | Long.numberOfTrailingZeros(bits);
+				for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+					int t = graph.succState(e);
+					if(claim(t)) {
+						level[t] = depth + 1;
+						set(next, t);
+						step.add(t, graph.succEnd(t) - graph.succStart(t), goal[t]);
+					}
+				}
+			}
+		}
+		return step;
+	}
+	
+	/**
+	 * Helper method that finds unreached states in the given words of the bitmap with a
+	 * predecessor in the current level. Only this task writes the given words.
+	 * 
+	 * @param depth level of the current states
+	 * @param from index of the first word
+	 * @param to index after the last word
+	 * @return states found for the next level
+	 */
+	private Step bottomUp(int depth, int from, int to) {
+		Step step = new Step();
+		int n = graph.size();
+		for(int w = from; w < to; w++) {
+			long reached = seen.get(w);
+			long added = 0L;
+			for(long bits = ~reached; bits != 0L; bits &= bits - 1) {
+				int t = (w << 6) | Long.numberOfTrailingZeros(bits);
+				if(t >= n) break;
+				for(int e = reverse.succStart(t), end = reverse.succEnd(t); e < end; e++) {
+					if(!test(frontier, reverse.succState(e))) continue;
+					level[t] = depth + 1;
+					added |= 1L << t;
+					step.add(t, graph.succEnd(t) - graph.succStart(t), goal[t]);
+					break;
+				}
+			}
+			if(added != 0L) {
+				seen.set(w, reached | added);
+				next.set(w, added);
+			}
+		}
+		return step;
+	}
+	
+	/**
+	 * Helper method that finds the path to the state by following predecessors one level lower,
+	 * taking the predecessor with the lowest id each time.
+	 * 
+	 * @param s id of the reached state
+	 * @return ids of states on the path from the initial state to the state
+	 */
+	private int[] path(int s) {
+		if(reverse == null) reverse = graph.reverse();
+		int[] path = new int[level[s] + 1];
+		for(int i = path.length - 1; i > 0; i--) {
+			path[i] = s;
+			for(int e = reverse.succStart(s), end = reverse.succEnd(s); e < end; e++) {
+				int p = reverse.succState(e);
+				if(level[p] == i - 1) {
+					s = p;
+					break;
+				}
+			}
+		}
+		path[0] = s;
+		return path;
+	}
+	
+	/**
+	 * Helper method that marks the state as reached, if it wasn't already.
+	 * 
+	 * @param s id of the state
+	 * @return <code>true</code> if this call marked the state, <code>false</code> if it was already reached
+	 */
+	private boolean claim(int s) {
+		int w = s >>> 6;
+		long bit = 1L << s;
+		long old = seen.get(w);
+		while((old & bit) == 0L) {
+			long witness = seen.compareAndExchange(w, old, old | bit);
+			if(witness == old) return true;
+			old = witness;
+		}
+		return false;
+	}
+	
+	/**
+	 * @param bitmap to read
+	 * @param s id of the state
+	 * @return <code>true</code> if bit of the state is set, otherwise <code>false</code>
+	 */
+	private static boolean test(AtomicLongArray bitmap, int s) {
+		return (bitmap.get(s >>> 6) & (1L << s)) != 0L;
+	}
+	
+	/**
+	 * Helper method that sets the bit of the state atomically.
+	 * 
+	 * @param bitmap to change
+	 * @param s id of the state
+	 */
+	private static void set(AtomicLongArray bitmap, int s) {
+		long bit = 1L << s;
+		bitmap.getAndAccumulate(s >>> 6, bit, (a, b) -> a | b);
+	}
+	
+	/**
+	 * Class models result of one task: states found for the next level.
+	 */
+	private static class Step {
+		
+		/** Number of found states. */
+		long size;
+		/** Number of transitions from found states. */
+		long edges;
+		/** Found goal state with the lowest id, <code>-1</code> if none was found. */
+		int goal = -1;
+		
+		/**
+		 * Adds found state to the result.
+		 * 
+		 * @param s id of the state
+		 * @param degree number of transitions from the state
+		 * @param isGoal <code>true</code> if the state is a goal state
+		 */
+		void add(int s, int degree, boolean isGoal) {
+			size++;
+			edges += degree;
+			if(isGoal && (goal < 0 || s < goal)) goal = s;
+		}
+		
+		/**
+		 * Adds result of another task to this one.
+		 * 
+		 * @param other result of the task
+		 */
+		void merge(Step other) {
+			size += other.size;
+			edges += other.edges;
+			if(other.goal >= 0 && (goal < 0 || other.goal < goal)) goal = other.goal;
+		}
+	}
+	
+}
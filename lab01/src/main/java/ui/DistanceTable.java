@@ -0,0 +1,272 @@
+package ui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Class models table of the lowest costs from every state to the nearest goal state.<br>
+ * Table is computed with one Dijkstra search started from all goal states at once over the
+ * reversed graph, so it costs the same as a single UCS run instead of one run per state.<br>
+ * Following next states from a state gives the path UCS would find from it whenever the cheapest
+ * path is unique. States from which more than one path is (nearly) the cheapest are marked as not
+ * exact, because UCS chooses between such paths by its order of expansion. Table can be saved to a
+ * file and loaded back for the same graph, which is recognized by its {@link StateGraph#checksum()}.
+ * Format (big-endian):
+ * <pre>
+ * int magic, int version, int states, int transitions, long checksum,
+ * double[states] costs, int[states] next states, byte[states] exact flags
+ * </pre>
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class DistanceTable {
+	
+	/** Magic number at the start of the file ("UIDT"). */
+	private static final int MAGIC = 0x55494454;
+	/** Version of the format. */
+	private static final int VERSION = 2;
+	/** Relative difference of path costs under which paths are considered equally cheap. */
+	private static final double TIE = 1e-9;
+	
+	/** Graph the table was computed for. */
+	private StateGraph graph;
+	/** Lowest cost to the goal for each state, <code>Infinity</code> if goal is unreachable. */
+	private double[] cost;
+	/** Next state on the cheapest path to the goal, <code>-1</code> for goal and unreachable states. */
+	private int[] next;
+	/** Flags marking states from which following next states gives the path found by UCS. */
+	private boolean[] exact;
+	
+	/**
+	 * Constructor creates table using given arrays.
+	 * 
+	 * @param graph the table was computed for
+	 * @param cost lowest costs to the goal
+	 * @param next next states on the cheapest paths
+	 * @param exact flags marking states whose paths are the ones found by UCS
+	 */
+	private DistanceTable(StateGraph graph, double[] cost, int[] next, boolean[] exact) {
+		this.graph = graph;
+		this.cost = cost;
+		this.next = next;
+		this.exact = exact;
+	}
+	
+	/**
+	 * Computes lowest costs to the goal states for all states of the given graph.
+	 * 
+	 * @param graph to compute the table for
+	 * @param goal flags marking goal states
+	 * @return computed table
+	 */
+	public static DistanceTable toGoals(StateGraph graph, boolean[] goal) {
+		int n = graph.size();
+		StateGraph reversed = graph.reverse();
+		double[] cost = new double[n];
+		int[] next = new int[n];
+		Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		Arrays.fill(next, -1);
+		
+		IndexedHeap open = new IndexedHeap(n);
+		for(int i = 0; i < n; i++) {
+			if(goal[i]) {
+				cost[i] = 0.0;
+				open.add(i, 0.0);
+			}
+		}
+		
+		int[] order = new int[n];
+		int polled = 0;
+		while(!open.isEmpty()) {
+			int s = open.poll();
+			order[polled++] = s;
+			for(int e = reversed.succStart(s), end = reversed.succEnd(s); e < end; e++) {
+				int p = reversed.succState(e);
+				double c = cost[s] + reversed.succCost(e);
+				if(c < cost[p]) {
+					cost[p] = c;
+					next[p] = s;
+					if(open.contains(p)) {
+						open.decreaseKey(p, c);
+					} else {
+						open.add(p, c);
+					}
+				}
+			}
+		}
+		
+		boolean[] exact = new boolean[n];
+		for(int i = 0; i < n; i++) {
+			if(Double.isInfinite(cost[i])) exact[i] = true;
+		}
+		for(int i = 0; i < polled; i++) {
+			int s = order[i];
+			exact[s] = next[s] < 0 || (exact[next[s]] && uniqueNext(graph, cost, s));
+		}
+		return new DistanceTable(graph, cost, next, exact);
+	}
+	
+	/**
+	 * Loads table saved by {@link #save(String)} for the given graph.
+	 * 
+	 * @param graph the table was computed for
+	 * @param path of the file
+	 * @return loaded table
+	 * @throws IOException if reading fails, file is not a saved table or it was saved for a different graph
+	 */
+	public static DistanceTable load(StateGraph graph, String path) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(path)), 1 << 16))) {
+			if(in.readInt() != MAGIC)
+				throw new IOException(path + " is not a distance table.");
+			int version = in.readInt();
+			if(version != VERSION)
+				throw new IOException("Unsupported version " + version + " of distance table " + path + ".");
+			int n = in.readInt();
+			int m = in.readInt();
+			long checksum = in.readLong();
+			if(n != graph.size() || m != graph.edgeCount() || checksum != graph.checksum())
+				throw new IOException("Distance table " + path + " was saved for a different state space.");
+			
+			double[] cost = new double[n];
+			int[] next = new int[n];
+			boolean[] exact = new boolean[n];
+			for(int i = 0; i < n; i++) {
+				cost[i] = in.readDouble();
+			}
+			for(int i = 0; i < n; i++) {
+				next[i] = in.readInt();
+			}
+			for(int i = 0; i < n; i++) {
+				exact[i] = in.readBoolean();
+			}
+			return new DistanceTable(graph, cost, next, exact);
+		}
+	}
+	
+	/**
+	 * Saves the table to a binary file.
+	 * 
+	 * @param path of the file
+	 * @throws IOException if writing fails
+	 */
+	public void save(String path) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(path)), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(cost.length);
+			out.writeInt(graph.edgeCount());
+			out.writeLong(graph.checksum());
+			for(double c : cost) {
+				out.writeDouble(c);
+			}
+			for(int s : next) {
+				out.writeInt(s);
+			}
+			for(boolean e : exact) {
+				out.writeBoolean(e);
+			}
+		}
+	}
+	
+	/**
+	 * Checks if the table was computed for given graph and goal states. Graphs which differ only in
+	 * heuristic values share the table, graphs with different states, transitions or costs don't.
+	 * 
+	 * @param graph to check
+	 * @param goal flags marking goal states
+	 * @return <code>true</code> if table can be used for the graph and the goal states, otherwise <code>false</code>
+	 */
+	public boolean fits(StateGraph graph, boolean[] goal) {
+		if(graph.size() != cost.length || graph.checksum() != this.graph.checksum()) return false;
+		for(int i = 0; i < goal.length; i++) {
+			if(goal[i] != (next[i] < 0 && cost[i] == 0.0)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @param state id of the state
+	 * @return lowest cost to the goal, <code>Infinity</code> if goal is unreachable
+	 */
+	public double cost(int state) {
+		return cost[state];
+	}
+	
+	/**
+	 * @param state id of the state
+	 * @return next state on the cheapest path to the goal, <code>-1</code> for goal and unreachable states
+	 */
+	public int next(int state) {
+		return next[state];
+	}
+	
+	/**
+	 * @param state id of the state
+	 * @return <code>true</code> if path given by the table is the one UCS finds from the state, otherwise <code>false</code>
+	 */
+	public boolean isExact(int state) {
+		return exact[state];
+	}
+	
+	/**
+	 * @param state id of the state
+	 * @return ids of states on the cheapest path from the state to the goal, or <code>null</code> if goal is unreachable
+	 */
+	public int[] path(int state) {
+		if(Double.isInfinite(cost[state])) return null;
+		
+		int length = 1;
+		for(int s = state; next[s] >= 0; s = next[s]) length++;
+		int[] path = new int[length];
+		path[0] = state;
+		for(int i = 1; i < length; i++) {
+			path[i] = next[path[i - 1]];
+		}
+		return path;
+	}
+	
+	/**
+	 * Returns cost of the cheapest path from given state to the goal, summed from the given state
+	 * forward like it is done during the search, so the result is the same as the price of the node
+	 * found by UCS (table costs are summed from the goal backwards and can differ in rounding).
+	 * When all transition costs are integers, sums are exact in both directions, so the table cost
+	 * is returned without following the path.
+	 * 
+	 * @param state id of the state
+	 * @return cost of the path, <code>Infinity</code> if goal is unreachable
+	 */
+	public double pathCost(int state) {
+		if(Double.isInfinite(cost[state]) || graph.maxIntegerCost() >= 0) return cost[state];
+		
+		double price = 0.0;
+		for(int s = state; next[s] >= 0; s = next[s]) {
+			price += graph.succCost(graph.findEdge(s, next[s]));
+		}
+		return price;
+	}
+	
+	/**
+	 * Helper method that checks if only one transition of the state leads to a (nearly) cheapest path.
+	 * 
+	 * @param graph of the state
+	 * @param cost lowest costs to the goal
+	 * @param state id of the state
+	 * @return <code>true</code> if the cheapest transition is unique, otherwise <code>false</code>
+	 */
+	private static boolean uniqueNext(StateGraph graph, double[] cost, int state) {
+		double limit = cost[state] + TIE * Math.max(1.0, cost[state]);
+		int count = 0;
+		for(int e = graph.succStart(state), end = graph.succEnd(state); e < end; e++) {
+			if(graph.succCost(e) + cost[graph.succState(e)] <= limit) count++;
+		}
+		return count == 1;
+	}
+	
+}
@@ -0,0 +1,633 @@
+package ui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Class is used to search state spaces given by a {@link StateGenerator} with BFS or UCS whose
+ * reached states are kept on disk instead of in memory.<br>
+ * Search goes layer by layer, where a layer holds all states with the same price (or depth for
+ * BFS). Successors of the expanded layer are collected in memory up to the memory budget, sorted
+ * by state and written as run files of the layer they belong to. When a layer is next, its runs
+ * are merged, duplicates inside the layer are dropped, and so are states found in any earlier
+ * layer, with a merge against one sorted file of all states reached so far. The same merge writes
+ * the layer and the new file of reached states, so each layer reads reached states only once.
+ * Runs are merged at most 128 at a time, and fewer if their buffers don't fit in the memory
+ * budget, in as many passes as needed. This is correct for any non-negative costs and
+ * also for spaces whose transitions are not reversible. Files hold pairs of a state and its parent,
+ * and the initial state is its own parent, so the path is found afterwards by looking parents up
+ * in the file of reached states. Goal is tested when a layer is made, and the goal state with the
+ * lowest encoding in the first layer with one is returned. Every file is deleted when it is no
+ * longer needed, and all remaining ones when the search ends.
+ * Record format (big-endian): <code>long state, long parent</code>.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class ExternalSearch {
+	
+	/** Default memory budget for collected successors in bytes. */
+	public static final long DEFAULT_MEMORY = 64L << 20;
+	
+	/** Size of one record in bytes. */
+	private static final int RECORD = 16;
+	/** Size of the buffer of each open file in bytes. */
+	private static final int BUFFER = 1 << 16;
+	/** Maximal number of run files merged at once. */
+	private static final int MAX_FAN_IN = 128;
+	
+	/** State space to search. */
+	private StateGenerator generator;
+	/** Directory in which files of each search are made. */
+	private Path directory;
+	/** Maximal number of collected successors kept in memory. */
+	private int capacity;
+	/** Maximal number of run files merged at once, so their buffers fit in the memory budget. */
+	private int fanIn;
+	/** Receives a line about each layer, <code>null</code> if it is not needed. */
+	private Consumer<String> report;
+	
+	/** Number of states in the layers of the last search. */
+	private long visited;
+	/** Number of bytes read by the last search. */
+	private long bytesRead;
+	/** Number of bytes written by the last search. */
+	private long bytesWritten;
+	
+	/** Encoded initial state of the current search. */
+	private long init;
+	/** Directory holding files of the current search. */
+	private Path work;
+	/** Number of files made by the current search. */
+	private int fileCount;
+	/** Number of layers made so far. */
+	private int layerCount;
+	/** Sorted file of all states in the layers made so far, <code>null</code> before the first layer. */
+	private Path reached;
+	/** Run files of each layer which is not made yet, by its price. */
+	private TreeMap<Double, List<Path>> pending;
+	/** Collected successors of each layer which is not made yet, as pairs of a state and its parent. */
+	private Map<Double, long[]> collected;
+	/** Number of pairs collected for each layer. */
+	private Map<Double, Integer> collectedCount;
+	/** Number of pairs collected for all layers. */
+	private int collectedTotal;
+	
+	/**
+	 * Constructor creates new search over given state space.
+	 * 
+	 * @param generator of the state space
+	 * @param directory in which files are made
+	 * @param memory maximal number of bytes of collected successors, or of buffers of merged files, kept in memory
+	 * @throws IllegalArgumentException if memory budget holds fewer than 1024 successors
+	 */
+	public ExternalSearch(StateGenerator generator, Path directory, long memory) {
+		if(memory < 1024L * RECORD)
+			throw new IllegalArgumentException("Memory budget must be at least " + (1024 * RECORD) + " bytes, was " + memory + ".");
+		this.generator = generator;
+		this.directory = directory;
+		this.capacity = (int) Math.min(memory / RECORD, Integer.MAX_VALUE / 2 - 8);
+		this.fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memory / BUFFER - 3));
+	}
+	
+	/**
+	 * Sets receiver of a line about each layer: its price, number of states, bytes read and
+	 * written while it was made and expanded, and time it took.
+	 * 
+	 * @param report receiver of the lines, or <code>null</code> if they are not needed
+	 */
+	public void setReport(Consumer<String> report) {
+		this.report = report;
+	}
+	
+	/**
+	 * @return number of states in the layers of the last search
+	 */
+	public long getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * @return number of bytes read by the last search
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	/**
+	 * @return number of bytes written by the last search
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+	
+	/**
+	 * Searches for the path from given state to a goal state.
+	 * 
+	 * @param init encoded initial state
+	 * @param algorithm {@link Algorithm#BFS} or {@link Algorithm#UCS}
+	 * @return result node of the search, or <code>null</code> if there is no path
+	 * @throws IOException if reading or writing files fails
+	 * @throws IllegalArgumentException if algorithm is not BFS or UCS
+	 */
+	public Node search(long init, Algorithm algorithm) throws IOException {
+		if(algorithm != Algorithm.BFS && algorithm != Algorithm.UCS)
+			throw new IllegalArgumentException("Algorithm " + algorithm.getName() + " can't search in external memory.");
+		boolean depth = algorithm == Algorithm.BFS;
+		
+		Files.createDirectories(directory);
+		this.init = init;
+		work = Files.createTempDirectory(directory, "search");
+		fileCount = 0;
+		layerCount = 0;
+		reached = null;
+		pending = new TreeMap<>();
+		collected = new HashMap<>();
+		collectedCount = new HashMap<>();
+		collectedTotal = 0;
+		visited = 0;
+		bytesRead = 0;
+		bytesWritten = 0;
+		try {
+			collect(0.0, init, init);
+			flush();
+			long[] next = new long[generator.maxSuccessors()];
+			double[] costs = new double[next.length];
+			while(!pending.isEmpty()) {
+				long start = System.nanoTime();
+				long read = bytesRead;
+				long written = bytesWritten;
+				Map.Entry<Double, List<Path>> entry = pending.pollFirstEntry();
+				double price = entry.getKey();
+				Layer layer = merge(price, entry.getValue());
+				visited += layer.size;
+				
+				if(layer.goal == null && layer.size > 0) {
+					expand(layer, depth, next, costs);
+				}
+				Files.delete(layer.file);
+				if(report != null && layer.size > 0) {
+					report.accept(String.format("[LAYER]: %d [%s]: %s [STATES]: %d [READ]: %d [WRITTEN]: %d [TIME]: %.1f ms",
+							layerCount - 1, depth ? "DEPTH" : "PRICE", depth ? Long.toString((long) price) : Double.toString(price),
+							layer.size, bytesRead - read, bytesWritten - written, (System.nanoTime() - start) / 1e6));
+				}
+				if(layer.goal != null) return path(layer.goal[0], layer.goal[1]);
+			}
+			return null;
+		} finally {
+			delete();
+		}
+	}
+	
+	/**
+	 * Helper method that merges run files of the layer into a new layer file, dropping duplicates
+	 * and states of earlier layers, and finds the goal state with the lowest encoding. States of the
+	 * layer are also merged into a new file of reached states, which replaces the old one.
+	 * 
+	 * @param price of the layer
+	 * @param runs files of the layer
+	 * @return made layer
+	 * @throws IOException if reading or writing files fails
+	 */
+	private Layer merge(double price, List<Path> runs) throws IOException {
+		while(runs.size() > fanIn) {
+			List<Path> group = runs.subList(0, fanIn);
+			Path combined = combine(group);
+			group.clear();
+			runs.add(combined);
+		}
+		
+		Layer layer = new Layer(newFile(), price);
+		Path union = newFile();
+		List<Reader> readers = new ArrayList<>();
+		try(DataOutputStream out = writer(layer.file); DataOutputStream all = writer(union)) {
+			PriorityQueue<Reader> open = open(runs, readers);
+			Reader earlier = null;
+			boolean more = false;
+			if(reached != null) {
+				earlier = new Reader(reached);
+				readers.add(earlier);
+				more = earlier.advance();
+			}
+			
+			long last = 0L;
+			boolean any = false;
+			while(!open.isEmpty()) {
+				Reader r = open.poll();
+				long state = r.state;
+				long parent = r.parent;
+				if(r.advance()) open.add(r);
+				if(any && state == last) continue;
+				any = true;
+				last = state;
+				
+				while(more && earlier.state < state) {
+					write(all, earlier.state, earlier.parent);
+					more = earlier.advance();
+				}
+				if(more && earlier.state == state) continue;
+				
+				write(out, state, parent);
+				write(all, state, parent);
+				layer.size++;
+				if(layer.goal == null && generator.isGoal(state)) layer.goal = new long[] {state, parent};
+			}
+			while(more) {
+				write(all, earlier.state, earlier.parent);
+				more = earlier.advance();
+			}
+		} finally {
+			for(Reader r : readers) r.close();
+		}
+		for(Path run : runs) {
+			Files.delete(run);
+		}
+		if(reached != null) Files.delete(reached);
+		reached = union;
+		layerCount++;
+		return layer;
+	}
+	
+	/**
+	 * Helper method that merges run files of a layer into one run file, keeping one pair for each
+	 * state, and deletes them.
+	 * 
+	 * @param runs files to merge
+	 * @return merged run file
+	 * @throws IOException if reading or writing files fails
+	 */
+	private Path combine(List<Path> runs) throws IOException {
+		Path combined = newFile();
+		List<Reader> readers = new ArrayList<>();
+		try(DataOutputStream out = writer(combined)) {
+			PriorityQueue<Reader> open = open(runs, readers);
+			long last = 0L;
+			boolean any = false;
+			while(!open.isEmpty()) {
+				Reader r = open.poll();
+				if(!any || r.state != last) write(out, r.state, r.parent);
+				any = true;
+				last = r.state;
+				if(r.advance()) open.add(r);
+			}
+		} finally {
+			for(Reader r : readers) r.close();
+		}
+		for(Path run : runs) {
+			Files.delete(run);
+		}
+		return combined;
+	}
+	
+	/**
+	 * Helper method that opens readers of the files and queues those which aren't empty.
+	 * 
+	 * @param files to read
+	 * @param readers list to which every opened reader is added, so it can be closed
+	 * @return queue of readers ordered by their first pair
+	 * @throws IOException if opening or reading files fails
+	 */
+	private PriorityQueue<Reader> open(List<Path> files, List<Reader> readers) throws IOException {
+		PriorityQueue<Reader> open = new PriorityQueue<>();
+		for(Path file : files) {
+			Reader r = new Reader(file);
+			readers.add(r);
+			if(r.advance()) open.add(r);
+		}
+		return open;
+	}
+	
+	/**
+	 * Helper method that writes a pair of a state and its parent.
+	 * 
+	 * @param out output of the file
+	 * @param state encoded state
+	 * @param parent encoded parent of the state
+	 * @throws IOException if writing fails
+	 */
+	private void write(DataOutputStream out, long state, long parent) throws IOException {
+		out.writeLong(state);
+		out.writeLong(parent);
+		bytesWritten += RECORD;
+	}
+	
+	/**
+	 * Helper method that generates successors of all states of the layer and writes them to run files.
+	 * 
+	 * @param layer to expand
+	 * @param depth <code>true</code> if layers are ordered by depth, <code>false</code> if by price
+	 * @param next array for encoded successors
+	 * @param costs array for costs of transitions to successors
+	 * @throws IOException if reading or writing files fails
+	 */
+	private void expand(Layer layer, boolean depth, long[] next, double[] costs) throws IOException {
+		try(Reader r = new Reader(layer.file)) {
+			while(r.advance()) {
+				for(int i = 0, k = generator.successors(r.state, next, costs); i < k; i++) {
+					collect(depth ? layer.price + 1.0 : layer.price + costs[i], next[i], r.state);
+				}
+			}
+		}
+		flush();
+	}
+	
+	/**
+	 * Helper method that collects successor for the layer with given price, writing all collected
+	 * successors to run files when the memory budget is full.
+	 * 
+	 * @param price of the layer
+	 * @param state encoded successor
+	 * @param parent encoded state whose successor it is
+	 * @throws IOException if writing fails
+	 */
+	private void collect(double price, long state, long parent) throws IOException {
+		if(collectedTotal == capacity) flush();
+		long[] pairs = collected.get(price);
+		int count = collectedCount.getOrDefault(price, 0);
+		if(pairs == null) {
+			pairs = new long[64];
+			collected.put(price, pairs);
+		} else if(2 * count == pairs.length) {
+			pairs = Arrays.copyOf(pairs, (int) Math.min(2L * pairs.length, 2L * capacity));
+			collected.put(price, pairs);
+		}
+		pairs[2 * count] = state;
+		pairs[2 * count + 1] = parent;
+		collectedCount.put(price, count + 1);
+		collectedTotal++;
+	}
+	
+	/**
+	 * Helper method that sorts collected successors of each layer and writes them to a new run
+	 * file of that layer, keeping one pair for each state.
+	 * 
+	 * @throws IOException if writing fails
+	 */
+	private void flush() throws IOException {
+		for(Map.Entry<Double, long[]> entry : collected.entrySet()) {
+			long[] pairs = entry.getValue();
+			int count = collectedCount.get(entry.getKey());
+			sort(pairs, count);
+			
+			Path run = newFile();
+			try(DataOutputStream out = writer(run)) {
+				for(int i = 0; i < count; i++) {
+					if(i > 0 && pairs[2 * i] == pairs[2 * i - 2]) continue;
+					out.writeLong(pairs[2 * i]);
+					out.writeLong(pairs[2 * i + 1]);
+					bytesWritten += RECORD;
+				}
+			}
+			pending.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(run);
+		}
+		collected.clear();
+		collectedCount.clear();
+		collectedTotal = 0;
+	}
+	
+	/**
+	 * Helper method that finds the path to the state by looking up parents in the file of reached states.
+	 * Price of each state on the path is computed from costs of transitions between them.
+	 * 
+	 * @param state encoded goal state
+	 * @param parent encoded parent of the goal state
+	 * @return node with parents on the path from the initial state
+	 * @throws IOException if reading fails
+	 */
+	private Node path(long state, long parent) throws IOException {
+		long[] path = new long[16];
+		int length = 0;
+		path[length++] = state;
+		while(state != init) {
+			long[] found = find(reached, parent);
+			if(found == null)
+				throw new IllegalStateException("Parent " + generator.name(parent) + " is not in any layer.");
+			if(length == path.length) path = Arrays.copyOf(path, 2 * length);
+			path[length++] = parent;
+			state = parent;
+			parent = found[0];
+		}
+		
+		long[] next = new long[generator.maxSuccessors()];
+		double[] costs = new double[next.length];
+		double price = 0.0;
+		Node result = new Node(generator.name(path[length - 1]), price, null);
+		for(int i = length - 2; i >= 0; i--) {
+			double cost = Double.POSITIVE_INFINITY;
+			for(int j = 0, k = generator.successors(path[i + 1], next, costs); j < k; j++) {
+				if(next[j] == path[i]) cost = Math.min(cost, costs[j]);
+			}
+			price += cost;
+			result = new Node(generator.name(path[i]), price, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Helper method that looks the state up in a sorted file with binary search.
+	 * 
+	 * @param file to search
+	 * @param state encoded state
+	 * @return array with encoded parent of the state, <code>null</code> if the state is not in the file
+	 * @throws IOException if reading fails
+	 */
+	private long[] find(Path file, long state) throws IOException {
+		try(RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+			long low = 0;
+			long high = in.length() / RECORD - 1;
+			while(low <= high) {
+				long mid = (low + high) >>> 1;
+				in.seek(mid * RECORD);
+				long s = in.readLong();
+				bytesRead += 8;
+				if(s < state) {
+					low = mid + 1;
+				} else if(s > state) {
+					high = mid - 1;
+				} else {
+					bytesRead += 8;
+					return new long[] {in.readLong()};
+				}
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * @return path of a new file in the directory of the current search
+	 */
+	private Path newFile() {
+		return work.resolve((fileCount++) + ".bin");
+	}
+	
+	/**
+	 * @param file to write
+	 * @return buffered writer of the file
+	 * @throws IOException if file can't be opened
+	 */
+	private static DataOutputStream writer(Path file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER));
+	}
+	
+	/**
+	 * Helper method that deletes all files of the current search and its directory.
+	 * 
+	 * @throws IOException if deleting fails
+	 */
+	private void delete() throws IOException {
+		try(Stream<Path> files = Files.list(work)) {
+			for(Path f : (Iterable<Path>) files::iterator) {
+				Files.delete(f);
+			}
+		}
+		Files.delete(work);
+	}
+	
+	/**
+	 * Helper method that sorts pairs by state and then by parent, with heapsort so no extra memory is needed.
+	 * 
+	 * @param pairs states and their parents
+	 * @param count number of pairs
+	 */
+	private static void sort(long[] pairs, int count) {
+		for(int i = count / 2 - 1; i >= 0; i--) {
+			siftDown(pairs, i, count);
+		}
+		for(int end = count - 1; end > 0; end--) {
+			swap(pairs, 0, end);
+			siftDown(pairs, 0, end);
+		}
+	}
+	
+	/**
+	 * @param pairs states and their parents
+	 * @param i index of the pair to move down the heap
+	 * @param count number of pairs in the heap
+	 */
+	private static void siftDown(long[] pairs, int i, int count) {
+		while(true) {
+			int child = 2 * i + 1;
+			if(child >= count) return;
+			if(child + 1 < count && less(pairs, child, child + 1)) child++;
+			if(!less(pairs, i, child)) return;
+			swap(pairs, i, child);
+			i = child;
+		}
+	}
+	
+	/**
+	 * @param pairs states and their parents
+	 * @param a index of the first pair
+	 * @param b index of the second pair
+	 * @return <code>true</code> if the first pair comes before the second one
+	 */
+	private static boolean less(long[] pairs, int a, int b) {
+		long sa = pairs[2 * a];
+		long sb = pairs[2 * b];
+		return sa < sb || (sa == sb && pairs[2 * a + 1] < pairs[2 * b + 1]);
+	}
+	
+	/**
+	 * @param pairs states and their parents
+	 * @param a index of the first pair
+	 * @param b index of the second pair
+	 */
+	private static void swap(long[] pairs, int a, int b) {
+		long s = pairs[2 * a];
+		long p = pairs[2 * a + 1];
+		pairs[2 * a] = pairs[2 * b];
+		pairs[2 * a + 1] = pairs[2 * b + 1];
+		pairs[2 * b] = s;
+		pairs[2 * b + 1] = p;
+	}
+	
+	/**
+	 * Class models file of one layer.
+	 */
+	private static class Layer {
+		
+		/** File with sorted pairs of states and their parents. */
+		final Path file;
+		/** Price or depth of the states. */
+		final double price;
+		/** Number of states. */
+		long size;
+		/** Goal state with the lowest encoding and its parent, <code>null</code> if there is none. */
+		long[] goal;
+		
+		/**
+		 * @param file of the layer
+		 * @param price of the states
+		 */
+		Layer(Path file, double price) {
+			this.file = file;
+			this.price = price;
+		}
+	}
+	
+	/**
+	 * Class models sequential reader of a sorted file, ordered by its current pair.
+	 */
+	private class Reader implements Comparable<Reader>, AutoCloseable {
+		
+		/** Input of the file. */
+		private final DataInputStream in;
+		/** Current state. */
+		long state;
+		/** Parent of the current state. */
+		long parent;
+		
+		/**
+		 * @param file to read
+		 * @throws IOException if file can't be opened
+		 */
+		Reader(Path file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER));
+		}
+		
+		/**
+		 * Reads the next pair.
+		 * 
+		 * @return <code>true</code> if pair was read, <code>false</code> at the end of the file
+		 * @throws IOException if reading fails
+		 */
+		boolean advance() throws IOException {
+			try {
+				state = in.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			parent = in.readLong();
+			bytesRead += RECORD;
+			return true;
+		}
+		
+		@Override
+		public int compareTo(Reader o) {
+			int c = Long.compare(state, o.state);
+			return c != 0 ? c : Long.compare(parent, o.parent);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+	
+}
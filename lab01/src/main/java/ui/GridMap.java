@@ -0,0 +1,299 @@
+package ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Class models 8-connected grid map with uniform costs, kept as a bitmap of passable cells.<br>
+ * Map is read from a text file with one row of cells per line, optionally preceded by the header
+ * of the common benchmark format (<code>type</code>, <code>height</code>, <code>width</code> and
+ * <code>map</code> lines). Cells <code>'.'</code>, <code>'G'</code> and <code>'S'</code> are
+ * passable and all others are blocked. Moving along a row or a column costs 1 and moving
+ * diagonally costs square root of 2, and diagonal move is allowed only if both cells it passes
+ * by are passable. Cell in column x and row y is named <code>cx_y</code>, but names are created
+ * only for cells of printed paths, or when the map is expanded to a {@link StateSpace}.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class GridMap {
+	
+	/** Cost of a diagonal move. */
+	public static final double DIAGONAL = Math.sqrt(2);
+	/** Relative amount by which heuristic of the expanded state space is lowered, so rounding of summed costs doesn't break its checks. */
+	static final double HEURISTIC_MARGIN = 1e-9;
+	
+	/** Number of cells in one row. */
+	private int width;
+	/** Number of rows. */
+	private int height;
+	/** Bitmap of passable cells, row by row. */
+	private long[] passable;
+	/** Number of passable cells. */
+	private int passableCount;
+	/** Id of the start cell, <code>-1</code> if it is not set. */
+	private int start = -1;
+	/** Id of the goal cell, <code>-1</code> if it is not set. */
+	private int goal = -1;
+	
+	/**
+	 * Constructor creates map from the bitmap of passable cells.
+	 * 
+	 * @param width number of cells in one row
+	 * @param height number of rows
+	 * @param passable bitmap of passable cells
+	 */
+	GridMap(int width, int height, long[] passable) {
+		this.width = width;
+		this.height = height;
+		this.passable = passable;
+		for(long word : passable) {
+			passableCount += Long.bitCount(word);
+		}
+	}
+	
+	/**
+	 * Loads map from the file.
+	 * 
+	 * @param path path to the map
+	 * @return loaded map
+	 * @throws IOException if map can't be read
+	 * @throws IllegalArgumentException if rows have different lengths or don't match the header
+	 */
+	public static GridMap load(String path) throws IOException {
+		int width = -1;
+		int height = -1;
+		List<String> rows = new ArrayList<>();
+		try(BufferedReader reader = Files.newBufferedReader(Path.of(path), StandardCharsets.UTF_8)) {
+			boolean header = true;
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(header) {
+					String[] parts = line.trim().split("\\s+");
+					if(parts[0].equals("type")) continue;
+					if(parts[0].equals("height")) {
+						height = Integer.parseInt(parts[1]);
+						continue;
+					}
+					if(parts[0].equals("width")) {
+						width = Integer.parseInt(parts[1]);
+						continue;
+					}
+					header = false;
+					if(parts[0].equals("map")) continue;
+				}
+				if(line.isEmpty()) continue;
+				rows.add(line);
+			}
+		}
+		
+		if(rows.isEmpty())
+			throw new IllegalArgumentException("Map " + path + " has no rows.");
+		if(height >= 0 && height != rows.size())
+			throw new IllegalArgumentException("Map should have " + height + " rows, had " + rows.size() + ".");
+		if(width < 0) width = rows.get(0).length();
+		
+		long[] passable = new long[(int) (((long) width * rows.size() + 63) >>> 6)];
+		for(int y = 0; y < rows.size(); y++) {
+			String row = rows.get(y);
+			if(row.length() != width)
+				throw new IllegalArgumentException("Row " + y + " should have " + width + " cells, had " + row.length() + ".");
+			for(int x = 0; x < width; x++) {
+				char c = row.charAt(x);
+				if(c == '.' || c == 'G' || c == 'S') {
+					int id = y * width + x;
+					passable[id >>> 6] |= 1L << id;
+				}
+			}
+		}
+		return new GridMap(width, rows.size(), passable);
+	}
+	
+	/**
+	 * @return number of cells in one row
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * @return number of rows
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return number of passable cells
+	 */
+	public int getPassableCount() {
+		return passableCount;
+	}
+	
+	/**
+	 * @return id of the start cell, <code>-1</code> if it is not set
+	 */
+	public int getStart() {
+		return start;
+	}
+	
+	/**
+	 * @return id of the goal cell, <code>-1</code> if it is not set
+	 */
+	public int getGoal() {
+		return goal;
+	}
+	
+	/**
+	 * Sets the start cell.
+	 * 
+	 * @param cell column and row separated by a comma, for example <code>3,7</code>
+	 * @throws IllegalArgumentException if cell is not a passable cell of the map
+	 */
+	public void setStart(String cell) {
+		start = parseCell(cell);
+	}
+	
+	/**
+	 * Sets the goal cell.
+	 * 
+	 * @param cell column and row separated by a comma, for example <code>3,7</code>
+	 * @throws IllegalArgumentException if cell is not a passable cell of the map
+	 */
+	public void setGoal(String cell) {
+		goal = parseCell(cell);
+	}
+	
+	/**
+	 * Helper method that parses the cell and finds its id.
+	 * 
+	 * @param cell column and row separated by a comma
+	 * @return id of the cell
+	 * @throws IllegalArgumentException if cell is not a passable cell of the map
+	 */
+	private int parseCell(String cell) {
+		String[] parts = cell.split(",");
+		if(parts.length != 2)
+			throw new IllegalArgumentException("Cell should be given as column,row, was " + cell + ".");
+		int x = Integer.parseInt(parts[0].trim());
+		int y = Integer.parseInt(parts[1].trim());
+		if(!isPassable(x, y))
+			throw new IllegalArgumentException("Cell " + cell + " is not a passable cell of the map.");
+		return y * width + x;
+	}
+	
+	/**
+	 * @param x column of the cell
+	 * @param y row of the cell
+	 * @return <code>true</code> if cell is on the map and is passable, otherwise <code>false</code>
+	 */
+	public boolean isPassable(int x, int y) {
+		if(x < 0 || y < 0 || x >= width || y >= height) return false;
+		int id = y * width + x;
+		return (passable[id >>> 6] & (1L << id)) != 0L;
+	}
+	
+	/**
+	 * @param id of the cell
+	 * @return name of the cell
+	 */
+	public String name(int id) {
+		return "c" + (id % width) + "_" + (id / width);
+	}
+	
+	/**
+	 * Computes cost of the cheapest path between the cells if there were no blocked cells.
+	 * 
+	 * @param from id of the first cell
+	 * @param to id of the second cell
+	 * @return octile distance between the cells
+	 */
+	public double distance(int from, int to) {
+		int dx = Math.abs(from % width - to % width);
+		int dy = Math.abs(from / width - to / width);
+		return Math.abs(dx - dy) + DIAGONAL * Math.min(dx, dy);
+	}
+	
+	/**
+	 * Expands the map to a state space with one state per passable cell and slightly lowered octile
+	 * distance to the goal cell as heuristic, so that other algorithms can search it. Transitions of each state are
+	 * sorted by ids of next states, like in any other compact form.
+	 * 
+	 * @return new state space
+	 * @throws IllegalStateException if start or goal cell is not set
+	 */
+	public StateSpace toStateSpace() {
+		if(start < 0 || goal < 0)
+			throw new IllegalStateException("Start and goal cells must be set before the map is expanded.");
+		
+		int[] cells = IntStream.range(0, width * height).filter(c -> isPassable(c % width, c / width)).toArray();
+		String[] names = new String[cells.length];
+		for(int i = 0; i < cells.length; i++) {
+			names[i] = name(cells[i]);
+		}
+		Integer[] order = new Integer[cells.length];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing(i -> names[i]));
+		int[] ids = new int[width * height];
+		for(int i = 0; i < order.length; i++) {
+			ids[cells[order[i]]] = i;
+		}
+		
+		String[] sorted = new String[order.length];
+		int[] offsets = new int[order.length + 1];
+		int[] targets = new int[order.length * 8];
+		double[] costs = new double[order.length * 8];
+		double[] heuristic = new double[order.length];
+		int e = 0;
+		for(int i = 0; i < order.length; i++) {
+			int c = cells[order[i]];
+			int x = c % width;
+			int y = c / width;
+			sorted[i] = names[order[i]];
+			offsets[i] = e;
+			heuristic[i] = distance(c, goal) * (1 - HEURISTIC_MARGIN);
+			for(int dy = -1; dy <= 1; dy++) {
+				for(int dx = -1; dx <= 1; dx++) {
+					if(dx == 0 && dy == 0 || !canMove(x, y, dx, dy)) continue;
+					int t = ids[(y + dy) * width + x + dx];
+					double cost = dx == 0 || dy == 0 ? 1 : DIAGONAL;
+					int k = e++;
+					for(; k > offsets[i] && targets[k - 1] > t; k--) {
+						targets[k] = targets[k - 1];
+						costs[k] = costs[k - 1];
+					}
+					targets[k] = t;
+					costs[k] = cost;
+				}
+			}
+		}
+		offsets[order.length] = e;
+		
+		StateGraph graph = new StateGraph(sorted, offsets, Arrays.copyOf(targets, e), Arrays.copyOf(costs, e), heuristic);
+		return StateSpace.query(name(start), Set.of(name(goal)), graph, "octile");
+	}
+	
+	/**
+	 * @param x column of the cell
+	 * @param y row of the cell
+	 * @param dx change of the column, from -1 to 1
+	 * @param dy change of the row, from -1 to 1
+	 * @return <code>true</code> if the move from the passable cell is allowed, otherwise <code>false</code>
+	 */
+	public boolean canMove(int x, int y, int dx, int dy) {
+		if(!isPassable(x + dx, y + dy)) return false;
+		return dx == 0 || dy == 0 || isPassable(x + dx, y) && isPassable(x, y + dy);
+	}
+	
+}
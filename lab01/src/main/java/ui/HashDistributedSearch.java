@@ -0,0 +1,413 @@
+package ui;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class is used to search the state graph with hash distributed A* (HDA*) on several threads.<br>
+ * Every state is owned by one worker, chosen by hash of its id. Each worker keeps open list and
+ * prices only for its own states, and sends generated successors to their owners in batches through
+ * lock-free queues. Search ends when no worker has a node cheaper than the best found path and no
+ * batch is in flight. Found path is the cheapest one if heuristic is admissible.
+ * States without heuristic value are treated as having value 0.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class HashDistributedSearch {
+	
+	/** Number of generated nodes after which a batch is sent. */
+	private static final int BATCH_SIZE = 256;
+	/** Number of expansions after which all batches are sent even if they are not full. */
+	private static final int FLUSH_INTERVAL = 64;
+	
+	/** Graph to search. */
+	private StateGraph graph;
+	/** Number of worker threads. */
+	private int threads;
+	/** Number of states expanded by the last search, by all workers. */
+	private int visited;
+	
+	/** Flags marking goal states. */
+	private boolean[] goal;
+	/** Lowest known price of each state, written only by its owner. */
+	private double[] price;
+	/** Parent of each state on the path with the lowest known price, written only by its owner. */
+	private int[] parent;
+	/** Incoming batches of each worker. */
+	private ConcurrentLinkedQueue<Batch>[] inbox;
+	/** Number of active workers increased by number of batches in flight. */
+	private AtomicLong work;
+	/** Bits of the price of the best found path. */
+	private AtomicLong best;
+	/** Goal state at the end of the best found path. */
+	private volatile int bestGoal;
+	/** Flag that marks that search is over. */
+	private volatile boolean done;
+	/** Number of states expanded by all finished workers. */
+	private AtomicInteger expanded;
+	
+	/**
+	 * Constructor creates new search over given graph.
+	 * 
+	 * @param graph to search
+	 * @param threads number of worker threads
+	 * @throws IllegalArgumentException if number of threads is lower than 1
+	 */
+	public HashDistributedSearch(StateGraph graph, int threads) {
+		if(threads < 1)
+			throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads + ".");
+		this.graph = graph;
+		this.threads = threads;
+	}
+	
+	/**
+	 * @return number of states expanded by the last search, by all workers
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * Searches for the cheapest path.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @return ids of states on the found path, or <code>null</code> if there is no path
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public int[] aStar(int init, boolean[] goal) {
+		int n = graph.size();
+		this.goal = goal;
+		price = new double[n];
+		parent = new int[n];
+		Arrays.fill(price, Double.POSITIVE_INFINITY);
+		inbox = new ConcurrentLinkedQueue[threads];
+		for(int i = 0; i < threads; i++) {
+			inbox[i] = new ConcurrentLinkedQueue<>();
+		}
+		work = new AtomicLong(threads);
+		best = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+		bestGoal = -1;
+		done = false;
+		expanded = new AtomicInteger();
+		
+		Worker[] workers = new Worker[threads];
+		for(int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i);
+		}
+		workers[owner(init)].receive(init, 0.0, -1);
+		
+		Thread[] running = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			running[i] = new Thread(workers[i], "hda-worker-" + i);
+			running[i].start();
+		}
+		for(Thread t : running) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Search was interrupted.", e);
+			}
+		}
+		visited = expanded.get();
+		
+		if(bestGoal < 0) return null;
+		int length = 0;
+		for(int s = bestGoal; s >= 0; s = parent[s]) length++;
+		int[] path = new int[length];
+		for(int s = bestGoal, i = length - 1; i >= 0; s = parent[s]) path[i--] = s;
+		return path;
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return index of the worker which owns the state
+	 */
+	private int owner(int s) {
+		long h = (s + 1) * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		return (int) (((h & 0xFFFFFFFFL) * threads) >>> 32);
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return heuristic value of the state, or 0 if it is not defined
+	 */
+	private double h(int s) {
+		return graph.hasHeuristic(s) ? graph.heuristic(s) : 0.0;
+	}
+	
+	/**
+	 * @return price of the best found path
+	 */
+	private double best() {
+		return Double.longBitsToDouble(best.get());
+	}
+	
+	/**
+	 * Helper method that records path to the goal if it is cheaper than the best found path.
+	 * 
+	 * @param s id of the goal state
+	 * @param p price of the path
+	 */
+	private void offer(int s, double p) {
+		synchronized(best) {
+			if(p < best()) {
+				best.set(Double.doubleToLongBits(p));
+				bestGoal = s;
+			}
+		}
+	}
+	
+	/**
+	 * Class models one worker, which expands states it owns.
+	 */
+	private class Worker implements Runnable {
+		
+		/** Index of the worker. */
+		private final int index;
+		/** States in the open list, ordered as binary heap. */
+		private int[] heapState = new int[64];
+		/** Prices of states in the open list. */
+		private double[] heapPrice = new double[64];
+		/** Prices increased by heuristic of states in the open list. */
+		private double[] heapTotal = new double[64];
+		/** Number of nodes in the open list. */
+		private int size;
+		/** Batches being filled for each worker. */
+		private final Batch[] outbox = new Batch[threads];
+		/** Number of states expanded by this worker. */
+		private int count;
+		
+		/**
+		 * Constructor creates worker with given index.
+		 * 
+		 * @param index of the worker
+		 */
+		Worker(int index) {
+			this.index = index;
+		}
+		
+		@Override
+		public void run() {
+			int sinceFlush = 0;
+			while(true) {
+				Batch b;
+				while((b = inbox[index].poll()) != null) {
+					for(int i = 0; i < b.size; i++) {
+						receive(b.state[i], b.price[i], b.parent[i]);
+					}
+					work.decrementAndGet();
+				}
+				
+				if(size > 0 && heapTotal[0] < best()) {
+					expand();
+					if(++sinceFlush == FLUSH_INTERVAL) {
+						flush();
+						sinceFlush = 0;
+					}
+					continue;
+				}
+				
+				flush();
+				sinceFlush = 0;
+				if(!idle()) break;
+			}
+			expanded.addAndGet(count);
+		}
+		
+		/**
+		 * Helper method that waits while worker has nothing to expand.
+		 * 
+		 * @return <code>true</code> if worker received new batch, <code>false</code> if search is over
+		 */
+		private boolean idle() {
+			if(work.decrementAndGet() == 0) {
+				done = true;
+				return false;
+			}
+			while(!done) {
+				if(!inbox[index].isEmpty()) {
+					work.incrementAndGet();
+					return true;
+				}
+				Thread.onSpinWait();
+				Thread.yield();
+			}
+			return false;
+		}
+		
+		/**
+		 * Helper method that expands the cheapest state from the open list.
+		 */
+		private void expand() {
+			int s = heapState[0];
+			double p = heapPrice[0];
+			poll();
+			if(p > price[s]) return;
+			
+			count++;
+			if(goal[s]) {
+				offer(s, p);
+				return;
+			}
+			for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+				int t = graph.succState(e);
+				double q = p + graph.succCost(e);
+				if(q + h(t) >= best()) continue;
+				
+				int o = owner(t);
+				if(o == index) {
+					receive(t, q, s);
+					continue;
+				}
+				if(outbox[o] == null) outbox[o] = new Batch();
+				Batch b = outbox[o];
+				b.add(t, q, s);
+				if(b.size == BATCH_SIZE) send(o);
+			}
+		}
+		
+		/**
+		 * Helper method that adds state owned by this worker to the open list if it is reached
+		 * cheaper than before.
+		 * 
+		 * @param s id of the state
+		 * @param p price of the state
+		 * @param from parent of the state
+		 */
+		void receive(int s, double p, int from) {
+			if(p >= price[s]) return;
+			price[s] = p;
+			parent[s] = from;
+			push(s, p, p + h(s));
+		}
+		
+		/**
+		 * Helper method that sends all batches which are not empty.
+		 */
+		private void flush() {
+			for(int o = 0; o < threads; o++) {
+				if(outbox[o] != null && outbox[o].size > 0) send(o);
+			}
+		}
+		
+		/**
+		 * Helper method that sends batch to given worker.
+		 * 
+		 * @param o index of the worker
+		 */
+		private void send(int o) {
+			work.incrementAndGet();
+			inbox[o].add(outbox[o]);
+			outbox[o] = new Batch();
+		}
+		
+		/**
+		 * Helper method that adds node to the open list.
+		 * 
+		 * @param s id of the state
+		 * @param p price of the state
+		 * @param f price increased by heuristic of the state
+		 */
+		private void push(int s, double p, double f) {
+			if(size == heapState.length) {
+				heapState = Arrays.copyOf(heapState, 2 * size);
+				heapPrice = Arrays.copyOf(heapPrice, 2 * size);
+				heapTotal = Arrays.copyOf(heapTotal, 2 * size);
+			}
+			int i = size++;
+			while(i > 0) {
+				int up = (i - 1) >>> 1;
+				if(!less(f, s, heapTotal[up], heapState[up])) break;
+				move(up, i);
+				i = up;
+			}
+			heapState[i] = s;
+			heapPrice[i] = p;
+			heapTotal[i] = f;
+		}
+		
+		/**
+		 * Helper method that removes the first node from the open list.
+		 */
+		private void poll() {
+			size--;
+			int s = heapState[size];
+			double p = heapPrice[size];
+			double f = heapTotal[size];
+			int i = 0;
+			while(true) {
+				int child = 2 * i + 1;
+				if(child >= size) break;
+				if(child + 1 < size && less(heapTotal[child + 1], heapState[child + 1], heapTotal[child], heapState[child])) child++;
+				if(!less(heapTotal[child], heapState[child], f, s)) break;
+				move(child, i);
+				i = child;
+			}
+			if(size > 0) {
+				heapState[i] = s;
+				heapPrice[i] = p;
+				heapTotal[i] = f;
+			}
+		}
+		
+		/**
+		 * Helper method that moves node inside the open list.
+		 * 
+		 * @param from index of the node
+		 * @param to new index of the node
+		 */
+		private void move(int from, int to) {
+			heapState[to] = heapState[from];
+			heapPrice[to] = heapPrice[from];
+			heapTotal[to] = heapTotal[from];
+		}
+		
+		/**
+		 * @param f1 price increased by heuristic of the first node
+		 * @param s1 id of the state of the first node
+		 * @param f2 price increased by heuristic of the second node
+		 * @param s2 id of the state of the second node
+		 * @return <code>true</code> if the first node is ordered before the second one
+		 */
+		private boolean less(double f1, int s1, double f2, int s2) {
+			int c = Double.compare(f1, f2);
+			return c != 0 ? c < 0 : s1 < s2;
+		}
+	}
+	
+	/**
+	 * Class models batch of generated nodes sent to their owner.
+	 */
+	private static class Batch {
+		
+		/** Ids of the states. */
+		final int[] state = new int[BATCH_SIZE];
+		/** Prices of the states. */
+		final double[] price = new double[BATCH_SIZE];
+		/** Parents of the states. */
+		final int[] parent = new int[BATCH_SIZE];
+		/** Number of nodes in the batch. */
+		int size;
+		
+		/**
+		 * Adds node to the batch.
+		 * 
+		 * @param s id of the state
+		 * @param p price of the state
+		 * @param from parent of the state
+		 */
+		void add(int s, double p, int from) {
+			state[size] = s;
+			price[size] = p;
+			parent[size] = from;
+			size++;
+		}
+	}
+	
+}
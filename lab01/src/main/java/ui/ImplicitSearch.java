@@ -0,0 +1,325 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Class is used to search state spaces given by a {@link StateGenerator}.<br>
+ * Successors are generated only for expanded states, and reached states are kept in a
+ * {@link StateIndex} with their prices and parents in primitive arrays. IDA* keeps only the
+ * current path, so it can search spaces whose reachable part doesn't fit in memory. Other
+ * algorithms can be limited in the number of reached states and in the expanded price.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class ImplicitSearch {
+	
+	/** State space to search. */
+	private StateGenerator generator;
+	/** Number of states expanded by the last search. */
+	private int visited;
+	/** Maximal number of states reached by BFS, UCS and A*. */
+	private int stateLimit = Integer.MAX_VALUE;
+	/** Price, increased by heuristic if it is used, above which UCS and A* stop expanding states. */
+	private double priceLimit = Double.POSITIVE_INFINITY;
+	/** Flag that marks if the last search stopped at the limit of reached states before the goal was found. */
+	private boolean limited;
+	
+	/** Reached states. */
+	private StateIndex index;
+	/** Price of each reached state. */
+	private double[] price;
+	/** Parent of each reached state, <code>-1</code> for the initial state. */
+	private int[] parent;
+	
+	/**
+	 * Constructor creates new search over given state space.
+	 * 
+	 * @param generator of the state space
+	 */
+	public ImplicitSearch(StateGenerator generator) {
+		this.generator = generator;
+	}
+	
+	/**
+	 * @return number of states expanded by the last search
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * Sets limits of BFS, UCS and A*. Search which would reach more states stops without a path,
+	 * see {@link #isLimited()}. UCS and A* don't expand states whose price (increased by heuristic
+	 * for A*) is above the price limit, so they find only paths whose price is within it.
+	 * 
+	 * @param stateLimit maximal number of reached states
+	 * @param priceLimit price above which states are not expanded
+	 */
+	public void setLimits(int stateLimit, double priceLimit) {
+		this.stateLimit = stateLimit;
+		this.priceLimit = priceLimit;
+	}
+	
+	/**
+	 * @return <code>true</code> if the last search stopped at the limit of reached states, so it is not known if there is a path
+	 */
+	public boolean isLimited() {
+		return limited;
+	}
+	
+	/**
+	 * Searches for the path from given state to a goal state.
+	 * 
+	 * @param init encoded initial state
+	 * @param algorithm to use while searching
+	 * @return result node of the search, or <code>null</code> if there is no path within the limits
+	 * @throws IllegalArgumentException if algorithm can't search generated state spaces
+	 */
+	public Node search(long init, Algorithm algorithm) {
+		return switch(algorithm) {
+		case BFS -> bfs(init);
+		case UCS -> bestFirst(init, false);
+		case ASTAR -> bestFirst(init, true);
+		case IDASTAR -> idaStar(init);
+		default -> throw new IllegalArgumentException("Algorithm " + algorithm.getName() + " can't search generated state spaces.");
+		};
+	}
+	
+	/**
+	 * Helper method that searches breadth-first. States are expanded in the order they were
+	 * reached, which is the order of their ids, so no separate queue is needed.
+	 * 
+	 * @param init encoded initial state
+	 * @return result node of the search, or <code>null</code> if there is no path
+	 */
+	private Node bfs(long init) {
+		reset(init);
+		long[] next = new long[generator.maxSuccessors()];
+		double[] costs = new double[next.length];
+		
+		for(int id = 0; id < index.size(); id++) {
+			long s = index.state(id);
+			visited++;
+			if(generator.isGoal(s)) return toNode(id);
+			
+			for(int i = 0, k = generator.successors(s, next, costs); i < k; i++) {
+				if(index.get(next[i]) >= 0) continue;
+				if(index.size() == stateLimit) return stop();
+				reach(index.add(next[i]), price[id] + costs[i], id);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Helper method that searches by the lowest price, increased by heuristic if it is used.
+	 * States reached cheaper after being expanded are opened again.
+	 * 
+	 * @param init encoded initial state
+	 * @param heur <code>true</code> if heuristic should be used
+	 * @return result node of the search, or <code>null</code> if there is no path
+	 */
+	private Node bestFirst(long init, boolean heur) {
+		reset(init);
+		long[] next = new long[generator.maxSuccessors()];
+		double[] costs = new double[next.length];
+		double[] h = new double[price.length];
+		boolean[] closed = new boolean[price.length];
+		IndexedHeap open = new IndexedHeap(price.length);
+		h[0] = heur ? generator.heuristic(init) : 0.0;
+		open.add(0, h[0]);
+		
+		while(!open.isEmpty()) {
+			int id = open.poll();
+			long s = index.state(id);
+			closed[id] = true;
+			visited++;
+			if(generator.isGoal(s)) return toNode(id);
+			if(price[id] + h[id] > priceLimit) return null;
+			
+			for(int i = 0, k = generator.successors(s, next, costs); i < k; i++) {
+				double p = price[id] + costs[i];
+				int t = index.get(next[i]);
+				if(t < 0) {
+					if(index.size() == stateLimit) return stop();
+					t = index.add(next[i]);
+					reach(t, p, id);
+					if(t >= h.length) {
+						h = Arrays.copyOf(h, price.length);
+						closed = Arrays.copyOf(closed, price.length);
+					}
+					h[t] = heur ? generator.heuristic(next[i]) : 0.0;
+					open.add(t, p + h[t]);
+				} else if(p < price[t]) {
+					reach(t, p, id);
+					if(open.contains(t)) {
+						open.decreaseKey(t, p + h[t]);
+					} else {
+						closed[t] = false;
+						visited--;
+						open.add(t, p + h[t]);
+					}
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Helper method that searches with IDA*, keeping only the current path. Each iteration is
+	 * a depth-first search which doesn't go through states on the current path and prunes states
+	 * whose price increased by heuristic exceeds the bound.
+	 * 
+	 * @param init encoded initial state
+	 * @return result node of the search, or <code>null</code> if there is no path
+	 */
+	private Node idaStar(long init) {
+		visited = 1;
+		limited = false;
+		if(generator.isGoal(init)) return new Node(generator.name(init), 0.0, null);
+		
+		int max = generator.maxSuccessors();
+		long[] path = new long[64];
+		double[] prices = new double[64];
+		long[][] next = new long[64][];
+		double[][] costs = new double[64][];
+		int[] count = new int[64];
+		int[] cursor = new int[64];
+		double bound = generator.heuristic(init);
+		visited = 0;
+		
+		while(true) {
+			double nextBound = Double.POSITIVE_INFINITY;
+			int top = 0;
+			path[0] = init;
+			prices[0] = 0.0;
+			if(next[0] == null) {
+				next[0] = new long[max];
+				costs[0] = new double[max];
+			}
+			count[0] = generator.successors(init, next[0], costs[0]);
+			cursor[0] = 0;
+			visited++;
+			
+			while(top >= 0) {
+				if(cursor[top] == count[top]) {
+					top--;
+					continue;
+				}
+				
+				int i = cursor[top]++;
+				long t = next[top][i];
+				if(onPath(path, top, t)) continue;
+				double p = prices[top] + costs[top][i];
+				double f = p + generator.heuristic(t);
+				if(f > bound) {
+					nextBound = Math.min(nextBound, f);
+					continue;
+				}
+				
+				if(++top == path.length) {
+					path = Arrays.copyOf(path, 2 * top);
+					prices = Arrays.copyOf(prices, 2 * top);
+					next = Arrays.copyOf(next, 2 * top);
+					costs = Arrays.copyOf(costs, 2 * top);
+					count = Arrays.copyOf(count, 2 * top);
+					cursor = Arrays.copyOf(cursor, 2 * top);
+				}
+				path[top] = t;
+				prices[top] = p;
+				if(generator.isGoal(t)) {
+					Node result = null;
+					for(int d = 0; d <= top; d++) {
+						result = new Node(generator.name(path[d]), prices[d], result);
+					}
+					return result;
+				}
+				
+				if(next[top] == null) {
+					next[top] = new long[max];
+					costs[top] = new double[max];
+				}
+				count[top] = generator.successors(t, next[top], costs[top]);
+				cursor[top] = 0;
+				visited++;
+			}
+			
+			if(nextBound == Double.POSITIVE_INFINITY) return null;
+			bound = nextBound;
+		}
+	}
+	
+	/**
+	 * @param path encoded states on the current path
+	 * @param top index of the last state on the path
+	 * @param state encoded state
+	 * @return <code>true</code> if state is on the path, otherwise <code>false</code>
+	 */
+	private static boolean onPath(long[] path, int top, long state) {
+		for(int d = top; d >= 0; d--) {
+			if(path[d] == state) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Helper method that clears reached states and adds the initial state.
+	 * 
+	 * @param init encoded initial state
+	 */
+	private void reset(long init) {
+		index = new StateIndex();
+		price = new double[1 << 10];
+		parent = new int[1 << 10];
+		visited = 0;
+		limited = false;
+		reach(index.add(init), 0.0, -1);
+	}
+	
+	/**
+	 * Helper method that marks the search as stopped at the limit of reached states.
+	 * 
+	 * @return <code>null</code>, as there is no path
+	 */
+	private Node stop() {
+		limited = true;
+		return null;
+	}
+	
+	/**
+	 * Helper method that records price and parent of the reached state.
+	 * 
+	 * @param id of the state
+	 * @param p price of the state
+	 * @param from parent of the state
+	 */
+	private void reach(int id, double p, int from) {
+		if(id == price.length) {
+			price = Arrays.copyOf(price, 2 * id);
+			parent = Arrays.copyOf(parent, 2 * id);
+		}
+		price[id] = p;
+		parent[id] = from;
+	}
+	
+	/**
+	 * Helper method that makes result node from the reached state.
+	 * 
+	 * @param id of the state
+	 * @return node with parents on the path from the initial state
+	 */
+	private Node toNode(int id) {
+		int length = 0;
+		for(int s = id; s >= 0; s = parent[s]) length++;
+		int[] path = new int[length];
+		for(int s = id, i = length - 1; s >= 0; s = parent[s]) path[i--] = s;
+		
+		Node result = null;
+		for(int s : path) {
+			result = new Node(generator.name(index.state(s)), price[s], result);
+		}
+		return result;
+	}
+	
+}
@@ -0,0 +1,516 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Class is used to find cheapest paths in a state space whose transition costs change, using
+ * lifelong planning A* (LPA*).<br>
+ * First plan is found like with A*, and the search keeps price of each state together with the
+ * price its predecessors give it (rhs value). When costs of some transitions change, only the
+ * states whose values no longer agree are put back into the queue, and the next plan expands
+ * only those states and the ones whose prices change because of them, instead of searching the
+ * whole state space again. Queue is ordered by price increased by heuristic and then by price,
+ * like in LPA*. Heuristic must stay consistent for the changed costs, so searches which use
+ * costs lower than the loaded ones should be made without heuristic, like UCS.<br>
+ * LPA* needs positive costs, since states on a cycle of zero cost transitions keep giving each
+ * other their outdated prices. While any transition costs 0, plan after changed costs is found
+ * from scratch.<br>
+ * Search uses its own copy of transition costs, so the state space is never changed. Only costs
+ * of existing transitions can be changed. When there are several goal states, plan ends at the
+ * goal state with the lowest price.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class IncrementalSearch {
+	
+	/** State space to search. */
+	private StateSpace ss;
+	/** Compact form of the state space. */
+	private StateGraph graph;
+	/** Reversed graph, used to find predecessors. */
+	private StateGraph reverse;
+	/** Current cost of each transition of the graph. */
+	private double[] costs;
+	/** Index of the transition of the graph which matches each transition of the reversed graph. */
+	private int[] forward;
+	/** Flag that marks if heuristic of the state space is used. */
+	private boolean heuristic;
+	/** Id of the initial state. */
+	private int init;
+	/** Ids of goal states. */
+	private int[] goals;
+	
+	/** Price of each state, <code>Infinity</code> if it is not known. */
+	private double[] g;
+	/** Lowest price of each state given by its predecessors. */
+	private double[] rhs;
+	/** States whose price and rhs value differ. */
+	private KeyHeap open;
+	/** Number of states expanded by the last plan. */
+	private int expanded;
+	/** Number of costs changed since the last plan. */
+	private int pending;
+	/** Number of costs changed before the last plan. */
+	private int changed;
+	/** Number of transitions whose cost is 0. */
+	private int zeroCosts;
+	
+	/**
+	 * Constructor creates new search over given state space.
+	 * 
+	 * @param ss state space to search
+	 * @param heuristic <code>true</code> to use heuristic of the state space, like A*,
+	 * <code>false</code> to search like UCS
+	 * @throws IllegalArgumentException if initial state is not a state of the state space
+	 */
+	public IncrementalSearch(StateSpace ss, boolean heuristic) {
+		this.ss = ss;
+		this.heuristic = heuristic;
+		graph = ss.getGraph();
+		reverse = graph.reverse();
+		init = graph.indexOf(ss.getInitState());
+		if(init < 0)
+			throw new IllegalArgumentException("Initial state " + ss.getInitState() + " is not in the state space.");
+		
+		boolean[] flags = graph.flags(ss.getGoalStates());
+		int count = 0;
+		goals = new int[graph.size()];
+		for(int s = 0; s < flags.length; s++) {
+			if(flags[s]) goals[count++] = s;
+		}
+		goals = Arrays.copyOf(goals, count);
+		
+		int n = graph.size();
+		costs = new double[graph.edgeCount()];
+		for(int e = 0; e < costs.length; e++) {
+			costs[e] = graph.succCost(e);
+			if(costs[e] == 0) zeroCosts++;
+		}
+		forward = new int[reverse.edgeCount()];
+		for(int t = 0; t < n; t++) {
+			for(int e = reverse.succStart(t), end = reverse.succEnd(t); e < end; e++) {
+				forward[e] = graph.findEdge(reverse.succState(e), t);
+			}
+		}
+		
+		g = new double[n];
+		rhs = new double[n];
+		open = new KeyHeap(n);
+		reset();
+	}
+	
+	/**
+	 * Helper method that forgets all prices, so the next plan is found from scratch.
+	 */
+	private void reset() {
+		Arrays.fill(g, Double.POSITIVE_INFINITY);
+		Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+		open.clear();
+		rhs[init] = 0.0;
+		open.add(init, h(init), 0.0);
+	}
+	
+	/**
+	 * @return number of states expanded by the last plan
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+	
+	/**
+	 * @return number of costs changed since the last plan
+	 */
+	public int getPending() {
+		return pending;
+	}
+	
+	/**
+	 * @return number of costs changed before the last plan
+	 */
+	public int getChanged() {
+		return changed;
+	}
+	
+	/**
+	 * Changes cost of the transition. Change is used by the next plan.
+	 * 
+	 * @param from name of the state
+	 * @param to name of the next state
+	 * @param cost new cost of the transition
+	 * @throws IllegalArgumentException if there is no such transition or cost is negative
+	 */
+	public void updateCost(String from, String to, double cost) {
+		int u = graph.indexOf(from);
+		int v = graph.indexOf(to);
+		int e = u < 0 || v < 0 ? -1 : graph.findEdge(u, v);
+		if(e < 0)
+			throw new IllegalArgumentException("There is no transition from " + from + " to " + to + ".");
+		if(!(cost >= 0))
+			throw new IllegalArgumentException("Cost must not be negative, was " + cost + ".");
+		if(costs[e] == cost) return;
+		
+		double old = costs[e];
+		costs[e] = cost;
+		pending++;
+		if(old == 0) zeroCosts--;
+		if(cost == 0) zeroCosts++;
+		if(v == init) return;
+		if(cost < old) {
+			double price = g[u] + cost;
+			if(price < rhs[v]) {
+				rhs[v] = price;
+				queue(v);
+			}
+		} else if(rhs[v] == g[u] + old) {
+			updateRhs(v);
+		}
+	}
+	
+	/**
+	 * Finds the cheapest path with the current costs, repairing the previous plan.
+	 * 
+	 * @return node of the reached goal state, or <code>null</code> if no goal state can be reached
+	 */
+	public Node plan() {
+		expanded = 0;
+		changed = pending;
+		pending = 0;
+		if(changed > 0 && zeroCosts > 0) reset();
+		int best = bestGoal();
+		while(!open.isEmpty() && (best < 0 || open.notAfter(key1(best), key2(best)) || g[best] != rhs[best])) {
+			int u = open.poll();
+			expanded++;
+			if(g[u] > rhs[u]) {
+				g[u] = rhs[u];
+				for(int e = graph.succStart(u), end = graph.succEnd(u); e < end; e++) {
+					int v = graph.succState(e);
+					double price = g[u] + costs[e];
+					if(v != init && price < rhs[v]) {
+						rhs[v] = price;
+						queue(v);
+					}
+				}
+			} else {
+				double old = g[u];
+				g[u] = Double.POSITIVE_INFINITY;
+				if(u != init) {
+					updateRhs(u);
+				} else {
+					queue(u);
+				}
+				for(int e = graph.succStart(u), end = graph.succEnd(u); e < end; e++) {
+					int v = graph.succState(e);
+					if(v != init && rhs[v] == old + costs[e]) updateRhs(v);
+				}
+			}
+			best = bestGoal();
+		}
+		
+		if(best < 0 || g[best] == Double.POSITIVE_INFINITY) return null;
+		return toNode(path(best));
+	}
+	
+	/**
+	 * Counts states a new search from scratch would expand with the current costs, so it can be
+	 * compared with {@link #getExpanded()}. Search is A* if heuristic is used and UCS otherwise.
+	 * 
+	 * @return number of states visited by the new search
+	 */
+	public int freshVisited() {
+		StateGraph current = graph.withCosts(costs.clone());
+		StateSpace query = StateSpace.query(ss.getInitState(), ss.getGoalStates(), current, ss.getHeuristicPath());
+		Search search = new Search(query, heuristic ? Algorithm.ASTAR : Algorithm.UCS);
+		search.runAlgorithm();
+		return search.getVisited();
+	}
+	
+	/**
+	 * Helper method that computes rhs value of the state from its predecessors and queues the
+	 * state if the value differs from its price.
+	 * 
+	 * @param v id of the state, other than the initial state
+	 */
+	private void updateRhs(int v) {
+		double min = Double.POSITIVE_INFINITY;
+		for(int e = reverse.succStart(v), end = reverse.succEnd(v); e < end; e++) {
+			double price = g[reverse.succState(e)] + costs[forward[e]];
+			if(price < min) min = price;
+		}
+		rhs[v] = min;
+		queue(v);
+	}
+	
+	/**
+	 * Helper method that puts the state into the queue if its price and rhs value differ, and
+	 * removes it otherwise.
+	 * 
+	 * @param s id of the state
+	 */
+	private void queue(int s) {
+		if(g[s] != rhs[s]) {
+			open.set(s, key1(s), key2(s));
+		} else {
+			open.remove(s);
+		}
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return first part of the key of the state, lower of its price and rhs value increased by heuristic
+	 */
+	private double key1(int s) {
+		return key2(s) + h(s);
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return second part of the key of the state, lower of its price and rhs value
+	 */
+	private double key2(int s) {
+		return Math.min(g[s], rhs[s]);
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return heuristic value of the state, 0 if it has none or heuristic is not used
+	 */
+	private double h(int s) {
+		return heuristic && graph.hasHeuristic(s) ? graph.heuristic(s) : 0.0;
+	}
+	
+	/**
+	 * @return goal state with the lowest key, <code>-1</code> if there are no goal states
+	 */
+	private int bestGoal() {
+		int best = -1;
+		for(int s : goals) {
+			if(best < 0 || KeyHeap.less(key1(s), key2(s), s, key1(best), key2(best), best)) best = s;
+		}
+		return best;
+	}
+	
+	/**
+	 * Helper method that finds the path to the state over transitions which give the next state its
+	 * price, searching breadth-first from the state backwards. If heuristic is not consistent, prices
+	 * on the path may be outdated and no such path is found, and then any reached predecessors are used.
+	 * 
+	 * @param s id of the reached state
+	 * @return ids of states on the path from the initial state to the state
+	 */
+	private int[] path(int s) {
+		int n = graph.size();
+		int[] next = new int[n];
+		int[] queue = new int[n];
+		for(int pass = 0; pass < 2 && (pass == 0 || next[init] < 0); pass++) {
+			Arrays.fill(next, -1);
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = s;
+			next[s] = s;
+			while(head < tail && next[init] < 0) {
+				int t = queue[head++];
+				for(int e = reverse.succStart(t), end = reverse.succEnd(t); e < end; e++) {
+					int p = reverse.succState(e);
+					if(next[p] >= 0 || g[p] == Double.POSITIVE_INFINITY) continue;
+					if(pass == 0 && g[p] + costs[forward[e]] != g[t]) continue;
+					next[p] = t;
+					queue[tail++] = p;
+				}
+			}
+		}
+		
+		int length = 1;
+		for(int p = init; p != s; p = next[p]) length++;
+		int[] path = new int[length];
+		for(int p = init, i = 0; i < length; p = next[p], i++) path[i] = p;
+		return path;
+	}
+	
+	/**
+	 * Helper method that converts path of state ids to the nodes named by states, with prices
+	 * summed from the first state forward using the current costs.
+	 * 
+	 * @param path ids of states on the path
+	 * @return node with the last state of the path
+	 */
+	private Node toNode(int[] path) {
+		Node result = null;
+		double price = 0.0;
+		for(int i = 0; i < path.length; i++) {
+			if(i > 0) price += costs[graph.findEdge(path[i - 1], path[i])];
+			result = new Node(graph.name(path[i]), price, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Class models binary min-heap of state ids with a position map, ordered by two part keys
+	 * and then by ids.
+	 */
+	private static class KeyHeap {
+		
+		/** Heap of state ids. */
+		private int[] heap;
+		/** Position of each state in the heap, <code>-1</code> if state is not in the heap. */
+		private int[] position;
+		/** First part of the key of each state. */
+		private double[] key1;
+		/** Second part of the key of each state. */
+		private double[] key2;
+		/** Number of states in the heap. */
+		private int size;
+		
+		/**
+		 * @param capacity number of states
+		 */
+		KeyHeap(int capacity) {
+			heap = new int[capacity];
+			position = new int[capacity];
+			key1 = new double[capacity];
+			key2 = new double[capacity];
+			Arrays.fill(position, -1);
+		}
+		
+		/**
+		 * @return <code>true</code> if heap is empty, otherwise <code>false</code>
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}
+		
+		/**
+		 * Removes all states.
+		 */
+		void clear() {
+			for(int i = 0; i < size; i++) {
+				position[heap[i]] = -1;
+			}
+			size = 0;
+		}
+		
+		/**
+		 * @param k1 first part of the key
+		 * @param k2 second part of the key
+		 * @return <code>true</code> if the top state has lower or equal key than given, otherwise <code>false</code>
+		 */
+		boolean notAfter(double k1, double k2) {
+			int top = heap[0];
+			return key1[top] < k1 || key1[top] == k1 && key2[top] <= k2;
+		}
+		
+		/**
+		 * Adds the state, which must not be in the heap.
+		 * 
+		 * @param s id of the state
+		 * @param k1 first part of the key
+		 * @param k2 second part of the key
+		 */
+		void add(int s, double k1, double k2) {
+			heap[size] = s;
+			position[s] = size++;
+			key1[s] = k1;
+			key2[s] = k2;
+			siftUp(position[s]);
+		}
+		
+		/**
+		 * Adds the state or changes its key.
+		 * 
+		 * @param s id of the state
+		 * @param k1 first part of the key
+		 * @param k2 second part of the key
+		 */
+		void set(int s, double k1, double k2) {
+			if(position[s] < 0) {
+				add(s, k1, k2);
+				return;
+			}
+			key1[s] = k1;
+			key2[s] = k2;
+			siftUp(position[s]);
+			siftDown(position[s]);
+		}
+		
+		/**
+		 * Removes the state if it is in the heap.
+		 * 
+		 * @param s id of the state
+		 */
+		void remove(int s) {
+			int i = position[s];
+			if(i < 0) return;
+			position[s] = -1;
+			if(--size > i) {
+				int moved = heap[size];
+				heap[i] = moved;
+				position[moved] = i;
+				siftUp(i);
+				siftDown(position[moved]);
+			}
+		}
+		
+		/**
+		 * Removes the state with the lowest key.
+		 * 
+		 * @return id of the removed state
+		 */
+		int poll() {
+			int s = heap[0];
+			remove(s);
+			return s;
+		}
+		
+		/**
+		 * @param i position of the state which may be lower than its parent
+		 */
+		private void siftUp(int i) {
+			int s = heap[i];
+			while(i > 0) {
+				int p = (i - 1) >>> 1;
+				int q = heap[p];
+				if(!less(key1[s], key2[s], s, key1[q], key2[q], q)) break;
+				heap[i] = q;
+				position[q] = i;
+				i = p;
+			}
+			heap[i] = s;
+			position[s] = i;
+		}
+		
+		/**
+		 * @param i position of the state which may be greater than its children
+		 */
+		private void siftDown(int i) {
+			int s = heap[i];
+			while(true) {
+				int c = 2 * i + 1;
+				if(c >= size) break;
+				if(c + 1 < size && less(key1[heap[c + 1]], key2[heap[c + 1]], heap[c + 1], key1[heap[c]], key2[heap[c]], heap[c])) c++;
+				int q = heap[c];
+				if(!less(key1[q], key2[q], q, key1[s], key2[s], s)) break;
+				heap[i] = q;
+				position[q] = i;
+				i = c;
+			}
+			heap[i] = s;
+			position[s] = i;
+		}
+		
+		/**
+		 * @param a1 first part of the first key
+		 * @param a2 second part of the first key
+		 * @param a id of the first state
+		 * @param b1 first part of the second key
+		 * @param b2 second part of the second key
+		 * @param b id of the second state
+		 * @return <code>true</code> if the first key is lower than the second one, comparing ids last
+		 */
+		static boolean less(double a1, double a2, int a, double b1, double b2, int b) {
+			int c = Double.compare(a1, b1);
+			if(c == 0) c = Double.compare(a2, b2);
+			return c < 0 || c == 0 && a < b;
+		}
+	}
+	
+}
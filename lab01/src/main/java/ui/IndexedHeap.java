@@ -0,0 +1,208 @@
+package ui;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Class models binary min-heap of state ids with a position map, which supports
+ * decreasing key of a state in O(log n).<br>
+ * States are ordered by their keys, and states with equal keys by their ids. Heap grows
+ * when a state with id outside its capacity is added.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class IndexedHeap implements StateQueue {
+	
+	/** Heap of state ids. */
+	private int[] heap;
+	/** Position of each state in the heap, <code>-1</code> if state is not in the heap. */
+	private int[] position;
+	/** Key of each state. */
+	private double[] keys;
+	/** Number of states in the heap. */
+	private int size;
+	
+	/**
+	 * Constructor creates empty heap for states with ids lower than given capacity.
+	 * 
+	 * @param capacity number of states
+	 */
+	public IndexedHeap(int capacity) {
+		heap = new int[capacity];
+		position = new int[capacity];
+		keys = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+	
+	/**
+	 * @return <code>true</code> if heap is empty, otherwise <code>false</code>
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * @return number of states in the heap
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @param state id of the state
+	 * @return <code>true</code> if the state is in the heap, otherwise <code>false</code>
+	 */
+	@Override
+	public boolean contains(int state) {
+		return state < position.length && position[state] >= 0;
+	}
+	
+	/**
+	 * @param state id of the state
+	 * @return key of the state
+	 */
+	public double key(int state) {
+		return keys[state];
+	}
+	
+	/**
+	 * Adds state with given key to the heap.
+	 * 
+	 * @param state id of the state
+	 * @param key of the state
+	 * @throws IllegalArgumentException if state is already in the heap
+	 */
+	@Override
+	public void add(int state, double key) {
+		if(state >= position.length) grow(state + 1);
+		if(contains(state))
+			throw new IllegalArgumentException("State " + state + " is already in the heap.");
+		
+		keys[state] = key;
+		heap[size] = state;
+		position[state] = size;
+		siftUp(size++);
+	}
+	
+	/**
+	 * Decreases the key of the state in the heap.
+	 * 
+	 * @param state id of the state
+	 * @param key new key of the state, not greater than the current one
+	 * @throws IllegalArgumentException if state is not in the heap or key is greater than the current one
+	 */
+	@Override
+	public void decreaseKey(int state, double key) {
+		if(!contains(state))
+			throw new IllegalArgumentException("State " + state + " is not in the heap.");
+		if(Double.compare(key, keys[state]) > 0)
+			throw new IllegalArgumentException("Key " + key + " is greater than " + keys[state] + ".");
+		
+		keys[state] = key;
+		siftUp(position[state]);
+	}
+	
+	/**
+	 * @return id of the state with the lowest key, without removing it
+	 * @throws NoSuchElementException if heap is empty
+	 */
+	public int peek() {
+		if(size == 0)
+			throw new NoSuchElementException();
+		return heap[0];
+	}
+	
+	/**
+	 * Removes state with the lowest key from the heap.
+	 * 
+	 * @return id of the removed state
+	 * @throws NoSuchElementException if heap is empty
+	 */
+	@Override
+	public int poll() {
+		int state = peek();
+		position[state] = -1;
+		if(--size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return state;
+	}
+	
+	/**
+	 * Removes all states from the heap.
+	 */
+	@Override
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+	
+	/**
+	 * Helper method that grows the heap so it can hold states with ids lower than given capacity.
+	 * 
+	 * @param capacity minimal number of states
+	 */
+	private void grow(int capacity) {
+		int old = position.length;
+		int length = Math.max(capacity, 2 * old);
+		heap = Arrays.copyOf(heap, length);
+		keys = Arrays.copyOf(keys, length);
+		position = Arrays.copyOf(position, length);
+		Arrays.fill(position, old, length, -1);
+	}
+	
+	/**
+	 * Helper method that moves state at given position up until heap order is restored.
+	 * 
+	 * @param i position in the heap
+	 */
+	private void siftUp(int i) {
+		int state = heap[i];
+		while(i > 0) {
+			int parent = (i - 1) >>> 1;
+			if(!less(state, heap[parent])) break;
+			heap[i] = heap[parent];
+			position[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = state;
+		position[state] = i;
+	}
+	
+	/**
+	 * Helper method that moves state at given position down until heap order is restored.
+	 * 
+	 * @param i position in the heap
+	 */
+	private void siftDown(int i) {
+		int state = heap[i];
+		int half = size >>> 1;
+		while(i < half) {
+			int child = 2 * i + 1;
+			if(child + 1 < size && less(heap[child + 1], heap[child])) child++;
+			if(!less(heap[child], state)) break;
+			heap[i] = heap[child];
+			position[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = state;
+		position[state] = i;
+	}
+	
+	/**
+	 * @param s1 id of the first state
+	 * @param s2 id of the second state
+	 * @return <code>true</code> if first state comes before the second one, otherwise <code>false</code>
+	 */
+	private boolean less(int s1, int s2) {
+		int c = Double.compare(keys[s1], keys[s2]);
+		return c < 0 || (c == 0 && s1 < s2);
+	}
+	
+}
@@ -0,0 +1,241 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Class is used to search the grid map with jump point search (JPS).<br>
+ * Search is A* with octile distance as heuristic, but instead of adding all neighbours of a cell to
+ * the open list, it moves from the cell in each direction which can be part of a cheapest path and
+ * skips cells until it reaches a jump point: the goal cell, a cell with a neighbour which can be
+ * reached cheapest only through it, or for diagonal moves, a cell from which a row or a column
+ * leads to such a cell. Only jump points are added to the open list, so on open areas of the map
+ * search expands far fewer cells than A* over all cells, and still finds a cheapest path.
+ * Consecutive jump points of the found path lie on one row, column or diagonal, and the cells
+ * between them are filled in when the path is returned.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class JumpPointSearch {
+	
+	/** Map to search. */
+	private GridMap map;
+	/** Number of jump points expanded by the last search. */
+	private int visited;
+	/** Number of jump points added to the open list by the last search. */
+	private int jumpPoints;
+	/** Number of cells scanned while jumping in the last search. */
+	private long scanned;
+	
+	/** Price of each reached jump point, <code>Infinity</code> if cell wasn't reached. */
+	private double[] price;
+	/** Jump point from which each jump point was reached, <code>-1</code> for the start cell. */
+	private int[] parent;
+	/** Flags marking expanded jump points. */
+	private boolean[] closed;
+	/** Open jump points ordered by price increased by heuristic. */
+	private IndexedHeap open;
+	/** Column of the goal cell. */
+	private int goalX;
+	/** Row of the goal cell. */
+	private int goalY;
+	
+	/**
+	 * Constructor creates new search over given map.
+	 * 
+	 * @param map to search
+	 */
+	public JumpPointSearch(GridMap map) {
+		this.map = map;
+	}
+	
+	/**
+	 * @return number of jump points expanded by the last search
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * @return number of jump points added to the open list by the last search
+	 */
+	public int getJumpPoints() {
+		return jumpPoints;
+	}
+	
+	/**
+	 * @return number of cells scanned while jumping in the last search
+	 */
+	public long getScanned() {
+		return scanned;
+	}
+	
+	/**
+	 * Searches for the cheapest path between the cells.
+	 * 
+	 * @param start id of the start cell
+	 * @param goal id of the goal cell
+	 * @return ids of all cells on the found path, or <code>null</code> if there is no path
+	 */
+	public int[] search(int start, int goal) {
+		int width = map.getWidth();
+		int n = width * map.getHeight();
+		if(price == null || price.length != n) {
+			price = new double[n];
+			parent = new int[n];
+			closed = new boolean[n];
+			open = new IndexedHeap(n);
+		} else {
+			Arrays.fill(closed, false);
+			open.clear();
+		}
+		Arrays.fill(price, Double.POSITIVE_INFINITY);
+		visited = 0;
+		jumpPoints = 1;
+		scanned = 0;
+		goalX = goal % width;
+		goalY = goal / width;
+		
+		price[start] = 0.0;
+		parent[start] = -1;
+		open.add(start, map.distance(start, goal));
+		
+		while(!open.isEmpty()) {
+			int c = open.poll();
+			closed[c] = true;
+			visited++;
+			if(c == goal) return path(c);
+			
+			int x = c % width;
+			int y = c / width;
+			int p = parent[c];
+			if(p < 0) {
+				for(int dy = -1; dy <= 1; dy++) {
+					for(int dx = -1; dx <= 1; dx++) {
+						if((dx != 0 || dy != 0) && map.canMove(x, y, dx, dy)) reach(c, x, y, dx, dy, goal);
+					}
+				}
+			} else {
+				int dx = Integer.signum(x - p % width);
+				int dy = Integer.signum(y - p / width);
+				if(dx != 0 && dy != 0) {
+					if(map.isPassable(x, y + dy)) reach(c, x, y, 0, dy, goal);
+					if(map.isPassable(x + dx, y)) reach(c, x, y, dx, 0, goal);
+					if(map.canMove(x, y, dx, dy)) reach(c, x, y, dx, dy, goal);
+				} else if(dx != 0) {
+					boolean up = map.isPassable(x, y - 1);
+					boolean down = map.isPassable(x, y + 1);
+					if(map.isPassable(x + dx, y)) {
+						reach(c, x, y, dx, 0, goal);
+						if(up) reach(c, x, y, dx, -1, goal);
+						if(down) reach(c, x, y, dx, 1, goal);
+					}
+					if(up) reach(c, x, y, 0, -1, goal);
+					if(down) reach(c, x, y, 0, 1, goal);
+				} else {
+					boolean left = map.isPassable(x - 1, y);
+					boolean right = map.isPassable(x + 1, y);
+					if(map.isPassable(x, y + dy)) {
+						reach(c, x, y, 0, dy, goal);
+						if(left) reach(c, x, y, -1, dy, goal);
+						if(right) reach(c, x, y, 1, dy, goal);
+					}
+					if(left) reach(c, x, y, -1, 0, goal);
+					if(right) reach(c, x, y, 1, 0, goal);
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Helper method that jumps from the cell in the direction and adds the found jump point to the
+	 * open list, or decreases its key if it was reached cheaper.
+	 * 
+	 * @param c id of the expanded cell
+	 * @param x column of the expanded cell
+	 * @param y row of the expanded cell
+	 * @param dx change of the column, from -1 to 1
+	 * @param dy change of the row, from -1 to 1
+	 * @param goal id of the goal cell
+	 */
+	private void reach(int c, int x, int y, int dx, int dy, int goal) {
+		int j = jump(x + dx, y + dy, dx, dy);
+		if(j < 0 || closed[j]) return;
+		
+		double p = price[c] + map.distance(c, j);
+		if(p >= price[j]) return;
+		price[j] = p;
+		parent[j] = c;
+		double key = p + map.distance(j, goal);
+		if(open.contains(j)) {
+			open.decreaseKey(j, key);
+		} else {
+			open.add(j, key);
+			jumpPoints++;
+		}
+	}
+	
+	/**
+	 * Helper method that moves from the cell in the direction until it finds a jump point. Moves
+	 * along rows and columns check for neighbours which become reachable only through the current
+	 * cell, and diagonal moves look for such cells along the row and the column of each cell.
+	 * 
+	 * @param x column of the first cell
+	 * @param y row of the first cell
+	 * @param dx change of the column, from -1 to 1
+	 * @param dy change of the row, from -1 to 1
+	 * @return id of the found jump point, or <code>-1</code> if a blocked cell or the edge of the map was reached
+	 */
+	private int jump(int x, int y, int dx, int dy) {
+		int width = map.getWidth();
+		while(map.isPassable(x, y)) {
+			scanned++;
+			if(x == goalX && y == goalY) return y * width + x;
+			
+			if(dx != 0 && dy != 0) {
+				if(jump(x + dx, y, dx, 0) >= 0 || jump(x, y + dy, 0, dy) >= 0) return y * width + x;
+				if(!map.canMove(x, y, dx, dy)) return -1;
+			} else if(dx != 0) {
+				if(map.isPassable(x, y - 1) && !map.isPassable(x - dx, y - 1)
+						|| map.isPassable(x, y + 1) && !map.isPassable(x - dx, y + 1)) return y * width + x;
+			} else {
+				if(map.isPassable(x - 1, y) && !map.isPassable(x - 1, y - dy)
+						|| map.isPassable(x + 1, y) && !map.isPassable(x + 1, y - dy)) return y * width + x;
+			}
+			x += dx;
+			y += dy;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Helper method that finds all cells of the path to the jump point by following parents and
+	 * filling in the cells between consecutive jump points.
+	 * 
+	 * @param c id of the reached jump point
+	 * @return ids of cells on the path from the start cell to the jump point
+	 */
+	private int[] path(int c) {
+		int width = map.getWidth();
+		int length = 1;
+		for(int j = c; parent[j] >= 0; j = parent[j]) {
+			int p = parent[j];
+			length += Math.max(Math.abs(j % width - p % width), Math.abs(j / width - p / width));
+		}
+		
+		int[] path = new int[length];
+		int i = length - 1;
+		path[i] = c;
+		for(int j = c; parent[j] >= 0; j = parent[j]) {
+			int p = parent[j];
+			int step = Integer.signum(p % width - j % width) + Integer.signum(p / width - j / width) * width;
+			for(int cell = j + step; cell != p; cell += step) {
+				path[--i] = cell;
+			}
+			path[--i] = p;
+		}
+		return path;
+	}
+	
+}
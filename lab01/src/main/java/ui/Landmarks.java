@@ -0,0 +1,317 @@
+package ui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Class models landmarks with the lowest costs from and to every state, used to compute ALT
+ * (A*, landmarks, triangle inequality) heuristic for any goal states.<br>
+ * Landmarks are chosen by farthest-point selection: each next landmark is the state farthest
+ * from the chosen ones. Costs are computed with one Dijkstra search from each landmark over the
+ * graph and one over the reversed graph, and kept in float arrays indexed by state and then by
+ * landmark, so costs of one state are next to each other. By the triangle inequality, the cost
+ * from state <code>s</code> to goal <code>t</code> is at least <code>d(L, t) - d(L, s)</code> and
+ * <code>d(s, L) - d(t, L)</code> for every landmark <code>L</code>. Heuristic takes the largest of
+ * these bounds, using the nearest goal for the first one and the farthest for the second, so it is
+ * consistent for any set of goal states. Dijkstra searches round each cost down to a float as soon
+ * as it is computed, so stored costs never differ between the ends of a transition by more than
+ * its cost, and heuristic stays consistent even when costs are not representable as floats.
+ * Landmarks can be saved to a file and loaded back for the same graph, which is recognized by its
+ * {@link StateGraph#checksum()}. Format (big-endian):
+ * <pre>
+ * int magic, int version, int states, int transitions, long checksum, int landmarks,
+ * int[landmarks] landmark states, float[states * landmarks] costs from landmarks,
+ * float[states * landmarks] costs to landmarks
+ * </pre>
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class Landmarks {
+	
+	/** Magic number at the start of the file ("UILM"). */
+	private static final int MAGIC = 0x55494C4D;
+	/** Version of the format. */
+	private static final int VERSION = 2;
+	
+	/** Graph the landmarks were chosen for. */
+	private StateGraph graph;
+	/** Ids of landmark states. */
+	private int[] landmarks;
+	/** Lowest cost from each landmark to each state, at <code>state * landmarks + landmark</code>. */
+	private float[] from;
+	/** Lowest cost from each state to each landmark, at <code>state * landmarks + landmark</code>. */
+	private float[] to;
+	
+	/**
+	 * Constructor creates landmarks using given arrays.
+	 * 
+	 * @param graph the landmarks were chosen for
+	 * @param landmarks ids of landmark states
+	 * @param from lowest costs from landmarks
+	 * @param to lowest costs to landmarks
+	 */
+	private Landmarks(StateGraph graph, int[] landmarks, float[] from, float[] to) {
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.from = from;
+		this.to = to;
+	}
+	
+	/**
+	 * Chooses landmarks by farthest-point selection and computes costs from and to them. First
+	 * landmark is the state farthest from the given one, and every next one is the state whose
+	 * lowest cost from or to the chosen landmarks is the greatest. States not connected to any
+	 * chosen landmark are chosen only when no connected state is left.
+	 * 
+	 * @param graph to choose landmarks for
+	 * @param count number of landmarks, lowered to the number of states if there are fewer
+	 * @param seed id of the state from which the first landmark is the farthest
+	 * @return chosen landmarks
+	 * @throws IllegalArgumentException if number of landmarks is not positive
+	 */
+	public static Landmarks select(StateGraph graph, int count, int seed) {
+		if(count < 1)
+			throw new IllegalArgumentException("Number of landmarks must be positive, was " + count + ".");
+		int n = graph.size();
+		int k = Math.min(count, n);
+		int[] landmarks = new int[k];
+		float[] from = new float[n * k];
+		float[] to = new float[n * k];
+		if(k == 0) return new Landmarks(graph, landmarks, from, to);
+		
+		double[] separation = new double[n];
+		Arrays.fill(separation, Double.POSITIVE_INFINITY);
+		boolean[] chosen = new boolean[n];
+		double[] forward = new double[n];
+		double[] backward = new double[n];
+		separate(separation, dijkstra(graph, seed, forward), dijkstra(graph.reverse(), seed, backward));
+		
+		for(int i = 0; i < k; i++) {
+			int l = farthest(separation, chosen);
+			landmarks[i] = l;
+			chosen[l] = true;
+			dijkstra(graph, l, forward);
+			dijkstra(graph.reverse(), l, backward);
+			for(int s = 0; s < n; s++) {
+				from[s * k + i] = (float) forward[s];
+				to[s * k + i] = (float) backward[s];
+			}
+			separate(separation, forward, backward);
+		}
+		return new Landmarks(graph, landmarks, from, to);
+	}
+	
+	/**
+	 * Loads landmarks saved by {@link #save(String)} for the given graph.
+	 * 
+	 * @param graph the landmarks were chosen for
+	 * @param path of the file
+	 * @return loaded landmarks
+	 * @throws IOException if reading fails, file doesn't contain landmarks or they were saved for a different graph
+	 */
+	public static Landmarks load(StateGraph graph, String path) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(path)), 1 << 16))) {
+			if(in.readInt() != MAGIC)
+				throw new IOException(path + " doesn't contain landmarks.");
+			int version = in.readInt();
+			if(version != VERSION)
+				throw new IOException("Unsupported version " + version + " of landmarks " + path + ".");
+			int n = in.readInt();
+			int m = in.readInt();
+			long checksum = in.readLong();
+			if(n != graph.size() || m != graph.edgeCount() || checksum != graph.checksum())
+				throw new IOException("Landmarks " + path + " were saved for a different state space.");
+			
+			int k = in.readInt();
+			int[] landmarks = new int[k];
+			float[] from = new float[n * k];
+			float[] to = new float[n * k];
+			for(int i = 0; i < k; i++) {
+				landmarks[i] = in.readInt();
+			}
+			for(int i = 0; i < from.length; i++) {
+				from[i] = in.readFloat();
+			}
+			for(int i = 0; i < to.length; i++) {
+				to[i] = in.readFloat();
+			}
+			return new Landmarks(graph, landmarks, from, to);
+		}
+	}
+	
+	/**
+	 * Saves the landmarks to a binary file.
+	 * 
+	 * @param path of the file
+	 * @throws IOException if writing fails
+	 */
+	public void save(String path) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(path)), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(graph.size());
+			out.writeInt(graph.edgeCount());
+			out.writeLong(graph.checksum());
+			out.writeInt(landmarks.length);
+			for(int l : landmarks) {
+				out.writeInt(l);
+			}
+			for(float c : from) {
+				out.writeFloat(c);
+			}
+			for(float c : to) {
+				out.writeFloat(c);
+			}
+		}
+	}
+	
+	/**
+	 * @return name of the heuristic, printed instead of the heuristic path
+	 */
+	public String getName() {
+		return "alt-" + landmarks.length;
+	}
+	
+	/**
+	 * @return number of landmarks
+	 */
+	public int size() {
+		return landmarks.length;
+	}
+	
+	/**
+	 * @param i index of the landmark
+	 * @return id of the landmark state
+	 */
+	public int landmark(int i) {
+		return landmarks[i];
+	}
+	
+	/**
+	 * Checks if landmarks were chosen for given graph. Graphs which differ only in heuristic values
+	 * share the landmarks, graphs with different states, transitions or costs don't.
+	 * 
+	 * @param graph to check
+	 * @return <code>true</code> if landmarks can be used for the graph, otherwise <code>false</code>
+	 */
+	public boolean fits(StateGraph graph) {
+		return graph.size() == this.graph.size() && graph.checksum() == this.graph.checksum();
+	}
+	
+	/**
+	 * Computes ALT heuristic value of every state for given goal states. Value is
+	 * <code>Infinity</code> for states from which landmarks prove that no goal state can be reached.
+	 * 
+	 * @param goal flags marking goal states
+	 * @return heuristic value of each state, 0 for all states if there are no goal states
+	 */
+	public double[] heuristic(boolean[] goal) {
+		int n = graph.size();
+		int k = landmarks.length;
+		double[] nearest = new double[k];
+		double[] farthest = new double[k];
+		Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+		Arrays.fill(farthest, Double.NEGATIVE_INFINITY);
+		for(int t = 0; t < n; t++) {
+			if(!goal[t]) continue;
+			for(int i = 0; i < k; i++) {
+				nearest[i] = Math.min(nearest[i], from[t * k + i]);
+				farthest[i] = Math.max(farthest[i], to[t * k + i]);
+			}
+		}
+		
+		double[] h = new double[n];
+		if(k == 0 || farthest[0] == Double.NEGATIVE_INFINITY) return h;
+		for(int s = 0; s < n; s++) {
+			double value = 0.0;
+			for(int i = 0, j = s * k; i < k; i++, j++) {
+				if(from[j] != Float.POSITIVE_INFINITY) value = Math.max(value, nearest[i] - from[j]);
+				if(farthest[i] != Double.POSITIVE_INFINITY) value = Math.max(value, to[j] - farthest[i]);
+			}
+			h[s] = value;
+		}
+		return h;
+	}
+	
+	/**
+	 * Helper method that computes the lowest costs from the source state with Dijkstra search.
+	 * Each cost is rounded down to a float, so costs can be stored as floats without rounding.
+	 * 
+	 * @param graph to search
+	 * @param source id of the source state
+	 * @param cost array to fill with the lowest costs, <code>Infinity</code> for unreachable states
+	 * @return filled array
+	 */
+	private static double[] dijkstra(StateGraph graph, int source, double[] cost) {
+		Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		IndexedHeap open = new IndexedHeap(graph.size());
+		cost[source] = 0.0;
+		open.add(source, 0.0);
+		while(!open.isEmpty()) {
+			int s = open.poll();
+			for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+				int t = graph.succState(e);
+				double c = floorFloat(cost[s] + graph.succCost(e));
+				if(c < cost[t]) {
+					cost[t] = c;
+					if(open.contains(t)) {
+						open.decreaseKey(t, c);
+					} else {
+						open.add(t, c);
+					}
+				}
+			}
+		}
+		return cost;
+	}
+	
+	/**
+	 * @param value to round
+	 * @return greatest float not greater than the value
+	 */
+	private static float floorFloat(double value) {
+		float f = (float) value;
+		return f > value ? Math.nextDown(f) : f;
+	}
+	
+	/**
+	 * Helper method that lowers separation of each state from the chosen landmarks to its cost
+	 * from or to the new landmark, whichever is lower. Unreachable states keep their separation.
+	 * 
+	 * @param separation lowest cost between each state and the chosen landmarks
+	 * @param forward lowest costs from the new landmark
+	 * @param backward lowest costs to the new landmark
+	 */
+	private static void separate(double[] separation, double[] forward, double[] backward) {
+		for(int s = 0; s < separation.length; s++) {
+			separation[s] = Math.min(separation[s], Math.min(forward[s], backward[s]));
+		}
+	}
+	
+	/**
+	 * Helper method that finds the state with the greatest finite separation from the chosen
+	 * landmarks, or the first not chosen state if no such state is left.
+	 * 
+	 * @param separation lowest cost between each state and the chosen landmarks
+	 * @param chosen flags marking chosen landmarks
+	 * @return id of the farthest state
+	 */
+	private static int farthest(double[] separation, boolean[] chosen) {
+		int best = -1;
+		int first = -1;
+		for(int s = 0; s < separation.length; s++) {
+			if(chosen[s]) continue;
+			if(first < 0) first = s;
+			if(separation[s] != Double.POSITIVE_INFINITY && (best < 0 || separation[s] > separation[best])) best = s;
+		}
+		return best >= 0 ? best : first;
+	}
+	
+}
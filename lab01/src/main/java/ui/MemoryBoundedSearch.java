@@ -0,0 +1,521 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Class is used to search the state graph with heuristic algorithms whose memory use
+ * doesn't grow with the number of expanded states.<br>
+ * IDA* runs depth-first searches with increasing bound on price increased by heuristic,
+ * keeping only the current path. SMA* works like A* until the node budget is used, and then
+ * forgets the worst leaves, remembering their values in their parents so they can be
+ * generated again later. States without heuristic value are treated as having value 0.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class MemoryBoundedSearch {
+	
+	/** Graph to search. */
+	private StateGraph graph;
+	/** Number of states expanded by the last search. */
+	private int visited;
+	
+	/** Id of the state of each SMA* node. */
+	private int[] state;
+	/** Price of each SMA* node. */
+	private double[] price;
+	/** Price increased by heuristic of each SMA* node, backed up from its successors. */
+	private double[] total;
+	/** Parent of each SMA* node, <code>-1</code> for the root. */
+	private int[] parent;
+	/** Depth of each SMA* node. */
+	private int[] depth;
+	/** Index of the next transition to generate for each SMA* node. */
+	private int[] cursor;
+	/** First successor in memory of each SMA* node, <code>-1</code> if there is none. */
+	private int[] firstChild;
+	/** Next successor in memory of the same parent, <code>-1</code> if there is none. */
+	private int[] nextSibling;
+	/** Lowest value of forgotten successors of each SMA* node, <code>Infinity</code> if none were forgotten. */
+	private double[] forgotten;
+	/** Free SMA* nodes below {@link #used}. */
+	private int[] free;
+	/** Number of free SMA* nodes. */
+	private int freeCount;
+	/** Number of SMA* nodes which were ever used. */
+	private int used;
+	/** Maximal number of SMA* nodes in memory. */
+	private int budget;
+	/** SMA* nodes which can be expanded, lowest value and deepest first. */
+	private NodeHeap open;
+	/** SMA* leaves which can be forgotten, highest value and shallowest first. */
+	private NodeHeap leaves;
+	
+	/**
+	 * Constructor creates new search over given graph.
+	 * 
+	 * @param graph to search
+	 */
+	public MemoryBoundedSearch(StateGraph graph) {
+		this.graph = graph;
+	}
+	
+	/**
+	 * @return number of states expanded by the last search
+	 */
+	public int getVisited() {
+		return visited;
+	}
+	
+	/**
+	 * Searches for the cheapest path with IDA*. Each iteration is a depth-first search which
+	 * doesn't go through states on the current path, and prunes nodes whose price increased by
+	 * heuristic exceeds the bound. Next bound is the lowest pruned value.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @return ids of states on the found path, or <code>null</code> if there is no path
+	 */
+	public int[] idaStar(int init, boolean[] goal) {
+		visited = 1;
+		if(goal[init]) return new int[] {init};
+		
+		int[] path = new int[64];
+		double[] prices = new double[64];
+		int[] edges = new int[64];
+		boolean[] onPath = new boolean[graph.size()];
+		double bound = h(init);
+		visited = 0;
+		
+		while(true) {
+			double next = Double.POSITIVE_INFINITY;
+			int top = 0;
+			path[0] = init;
+			prices[0] = 0.0;
+			edges[0] = graph.succStart(init);
+			onPath[init] = true;
+			visited++;
+			
+			while(top >= 0) {
+				int s = path[top];
+				if(edges[top] == graph.succEnd(s)) {
+					onPath[s] = false;
+					top--;
+					continue;
+				}
+				
+				int e = edges[top]++;
+				int t = graph.succState(e);
+				if(onPath[t]) continue;
+				double p = prices[top] + graph.succCost(e);
+				double f = p + h(t);
+				if(f > bound) {
+					next = Math.min(next, f);
+					continue;
+				}
+				
+				if(++top == path.length) {
+					path = Arrays.copyOf(path, 2 * top);
+					prices = Arrays.copyOf(prices, 2 * top);
+					edges = Arrays.copyOf(edges, 2 * top);
+				}
+				path[top] = t;
+				if(goal[t]) return Arrays.copyOf(path, top + 1);
+				
+				prices[top] = p;
+				edges[top] = graph.succStart(t);
+				onPath[t] = true;
+				visited++;
+			}
+			
+			if(next == Double.POSITIVE_INFINITY) return null;
+			bound = next;
+		}
+	}
+	
+	/**
+	 * Searches for the cheapest path with simplified memory-bounded A* (SMA*), keeping at most
+	 * given number of nodes in memory. Nodes are expanded one successor at a time, lowest value first
+	 * and deepest first among equal values. When memory is full, the shallowest leaf with the highest
+	 * value is forgotten. Values never decrease, so the value of a forgotten leaf is kept by its parent
+	 * and passed on to the leaf when it is generated again. Found path is the cheapest one if it fits
+	 * in the budget. Node arrays grow as they are needed, up to the budget. Node is counted as expanded
+	 * when its successors start being generated, which happens again when forgotten ones are regenerated.
+	 * 
+	 * @param init id of the initial state
+	 * @param goal flags marking goal states
+	 * @param budget maximal number of nodes in memory
+	 * @return ids of states on the found path, or <code>null</code> if there is no path that fits in the budget
+	 * @throws IllegalArgumentException if budget is lower than 2
+	 */
+	public int[] smaStar(int init, boolean[] goal, int budget) {
+		if(budget < 2)
+			throw new IllegalArgumentException("Node budget must be at least 2, was " + budget + ".");
+		
+		int capacity = Math.min(budget, 1 << 10);
+		state = new int[capacity];
+		price = new double[capacity];
+		total = new double[capacity];
+		parent = new int[capacity];
+		depth = new int[capacity];
+		cursor = new int[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+		forgotten = new double[capacity];
+		free = new int[capacity];
+		freeCount = 0;
+		used = 0;
+		this.budget = budget;
+		open = new NodeHeap(false);
+		leaves = new NodeHeap(true);
+		visited = 0;
+		
+		int root = allocate();
+		create(root, init, 0.0, h(init), -1);
+		enqueue(root);
+		
+		while(!open.isEmpty()) {
+			int n = open.peek();
+			if(total[n] == Double.POSITIVE_INFINITY) return null;
+			if(goal[state[n]]) return path(n);
+			
+			if(cursor[n] == graph.succEnd(state[n]) && forgotten[n] < Double.POSITIVE_INFINITY) {
+				cursor[n] = graph.succStart(state[n]);
+				forgotten[n] = Double.POSITIVE_INFINITY;
+			}
+			if(cursor[n] == graph.succStart(state[n])) visited++;
+			
+			int e = nextSuccessor(n);
+			if(e < 0) {
+				if(firstChild[n] >= 0 && forgotten[n] == Double.POSITIVE_INFINITY) dequeue(n);
+				backup(n);
+				continue;
+			}
+			
+			if(used - freeCount == budget) {
+				int w = worstLeaf(n);
+				if(w < 0) return null;
+				forget(w, n);
+			}
+			
+			int t = graph.succState(e);
+			int s = allocate();
+			double p = price[n] + graph.succCost(e);
+			create(s, t, p, Math.max(total[n], p + h(t)), n);
+			depth[s] = depth[n] + 1;
+			if(!goal[t] && depth[s] == budget - 1) total[s] = Double.POSITIVE_INFINITY;
+			if(leaves.contains(n)) leaves.remove(n);
+			nextSibling[s] = firstChild[n];
+			firstChild[n] = s;
+			enqueue(s);
+			
+			if(cursor[n] == graph.succEnd(state[n])) {
+				backup(n);
+				if(forgotten[n] == Double.POSITIVE_INFINITY) dequeue(n);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Helper method that takes a free SMA* node, growing node arrays if there is none.
+	 * 
+	 * @return node
+	 */
+	private int allocate() {
+		if(freeCount > 0) return free[--freeCount];
+		if(used == state.length) {
+			int length = (int) Math.min(budget, 2L * used);
+			state = Arrays.copyOf(state, length);
+			price = Arrays.copyOf(price, length);
+			total = Arrays.copyOf(total, length);
+			parent = Arrays.copyOf(parent, length);
+			depth = Arrays.copyOf(depth, length);
+			cursor = Arrays.copyOf(cursor, length);
+			firstChild = Arrays.copyOf(firstChild, length);
+			nextSibling = Arrays.copyOf(nextSibling, length);
+			forgotten = Arrays.copyOf(forgotten, length);
+			free = Arrays.copyOf(free, length);
+		}
+		return used++;
+	}
+	
+	/**
+	 * Helper method that initializes SMA* node.
+	 * 
+	 * @param n node
+	 * @param s id of the node's state
+	 * @param p price of the node
+	 * @param f price increased by heuristic of the node
+	 * @param par parent of the node
+	 */
+	private void create(int n, int s, double p, double f, int par) {
+		state[n] = s;
+		price[n] = p;
+		total[n] = f;
+		parent[n] = par;
+		depth[n] = 0;
+		cursor[n] = graph.succStart(s);
+		firstChild[n] = -1;
+		nextSibling[n] = -1;
+		forgotten[n] = Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Helper method that finds next transition of the node which leads to a state that is
+	 * neither on the node's path nor a successor already in memory.
+	 * 
+	 * @param n node
+	 * @return index of the transition, or <code>-1</code> if there is none
+	 */
+	private int nextSuccessor(int n) {
+		int end = graph.succEnd(state[n]);
+		outer:
+		while(cursor[n] < end) {
+			int e = cursor[n]++;
+			int t = graph.succState(e);
+			for(int a = n; a >= 0; a = parent[a]) {
+				if(state[a] == t) continue outer;
+			}
+			for(int c = firstChild[n]; c >= 0; c = nextSibling[c]) {
+				if(state[c] == t) continue outer;
+			}
+			return e;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Helper method that raises value of the node whose successors were all generated to the
+	 * lowest value of its successors, in memory or forgotten, and continues with its ancestors
+	 * while values change. Node without successors gets value <code>Infinity</code>.
+	 * 
+	 * @param n node
+	 */
+	private void backup(int n) {
+		while(n >= 0 && cursor[n] == graph.succEnd(state[n])) {
+			double f = forgotten[n];
+			for(int c = firstChild[n]; c >= 0; c = nextSibling[c]) {
+				f = Math.min(f, total[c]);
+			}
+			if(f <= total[n]) return;
+			
+			total[n] = f;
+			if(open.contains(n)) open.update(n);
+			if(leaves.contains(n)) leaves.update(n);
+			n = parent[n];
+		}
+	}
+	
+	/**
+	 * Helper method that finds the shallowest leaf with the highest value.
+	 * 
+	 * @param except node which must not be returned
+	 * @return found leaf, or <code>-1</code> if there is none
+	 */
+	private int worstLeaf(int except) {
+		if(leaves.isEmpty()) return -1;
+		int w = leaves.peek();
+		if(w != except) return w;
+		
+		leaves.remove(w);
+		int next = leaves.isEmpty() ? -1 : leaves.peek();
+		leaves.add(w);
+		return next;
+	}
+	
+	/**
+	 * Helper method that removes leaf from memory, remembering its value in its parent.
+	 * 
+	 * @param n leaf to remove
+	 * @param expanded node whose successor is generated, its value is backed up after the successor is added
+	 */
+	private void forget(int n, int expanded) {
+		dequeue(n);
+		int p = parent[n];
+		if(firstChild[p] == n) {
+			firstChild[p] = nextSibling[n];
+		} else {
+			int c = firstChild[p];
+			while(nextSibling[c] != n) c = nextSibling[c];
+			nextSibling[c] = nextSibling[n];
+		}
+		forgotten[p] = Math.min(forgotten[p], total[n]);
+		free[freeCount++] = n;
+		enqueue(p);
+		if(p != expanded) backup(p);
+	}
+	
+	/**
+	 * Helper method that adds node to the queue of nodes which can be expanded, and to the
+	 * queue of leaves which can be forgotten if it is a leaf other than the root.
+	 * 
+	 * @param n node
+	 */
+	private void enqueue(int n) {
+		if(!open.contains(n)) open.add(n);
+		if(firstChild[n] < 0 && parent[n] >= 0 && !leaves.contains(n)) leaves.add(n);
+	}
+	
+	/**
+	 * Helper method that removes node from both queues.
+	 * 
+	 * @param n node
+	 */
+	private void dequeue(int n) {
+		if(open.contains(n)) open.remove(n);
+		if(leaves.contains(n)) leaves.remove(n);
+	}
+	
+	/**
+	 * @param n node
+	 * @return ids of states on the path from the root to the node
+	 */
+	private int[] path(int n) {
+		int[] path = new int[depth[n] + 1];
+		for(int i = depth[n]; n >= 0; n = parent[n]) {
+			path[i--] = state[n];
+		}
+		return path;
+	}
+	
+	/**
+	 * @param s id of the state
+	 * @return heuristic value of the state, or 0 if it is not defined
+	 */
+	private double h(int s) {
+		return graph.hasHeuristic(s) ? graph.heuristic(s) : 0.0;
+	}
+	
+	/**
+	 * Class models binary heap of SMA* nodes with a position map, ordered by their values and depths.
+	 */
+	private class NodeHeap {
+		
+		/** <code>true</code> if the highest value and the shallowest node comes first. */
+		private final boolean worstFirst;
+		/** Heap of nodes. */
+		private int[] heap = new int[16];
+		/** Position of each node in the heap, <code>-1</code> if node is not in the heap. */
+		private int[] position = new int[0];
+		/** Number of nodes in the heap. */
+		private int size;
+		
+		/**
+		 * @param worstFirst <code>true</code> if the highest value and the shallowest node comes first,
+		 * <code>false</code> if the lowest value and the deepest node comes first
+		 */
+		NodeHeap(boolean worstFirst) {
+			this.worstFirst = worstFirst;
+		}
+		
+		/**
+		 * @return <code>true</code> if heap is empty, otherwise <code>false</code>
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}
+		
+		/**
+		 * @param n node
+		 * @return <code>true</code> if the node is in the heap, otherwise <code>false</code>
+		 */
+		boolean contains(int n) {
+			return n < position.length && position[n] >= 0;
+		}
+		
+		/**
+		 * @return first node, without removing it
+		 */
+		int peek() {
+			return heap[0];
+		}
+		
+		/**
+		 * @param n node to add
+		 */
+		void add(int n) {
+			if(n >= position.length) {
+				int old = position.length;
+				position = Arrays.copyOf(position, Math.max(n + 1, 2 * old));
+				Arrays.fill(position, old, position.length, -1);
+			}
+			if(size == heap.length) heap = Arrays.copyOf(heap, 2 * size);
+			heap[size] = n;
+			position[n] = size;
+			siftUp(size++);
+		}
+		
+		/**
+		 * @param n node to remove
+		 */
+		void remove(int n) {
+			int i = position[n];
+			position[n] = -1;
+			if(--size > i) {
+				int moved = heap[size];
+				heap[i] = moved;
+				position[moved] = i;
+				siftUp(i);
+				siftDown(position[moved]);
+			}
+		}
+		
+		/**
+		 * Restores heap order after value of the node changed.
+		 * 
+		 * @param n node
+		 */
+		void update(int n) {
+			siftUp(position[n]);
+			siftDown(position[n]);
+		}
+		
+		/**
+		 * @param i position in the heap
+		 */
+		private void siftUp(int i) {
+			int n = heap[i];
+			while(i > 0) {
+				int up = (i - 1) >>> 1;
+				if(!before(n, heap[up])) break;
+				heap[i] = heap[up];
+				position[heap[i]] = i;
+				i = up;
+			}
+			heap[i] = n;
+			position[n] = i;
+		}
+		
+		/**
+		 * @param i position in the heap
+		 */
+		private void siftDown(int i) {
+			int n = heap[i];
+			int half = size >>> 1;
+			while(i < half) {
+				int child = 2 * i + 1;
+				if(child + 1 < size && before(heap[child + 1], heap[child])) child++;
+				if(!before(heap[child], n)) break;
+				heap[i] = heap[child];
+				position[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = n;
+			position[n] = i;
+		}
+		
+		/**
+		 * @param n1 first node
+		 * @param n2 second node
+		 * @return <code>true</code> if first node comes before the second one, otherwise <code>false</code>
+		 */
+		private boolean before(int n1, int n2) {
+			int c = Double.compare(total[n1], total[n2]);
+			if(c == 0) c = Integer.compare(depth[n2], depth[n1]);
+			if(c == 0) c = Integer.compare(n1, n2);
+			return worstFirst ? c > 0 : c < 0;
+		}
+	}
+	
+}
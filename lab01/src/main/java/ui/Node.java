@@ -11,11 +11,11 @@ public class Node {
 	/** State of the node. */
 	private String state;
 	/** Price of the node. */
-	private Double price;
+	private double price;
 	/** Parent of the node. */
 	private Node parent;
-	/** Value of heuristic value from this node to goal state. */
-	private Double heuristic;
+	/** Value of heuristic value from this node to goal state, <code>NaN</code> if it is not given. */
+	private double heuristic = Double.NaN;
 	
 	/**
 	 * Constructor creates node using state, price and parent node.
@@ -24,7 +24,7 @@ public class Node {
 	 * @param price of the node
 	 * @param parent of the node
 	 */
-	public Node(String state, Double price, Node parent) {
+	public Node(String state, double price, Node parent) {
 		this.state = state;
 		this.price = price;
 		this.parent = parent;
@@ -38,7 +38,7 @@ public class Node {
 	 * @param parent of the node
 	 * @param heuristic heuristic value to goal state
 	 */
-	public Node(String state, Double price, Node parent, Double heuristic) {
+	public Node(String state, double price, Node parent, double heuristic) {
 		this(state, price, parent);
 		this.heuristic = heuristic;
 	}
@@ -53,7 +53,7 @@ public class Node {
 	/**
 	 * @return price of the node
 	 */
-	public Double getPrice() {
+	public double getPrice() {
 		return price;
 	}
 
@@ -65,9 +65,9 @@ public class Node {
 	}
 	
 	/**
-	 * @return heuristic value of this node
+	 * @return heuristic value of this node, <code>NaN</code> if it is not given
 	 */
-	public Double getHeuristic() {
+	public double getHeuristic() {
 		return heuristic;
 	}
 
@@ -0,0 +1,429 @@
+package ui;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class models additive pattern databases of the sliding puzzle, used as its heuristic.<br>
+ * Tiles are split into disjoint groups. Database of a group holds, for every placement of the
+ * group's tiles, the lowest number of moves of those tiles needed to bring them to their goal
+ * positions, while other tiles can move for free. It is built by breadth-first search from the
+ * goal placement over abstract states made of the placement and the empty position, where moves
+ * of other tiles cost 0, and keeps the lowest value over all empty positions. Each move moves one
+ * tile, so it changes the value of at most one group by at most 1, and the sum over all groups is
+ * a consistent heuristic.<br>
+ * Placement is ranked as a partial permutation of positions, so database of a group with
+ * <code>k</code> tiles on <code>n</code> positions has <code>n! / (n - k)!</code> entries, one byte
+ * each. Databases are saved to a file and memory-mapped when they are loaded, so they are not
+ * copied to the heap. Format (big-endian):
+ * <pre>
+ * int magic, int version, int size, int groups,
+ * for each group: int tiles, int[tiles] tile numbers,
+ * then for each group: byte[entries] moves by rank of the placement
+ * </pre>
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class PatternDatabase {
+	
+	/** Magic number at the start of the file ("UIPD"). */
+	private static final int MAGIC = 0x55495044;
+	/** Version of the format. */
+	private static final int VERSION = 1;
+	/** Value of abstract states which were not reached. */
+	private static final int UNREACHED = 0xFF;
+	
+	/** Number of rows and columns of the puzzle. */
+	private int size;
+	/** Tiles of each group. */
+	private int[][] groups;
+	/** Offset of the database of each group in the data. */
+	private long[] offsets;
+	/** Databases of all groups, one after another. */
+	private ByteBuffer data;
+	/** Time spent building the databases in nanoseconds, 0 if they were loaded. */
+	private long buildNanos;
+	/** Number of abstract states expanded while building the databases, 0 if they were loaded. */
+	private long expanded;
+	
+	/**
+	 * Constructor creates pattern databases with given data.
+	 * 
+	 * @param size number of rows and columns of the puzzle
+	 * @param groups tiles of each group
+	 * @param data databases of all groups, one after another, starting at position 0
+	 */
+	private PatternDatabase(int size, int[][] groups, ByteBuffer data) {
+		this.size = size;
+		this.groups = groups;
+		this.data = data;
+		int n = size * size;
+		offsets = new long[groups.length];
+		for(int i = 1; i < groups.length; i++) {
+			offsets[i] = offsets[i - 1] + entries(n, groups[i - 1].length);
+		}
+	}
+	
+	/**
+	 * Parses groups of tiles separated by slashes, each with comma separated tiles, for example
+	 * <code>1,2,3,4/5,6,7,8</code>.
+	 * 
+	 * @param groups text of the groups
+	 * @return tiles of each group
+	 * @throws NumberFormatException if a tile is not a number
+	 */
+	public static int[][] parseGroups(String groups) {
+		String[] parts = groups.split("/");
+		int[][] result = new int[parts.length][];
+		for(int i = 0; i < parts.length; i++) {
+			String[] tiles = parts[i].split(",");
+			result[i] = new int[tiles.length];
+			for(int j = 0; j < tiles.length; j++) {
+				result[i][j] = Integer.parseInt(tiles[j].trim());
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Builds pattern databases of the given groups.
+	 * 
+	 * @param size number of rows and columns of the puzzle
+	 * @param groups tiles of each group, each tile in at most one group
+	 * @return built databases
+	 * @throws IllegalArgumentException if size is not from 2 to 4, a tile is not on the puzzle or is
+	 * in more than one group, or a database would have more than {@link Integer#MAX_VALUE} abstract states
+	 */
+	public static PatternDatabase build(int size, int[][] groups) {
+		if(size < 2 || size > 4)
+			throw new IllegalArgumentException("Puzzle size must be from 2 to 4, was " + size + ".");
+		int n = size * size;
+		boolean[] used = new boolean[n];
+		long total = 0;
+		for(int[] group : groups) {
+			for(int t : group) {
+				if(t < 1 || t >= n || used[t])
+					throw new IllegalArgumentException("Tile " + t + " is not on the puzzle or is in more than one group.");
+				used[t] = true;
+			}
+			if(entries(n, group.length) * n > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Group " + Arrays.toString(group) + " has too many tiles.");
+			total += entries(n, group.length);
+		}
+		
+		long start = System.nanoTime();
+		ByteBuffer data = ByteBuffer.allocate(Math.toIntExact(total));
+		long expanded = 0;
+		for(int[] group : groups) {
+			expanded += search(size, group, data);
+		}
+		data.flip();
+		
+		PatternDatabase pdb = new PatternDatabase(size, groups, data);
+		pdb.buildNanos = System.nanoTime() - start;
+		pdb.expanded = expanded;
+		return pdb;
+	}
+	
+	/**
+	 * Loads pattern databases saved by {@link #save(String)}, mapping them to memory.
+	 * 
+	 * @param path of the file
+	 * @return loaded databases
+	 * @throws IOException if reading fails or file doesn't contain pattern databases
+	 */
+	public static PatternDatabase load(String path) throws IOException {
+		try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.remaining() < 16 || buffer.getInt() != MAGIC)
+				throw new IOException(path + " doesn't contain pattern databases.");
+			int version = buffer.getInt();
+			if(version != VERSION)
+				throw new IOException("Unsupported version " + version + " of pattern databases " + path + ".");
+			
+			int size = buffer.getInt();
+			if(size < 2 || size > 4)
+				throw new IOException("Pattern databases " + path + " have wrong puzzle size " + size + ".");
+			int[][] groups = new int[buffer.getInt()][];
+			long total = 0;
+			for(int i = 0; i < groups.length; i++) {
+				groups[i] = new int[buffer.getInt()];
+				for(int j = 0; j < groups[i].length; j++) {
+					groups[i][j] = buffer.getInt();
+				}
+				total += entries(size * size, groups[i].length);
+			}
+			if(buffer.remaining() != total)
+				throw new IOException("Pattern databases " + path + " are incomplete.");
+			return new PatternDatabase(size, groups, buffer.slice());
+		}
+	}
+	
+	/**
+	 * Saves the databases to a binary file.
+	 * 
+	 * @param path of the file
+	 * @throws IOException if writing fails
+	 */
+	public void save(String path) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(path)), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			out.writeInt(groups.length);
+			for(int[] group : groups) {
+				out.writeInt(group.length);
+				for(int t : group) {
+					out.writeInt(t);
+				}
+			}
+			byte[] chunk = new byte[1 << 16];
+			ByteBuffer all = data.duplicate();
+			all.position(0);
+			while(all.hasRemaining()) {
+				int length = Math.min(chunk.length, all.remaining());
+				all.get(chunk, 0, length);
+				out.write(chunk, 0, length);
+			}
+		}
+	}
+	
+	/**
+	 * @return name of the heuristic, made of sizes of the groups
+	 */
+	public String getName() {
+		StringBuilder sb = new StringBuilder("pdb");
+		for(int[] group : groups) {
+			sb.append('-').append(group.length);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @return number of rows and columns of the puzzle
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * @return number of entries of all databases, which is also their size in bytes
+	 */
+	public long entries() {
+		return data.capacity();
+	}
+	
+	/**
+	 * @return time spent building the databases in nanoseconds, 0 if they were loaded
+	 */
+	public long getBuildNanos() {
+		return buildNanos;
+	}
+	
+	/**
+	 * @return number of abstract states expanded while building the databases, 0 if they were loaded
+	 */
+	public long getExpanded() {
+		return expanded;
+	}
+	
+	/**
+	 * Computes heuristic value of the state as the sum of values of all groups.
+	 * 
+	 * @param state encoded state of the puzzle, four bits per position
+	 * @return heuristic value of the state
+	 */
+	public int heuristic(long state) {
+		int n = size * size;
+		int[] position = new int[n];
+		for(int i = 0; i < n; i++) {
+			position[(int) (state >>> (4 * i)) & 0xF] = i;
+		}
+		
+		int value = 0;
+		for(int g = 0; g < groups.length; g++) {
+			int[] group = groups[g];
+			long rank = 0;
+			int taken = 0;
+			for(int j = 0; j < group.length; j++) {
+				int p = position[group[j]];
+				rank = rank * (n - j) + p - Integer.bitCount(taken & ((1 << p) - 1));
+				taken |= 1 << p;
+			}
+			value += data.get((int) (offsets[g] + rank)) & 0xFF;
+		}
+		return value;
+	}
+	
+	/**
+	 * Helper method that builds database of one group with breadth-first search from the goal
+	 * placement, going through all abstract states with the same number of moves before the next
+	 * ones. Abstract state is the rank of the placement times the number of positions, increased
+	 * by the empty position.
+	 * 
+	 * @param size number of rows and columns of the puzzle
+	 * @param group tiles of the group
+	 * @param data buffer to which the database is appended
+	 * @return number of expanded abstract states
+	 */
+	private static long search(int size, int[] group, ByteBuffer data) {
+		int n = size * size;
+		int k = group.length;
+		int entries = (int) entries(n, k);
+		byte[] moves = new byte[entries * n];
+		Arrays.fill(moves, (byte) UNREACHED);
+		
+		int[] pos = new int[k];
+		for(int j = 0; j < k; j++) {
+			pos[j] = group[j] - 1;
+		}
+		int start = (int) rank(pos, k, n) * n + n - 1;
+		moves[start] = 0;
+		int[] current = {start};
+		int currentCount = 1;
+		int[] next = new int[1 << 10];
+		int nextCount = 0;
+		long expanded = 0;
+		int[] occupant = new int[n];
+		int[][] adjacent = adjacent(size);
+		
+		for(int d = 0; currentCount > 0; d++) {
+			for(int i = 0; i < currentCount; i++) {
+				int s = current[i];
+				if((moves[s] & 0xFF) != d) continue;
+				expanded++;
+				int empty = s % n;
+				unrank(s / n, pos, k, n);
+				Arrays.fill(occupant, -1);
+				for(int j = 0; j < k; j++) {
+					occupant[pos[j]] = j;
+				}
+				
+				for(int from : adjacent[empty]) {
+					int j = occupant[from];
+					int t;
+					if(j >= 0) {
+						pos[j] = empty;
+						t = (int) rank(pos, k, n) * n + from;
+						pos[j] = from;
+					} else {
+						t = s - empty + from;
+					}
+					int cost = j >= 0 ? d + 1 : d;
+					if((moves[t] & 0xFF) <= cost) continue;
+					moves[t] = (byte) cost;
+					if(j >= 0) {
+						if(nextCount == next.length) next = Arrays.copyOf(next, 2 * nextCount);
+						next[nextCount++] = t;
+					} else {
+						if(currentCount == current.length) current = Arrays.copyOf(current, 2 * currentCount);
+						current[currentCount++] = t;
+					}
+				}
+			}
+			int[] swap = current;
+			current = next;
+			currentCount = nextCount;
+			next = swap;
+			nextCount = 0;
+		}
+		
+		for(int r = 0; r < entries; r++) {
+			int best = UNREACHED;
+			for(int e = 0; e < n; e++) {
+				best = Math.min(best, moves[r * n + e] & 0xFF);
+			}
+			data.put((byte) best);
+		}
+		return expanded;
+	}
+	
+	/**
+	 * @param size number of rows and columns of the puzzle
+	 * @return positions next to each position
+	 */
+	private static int[][] adjacent(int size) {
+		int n = size * size;
+		int[][] adjacent = new int[n][];
+		for(int p = 0; p < n; p++) {
+			int row = p / size;
+			int column = p % size;
+			int[] next = new int[4];
+			int count = 0;
+			if(row > 0) next[count++] = p - size;
+			if(row < size - 1) next[count++] = p + size;
+			if(column > 0) next[count++] = p - 1;
+			if(column < size - 1) next[count++] = p + 1;
+			adjacent[p] = Arrays.copyOf(next, count);
+		}
+		return adjacent;
+	}
+	
+	/**
+	 * @param n number of positions
+	 * @param k number of tiles
+	 * @return number of placements of the tiles, <code>n! / (n - k)!</code>
+	 */
+	private static long entries(int n, int k) {
+		long result = 1;
+		for(int i = 0; i < k; i++) {
+			result *= n - i;
+		}
+		return result;
+	}
+	
+	/**
+	 * Helper method that ranks placement of tiles as a partial permutation: each position is
+	 * replaced by its index among positions not taken by earlier tiles.
+	 * 
+	 * @param pos position of each tile
+	 * @param k number of tiles
+	 * @param n number of positions
+	 * @return rank of the placement, lower than {@link #entries(int, int)}
+	 */
+	private static long rank(int[] pos, int k, int n) {
+		long rank = 0;
+		int taken = 0;
+		for(int j = 0; j < k; j++) {
+			int p = pos[j];
+			rank = rank * (n - j) + p - Integer.bitCount(taken & ((1 << p) - 1));
+			taken |= 1 << p;
+		}
+		return rank;
+	}
+	
+	/**
+	 * Helper method that finds placement of tiles from its rank.
+	 * 
+	 * @param rank of the placement
+	 * @param pos array to fill with position of each tile
+	 * @param k number of tiles
+	 * @param n number of positions
+	 */
+	private static void unrank(long rank, int[] pos, int k, int n) {
+		for(int j = k - 1; j >= 0; j--) {
+			pos[j] = (int) (rank % (n - j));
+			rank /= n - j;
+		}
+		int taken = 0;
+		for(int j = 0; j < k; j++) {
+			int p = -1;
+			for(int free = pos[j]; free >= 0; free--) {
+				do {
+					p++;
+				} while((taken & (1 << p)) != 0);
+			}
+			pos[j] = p;
+			taken |= 1 << p;
+		}
+	}
+	
+}
@@ -1,32 +1,112 @@
 package ui;
 
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
 import java.util.Stack;
+import java.util.function.Consumer;
 
 /**
- * Class is used to search given state space using BFS, UCS or A* algorithm.
+ * Class is used to search given state space using BFS, UCS, A* or one of their variants.<br>
+ * Search runs on the compact {@link StateGraph} form of the state space, states are
+ * represented by their ids and names are used only when the result is returned.<br>
+ * Nodes of BFS, UCS and A* are kept in parallel primitive arrays indexed by node id, which are
+ * reused between runs, so the search loop doesn't allocate objects. Node is created only for
+ * successors which are added to the open list.<br>
+ * When all transition costs are small non-negative integers, UCS keeps open states in a
+ * {@link BucketQueue} instead of a binary heap. Both order states by price and then by name,
+ * so the expansion order is the same.
  * 
  * @author Ana Bagić
  *
  */
 public class Search {
-
+	
+	/** Default maximal number of nodes kept in memory by SMA* algorithm. */
+	public static final int DEFAULT_NODE_BUDGET = 1_000_000;
+	/** Default initial weight of the heuristic used by ARA* algorithm. */
+	public static final double DEFAULT_WEIGHT = 3.0;
+	/** Default time in milliseconds after which ARA* algorithm stops improving the path. */
+	public static final long DEFAULT_DEADLINE = 1000;
+	/** Default number of states kept in each level by beam search, or open by greedy search. */
+	public static final int DEFAULT_BEAM_WIDTH = 100;
+	
 	/** State space to search. */
 	private StateSpace ss;
+	/** Generated state space to search, used instead of the stored one if it is set. */
+	private StateGenerator generator;
+	/** Grid map to search, expanded to the stored state space for algorithms other than JPS. */
+	private GridMap map;
 	/** Algorithm used to search. */
 	private Algorithm algorithm;
-	/** Queue of open nodes. */
-	private Queue<Node> open;
-	/** Maps states to node in open list (used so the contains is o(1)). */
-	private Map<String, Node> openHelp;
-	/** Map of closed nodes used for optimization. */
-	private Map<String, Node> closed;
+	/** Compact form of the state space used in the last run. */
+	private StateGraph source;
+	/** Graph searched in the last run, which is the compact form with ALT heuristic if landmarks are used. */
+	private StateGraph graph;
+	/** Id of the state of each node. */
+	private int[] state = new int[1 << 10];
+	/** Price of each node. */
+	private double[] g = new double[1 << 10];
+	/** Heuristic value of each node, 0 if heuristic is not used. */
+	private double[] h = new double[1 << 10];
+	/** Parent of each node, <code>-1</code> for the initial node. */
+	private int[] parent = new int[1 << 10];
+	/** Number of nodes created in the current run. */
+	private int nodeCount;
+	/** Id of the next node to check in the BFS queue, which holds nodes in the order they were created. */
+	private int queueHead;
+	/** Queue of open states used by UCS and A*, ordered by price or price increased by heuristic. */
+	private StateQueue openHeap;
+	/** Maps state ids to node in open list (used so the contains is o(1)), <code>-1</code> if there is none. */
+	private int[] openHelp;
+	/** Maps state ids to closed nodes, <code>-1</code> if there is none. */
+	private int[] closed;
+	/** Marks states which are valid in open and closed arrays in the current run. */
+	private int[] runMark;
+	/** Number of the current run. */
+	private int run;
+	/** Number of closed nodes. */
+	private int closedCount;
+	/** Flags marking goal states by their ids. */
+	private boolean[] goal;
+	/** Goal states from which goal flags were made. */
+	private Set<String> goalSource;
+	/** Maximal number of nodes kept in memory by SMA* algorithm. */
+	private int nodeBudget = DEFAULT_NODE_BUDGET;
+	/** Precomputed distances to the goal used to answer UCS, <code>null</code> if there are none. */
+	private DistanceTable table;
+	/** Contraction hierarchy used to answer UCS, <code>null</code> if there is none. */
+	private ContractionHierarchy hierarchy;
+	/** Number of threads used by HDA* and parallel BFS algorithms. */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/** Initial weight of the heuristic used by ARA* algorithm. */
+	private double weight = DEFAULT_WEIGHT;
+	/** Time in milliseconds after which ARA* algorithm stops improving the path. */
+	private long deadline = DEFAULT_DEADLINE;
+	/** Number of states kept in each level by beam search, or open by greedy search. */
+	private int beamWidth = DEFAULT_BEAM_WIDTH;
+	/** Number of reached states dropped from the frontier by beam or greedy search in the last run. */
+	private long pruned;
+	/** Number of jump points added to the open list by JPS in the last run. */
+	private int jumpPoints;
+	/** Receives formatted results found before the final one, <code>null</code> if they are not needed. */
+	private Consumer<String> progress;
+	/** Bound on suboptimality of the last result of ARA* algorithm. */
+	private double bound = Double.NaN;
+	/** Landmarks whose ALT heuristic is used instead of the loaded one, <code>null</code> if there are none. */
+	private Landmarks landmarks;
+	/** Directory in which BFS and UCS of generated state spaces keep their layers, <code>null</code> to keep them in memory. */
+	private Path external;
+	/** Memory budget in bytes of BFS and UCS in external memory. */
+	private long memory = ExternalSearch.DEFAULT_MEMORY;
+	/** Receives a line about each layer of search in external memory, <code>null</code> if they are not needed. */
+	private Consumer<String> layerReport;
+	/** Counters and phase times of the search. */
+	private SearchMetrics metrics = new SearchMetrics();
+	/** Number of open nodes in the current run. */
+	private int openCount;
 	
 	/**
 	 * Constructor creates new search based on given state space and algorithm.
@@ -37,90 +117,572 @@ public class Search {
 	public Search(StateSpace ss, Algorithm algorithm) {
 		this.ss = ss;
 		this.algorithm = algorithm;
-		closed = new HashMap<>();
-		openHelp = new HashMap<>();
 	}
 	
 	/**
-	 * Runs search algorithm.
+	 * Constructor creates new search based on given generated state space and algorithm.
+	 * 
+	 * @param generator of the state space to search
+	 * @param algorithm to use while searching
+	 */
+	public Search(StateGenerator generator, Algorithm algorithm) {
+		this.generator = generator;
+		this.algorithm = algorithm;
+	}
+	
+	/**
+	 * Constructor creates new search based on given grid map and algorithm. Map is searched
+	 * directly by JPS, and expanded to a state space for other algorithms.
+	 * 
+	 * @param map to search, with start and goal cells set
+	 * @param algorithm to use while searching
+	 */
+	public Search(GridMap map, Algorithm algorithm) {
+		this.map = map;
+		this.algorithm = algorithm;
+	}
+	
+	/**
+	 * Runs search algorithm and records its time and counters in the metrics.
 	 * 
 	 * @return result node of the search algorithm, or <code>null</code> if node is not found
 	 */
 	public Node runAlgorithm() {
-		closed.clear();
-		openHelp.clear();
-		
-		Comparator<Node> compPrice = (n1, n2) -> n1.getPrice().compareTo(n2.getPrice());
-		Comparator<Node> compState = (n1, n2) -> n1.getState().compareTo(n2.getState());
-		Comparator<Node> compHeuristic = (n1, n2) ->
-			Double.compare(n1.getPrice() + n1.getHeuristic(), n2.getPrice() + n2.getHeuristic());
-		switch(algorithm) {
-		case BFS -> {
-			open = new LinkedList<>();
+		metrics.setName(algorithm.getName());
+		long expanded = metrics.expanded;
+		metrics.start(SearchMetrics.Phase.SEARCH);
+		try {
+			return search();
+		} finally {
+			metrics.stop(SearchMetrics.Phase.SEARCH);
+			if(metrics.expanded == expanded) {
+				metrics.expanded += closedCount;
+				metrics.closed(closedCount);
+			}
+		}
+	}
+	
+	/**
+	 * Helper method that runs search algorithm. Only BFS, UCS and A* over the state graph count
+	 * each operation, and other algorithms report only their visited states.
+	 * 
+	 * @return result node of the search algorithm, or <code>null</code> if node is not found
+	 */
+	private Node search() {
+		if(generator != null && external != null && (algorithm == Algorithm.BFS || algorithm == Algorithm.UCS)) {
+			return runExternal();
 		}
-		case UCS -> {
-			open = new PriorityQueue<>(compPrice.thenComparing(compState));
+		if(map != null && algorithm == Algorithm.JPS) {
+			return runJumpPoint();
 		}
-		case ASTAR -> {
-			open = new PriorityQueue<>(compHeuristic.thenComparing(compState));
+		if(map != null && ss == null) {
+			ss = map.toStateSpace();
 		}
+		if(generator != null) {
+			ImplicitSearch search = new ImplicitSearch(generator);
+			Node result = search.search(generator.initialState(), algorithm);
+			closedCount = search.getVisited();
+			return result;
 		}
 		
-		Node result = run();
-		return result;
+		if(algorithm == Algorithm.UCS && hierarchy != null) {
+			Node result = runHierarchy();
+			if(result != null) return result;
+		}
+		
+		prepare();
+		return switch(algorithm) {
+		case BFS, ASTAR -> toNode(run());
+		case UCS -> runUniformCost();
+		case BIBFS, BIUCS -> runBidirectional();
+		case IDASTAR, SMASTAR -> runMemoryBounded();
+		case HDASTAR -> runParallel();
+		case ARASTAR -> runAnytime();
+		case PBFS -> runLevelSynchronous();
+		case BEAM, GREEDY -> runBeam();
+		case JPS -> throw new IllegalArgumentException("Algorithm " + algorithm.getName() + " can search only grid maps.");
+		};
+	}
+	
+	/**
+	 * @return number of states visited by the last run
+	 */
+	public int getVisited() {
+		return closedCount;
+	}
+	
+	/**
+	 * Sets the maximal number of nodes kept in memory by SMA* algorithm.
+	 * 
+	 * @param nodeBudget maximal number of nodes
+	 */
+	public void setNodeBudget(int nodeBudget) {
+		this.nodeBudget = nodeBudget;
+	}
+	
+	/**
+	 * Sets precomputed distances to the goal. UCS follows next states from the table instead of
+	 * searching whenever the table fits the goal states and gives the same path the search would.
+	 * 
+	 * @param table precomputed distances, or <code>null</code> to always search
+	 */
+	public void setDistanceTable(DistanceTable table) {
+		this.table = table;
+	}
+	
+	/**
+	 * Sets contraction hierarchy of the state space. UCS answers from the hierarchy without
+	 * preparing the search whenever the hierarchy finds the only cheapest path to a goal, which is
+	 * then the path the search would find.
+	 * 
+	 * @param hierarchy of the state space, or <code>null</code> to always search
+	 */
+	public void setHierarchy(ContractionHierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+	}
+	
+	/**
+	 * Sets the number of threads used by HDA* and parallel BFS algorithms.
+	 * 
+	 * @param threads number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * Sets the initial weight of the heuristic used by ARA* algorithm.
+	 * 
+	 * @param weight initial weight, at least 1
+	 */
+	public void setWeight(double weight) {
+		this.weight = weight;
+	}
+	
+	/**
+	 * Sets the time after which ARA* algorithm stops improving the path.
+	 * 
+	 * @param deadline time in milliseconds
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Sets the number of states kept in each level by beam search, or open by greedy search.
+	 * 
+	 * @param beamWidth number of states, at least 1
+	 */
+	public void setBeamWidth(int beamWidth) {
+		this.beamWidth = beamWidth;
+	}
+	
+	/**
+	 * Sets receiver of results which anytime algorithms find while they run. Each result is
+	 * formatted the same way {@link #printResult(Node)} prints it, and the last one is the
+	 * result returned by {@link #runAlgorithm()}.
+	 * 
+	 * @param progress receiver of formatted results, or <code>null</code> if they are not needed
+	 */
+	public void setProgress(Consumer<String> progress) {
+		this.progress = progress;
+	}
+	
+	/**
+	 * Sets landmarks whose ALT heuristic is used by heuristic algorithms instead of the heuristic
+	 * of the state space. Heuristic is computed for the goal states once and kept while they don't change.
+	 * 
+	 * @param landmarks chosen for the graph of the state space, or <code>null</code> to use its heuristic
+	 */
+	public void setLandmarks(Landmarks landmarks) {
+		this.landmarks = landmarks;
+	}
+	
+	/**
+	 * Sets metrics to which the search adds its time and counters, so they can be shared with
+	 * other phases of the program.
+	 * 
+	 * @param metrics to add to
+	 */
+	public void setMetrics(SearchMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return metrics of the search
+	 */
+	public SearchMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets directory in which BFS and UCS of generated state spaces keep reached states, so the
+	 * reachable part of the state space doesn't have to fit in memory.
+	 * 
+	 * @param external directory for the files, or <code>null</code> to search in memory
+	 * @param memory maximal number of bytes of generated states kept in memory
+	 */
+	public void setExternal(Path external, long memory) {
+		this.external = external;
+		this.memory = memory;
+	}
+	
+	/**
+	 * Sets receiver of a line about each layer of search in external memory, with its I/O volume and time.
+	 * 
+	 * @param layerReport receiver of the lines, or <code>null</code> if they are not needed
+	 */
+	public void setLayerReport(Consumer<String> layerReport) {
+		this.layerReport = layerReport;
+	}
+	
+	/**
+	 * Helper method that prepares helper arrays for the next run.
+	 */
+	private void prepare() {
+		StateGraph g = ss.getGraph();
+		if(g != source || runMark == null) {
+			source = g;
+			graph = g;
+			openHelp = new int[g.size()];
+			closed = new int[g.size()];
+			runMark = new int[g.size()];
+			run = 0;
+			int maxCost = g.maxIntegerCost();
+			if(algorithm == Algorithm.UCS && maxCost >= 0 && maxCost <= BucketQueue.MAX_COST) {
+				openHeap = new BucketQueue(g.size(), maxCost);
+			} else if(algorithm == Algorithm.UCS || algorithm == Algorithm.ASTAR) {
+				openHeap = new IndexedHeap(g.size());
+			}
+			goalSource = null;
+		}
+		if(goalSource != ss.getGoalStates()) {
+			goalSource = ss.getGoalStates();
+			goal = g.flags(goalSource);
+			if(landmarks != null && algorithm.isHeuristic() && landmarks.fits(g)) {
+				graph = g.withHeuristic(landmarks.heuristic(goal));
+			}
+		}
+		run++;
+		closedCount = 0;
+		nodeCount = 0;
+		openCount = 0;
+		queueHead = 0;
+		if(openHeap != null) openHeap.clear();
 	}
 	
 	/**
 	 * Helper method to run search algorithm.
 	 * 
-	 * @return result node for algorithm
+	 * @return result node for algorithm, <code>-1</code> if it is not found
 	 */
-	private Node run() {
+	private int run() {
 		boolean heur = algorithm == Algorithm.ASTAR;
-		Node initial = !heur ? new Node(ss.getInitState(), 0.0, null)
-			: new Node(ss.getInitState(), 0.0, null, ss.getHeurFunction().get(ss.getInitState()));
-		open.add(initial);
-		openHelp.put(initial.getState(), initial);
-		var goal = ss.getGoalStates();
-		var succ = ss.getSuccFunction();
-		var heurF = ss.getHeurFunction();
-		
-		while(!open.isEmpty()) {
-			Node n = open.poll();
-			openHelp.remove(n.getState());
-			closed.put(n.getState(), n);
-			if(goal.contains(n.getState())) {
+		int init = graph.indexOf(ss.getInitState());
+		if(init < 0) return -1;
+		
+		mark(init);
+		addOpen(init, 0.0, heur ? graph.heuristic(init) : 0.0, -1);
+		
+		int n;
+		while((n = pollOpen()) >= 0) {
+			int s = state[n];
+			openHelp[s] = -1;
+			closed[s] = n;
+			closedCount++;
+			metrics.expanded++;
+			metrics.closed(closedCount);
+			if(goal[s]) {
 				return n;
 			}
 			
-			var successors = succ.get(n.getState());
-			if(successors != null) {
-				for(Entry<String, Double> e : successors.entrySet()) {
-					Node m = !heur ? new Node(e.getKey(), e.getValue() + n.getPrice(), n)
-						: new Node(e.getKey(), e.getValue() + n.getPrice(), n, heurF.get(e.getKey()));
-					if(!containsClosed(m) && !containsOpen(m)) {
-						open.add(m);
-						openHelp.put(m.getState(), m);
-					}
+			for(int e = graph.succStart(s), end = graph.succEnd(s); e < end; e++) {
+				int t = graph.succState(e);
+				double price = graph.succCost(e) + g[n];
+				metrics.generated++;
+				mark(t);
+				if(!containsClosed(t, price) && !containsOpen(t, price)) {
+					addOpen(t, price, heur ? graph.heuristic(t) : 0.0, n);
 				}
 			}
 		}
-		return null;
+		return -1;
+	}
+	
+	/**
+	 * Helper method to run UCS algorithm, answering from the distance table when it is possible.
+	 * Number of visited states is then the number of states on the path.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runUniformCost() {
+		int init = graph.indexOf(ss.getInitState());
+		if(table == null || init < 0 || !table.fits(graph, goal) || !table.isExact(init)) {
+			return toNode(run());
+		}
+		
+		int[] path = table.path(init);
+		closedCount = path == null ? 0 : path.length;
+		return toNode(path);
 	}
 	
 	/**
-	 * Helper method that checks if node with given node's state already exists in closed list.
-	 * If it does and its price is greater than given node's price, it is removed from list.
+	 * Helper method to answer UCS from the contraction hierarchy. Number of visited states is
+	 * then the number of states on the path.
 	 * 
-	 * @param node to check if closed list contains it
-	 * @return <code>true</code> if closed already contains node's state and its price is lower then node's,
+	 * @return result node, or <code>null</code> if hierarchy doesn't give the only cheapest path
+	 */
+	private Node runHierarchy() {
+		StateGraph g = ss.getGraph();
+		int init = g.indexOf(ss.getInitState());
+		if(init < 0 || !hierarchy.fits(g)) return null;
+		
+		int[] goals = new int[ss.getGoalStates().size()];
+		int count = 0;
+		for(String state : ss.getGoalStates()) {
+			int id = g.indexOf(state);
+			if(id >= 0) goals[count++] = id;
+		}
+		
+		ContractionHierarchy.Query query = hierarchy.query();
+		int[] path = query.path(init, Arrays.copyOf(goals, count));
+		if(path == null || !query.isUnique()) return null;
+		
+		graph = g;
+		closedCount = path.length;
+		return toNode(path);
+	}
+	
+	/**
+	 * Helper method to run bidirectional search algorithm.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runBidirectional() {
+		int init = graph.indexOf(ss.getInitState());
+		if(init < 0) return null;
+		
+		BidirectionalSearch search = new BidirectionalSearch(graph);
+		int[] path = algorithm == Algorithm.BIBFS ? search.bfs(init, goal) : search.ucs(init, goal);
+		closedCount = search.getVisited();
+		return toNode(path);
+	}
+	
+	/**
+	 * Helper method to run memory-bounded search algorithm.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runMemoryBounded() {
+		int init = graph.indexOf(ss.getInitState());
+		if(init < 0) return null;
+		
+		MemoryBoundedSearch search = new MemoryBoundedSearch(graph);
+		int[] path = algorithm == Algorithm.IDASTAR ? search.idaStar(init, goal) : search.smaStar(init, goal, nodeBudget);
+		closedCount = search.getVisited();
+		return toNode(path);
+	}
+	
+	/**
+	 * Helper method to run parallel search algorithm.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runParallel() {
+		int init = graph.indexOf(ss.getInitState());
+		if(init < 0) return null;
+		
+		HashDistributedSearch search = new HashDistributedSearch(graph, threads);
+		int[] path = search.aStar(init, goal);
+		closedCount = search.getVisited();
+		return toNode(path);
+	}
+	
+	/**
+	 * Helper method to run parallel breadth-first search algorithm. Number of visited states is
+	 * the number of states reached up to the level of the found goal state.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runLevelSynchronous() {
+		int init = graph.indexOf(ss.getInitState());
+		if(init < 0) return null;
+		
+		DirectionOptimizingSearch search = new DirectionOptimizingSearch(graph, threads);
+		int[] path = search.bfs(init, goal);
+		closedCount = search.getVisited();
+		return toNode(path);
+	}
+	
+	/**
+	 * Helper method to run beam or greedy search, which keep only a fixed number of states.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runBeam() {
+		int init = graph.indexOf(ss.getInitState());
+		if(init < 0) return null;
+		
+		BeamSearch search = new BeamSearch(graph);
+		int[] path = algorithm == Algorithm.BEAM ? search.beam(init, goal, beamWidth) : search.greedy(init, goal, beamWidth);
+		closedCount = search.getVisited();
+		pruned = search.getPruned();
+		return toNode(path);
+	}
+	
+	/**
+	 * Helper method to run jump point search of the grid map. Number of visited states is the
+	 * number of expanded jump points, and only cells of the found path get names.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runJumpPoint() {
+		JumpPointSearch search = new JumpPointSearch(map);
+		int[] path = search.search(map.getStart(), map.getGoal());
+		closedCount = search.getVisited();
+		jumpPoints = search.getJumpPoints();
+		if(path == null) return null;
+		
+		Node result = null;
+		double price = 0.0;
+		for(int i = 0; i < path.length; i++) {
+			if(i > 0) price += map.distance(path[i - 1], path[i]);
+			result = new Node(map.name(path[i]), price, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Helper method to run BFS or UCS of the generated state space in external memory. Number of
+	 * visited states is the number of states in the made layers.
+	 * 
+	 * @return result node for algorithm
+	 * @throws UncheckedIOException if reading or writing files fails
+	 */
+	private Node runExternal() {
+		ExternalSearch search = new ExternalSearch(generator, external, memory);
+		search.setReport(layerReport);
+		try {
+			Node result = search.search(generator.initialState(), algorithm);
+			closedCount = (int) Math.min(search.getVisited(), Integer.MAX_VALUE);
+			return result;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Helper method to run anytime search algorithm, reporting each improved path.
+	 * 
+	 * @return result node for algorithm
+	 */
+	private Node runAnytime() {
+		int init = graph.indexOf(ss.getInitState());
+		if(init < 0) return null;
+		
+		AnytimeSearch search = new AnytimeSearch(graph);
+		long end = System.nanoTime() + deadline * 1_000_000L;
+		int[] path = search.araStar(init, goal, weight, end, (p, b) -> {
+			if(progress == null) return;
+			closedCount = search.getVisited();
+			bound = b;
+			progress.accept(formatResult(toNode(p)));
+		});
+		closedCount = search.getVisited();
+		bound = search.getBound();
+		return toNode(path);
+	}
+	
+	/**
+	 * Helper method that creates node and adds it to the open list. If the open heap already
+	 * contains the node's state, its key is decreased instead.
+	 * 
+	 * @param s id of the node's state
+	 * @param price of the node
+	 * @param heuristic value of the node's state
+	 * @param from parent of the node, <code>-1</code> if there is none
+	 */
+	private void addOpen(int s, double price, double heuristic, int from) {
+		if(nodeCount == state.length) {
+			int length = 2 * nodeCount;
+			state = Arrays.copyOf(state, length);
+			g = Arrays.copyOf(g, length);
+			h = Arrays.copyOf(h, length);
+			parent = Arrays.copyOf(parent, length);
+		}
+		int n = nodeCount++;
+		state[n] = s;
+		g[n] = price;
+		h[n] = heuristic;
+		parent[n] = from;
+		
+		openHelp[s] = n;
+		metrics.open(++openCount);
+		if(algorithm != Algorithm.BFS) {
+			double key = algorithm == Algorithm.ASTAR ? price + heuristic : price;
+			if(openHeap.contains(s)) {
+				openHeap.decreaseKey(s, key);
+				metrics.heapDecreases++;
+			} else {
+				openHeap.add(s, key);
+				metrics.heapAdds++;
+			}
+		}
+	}
+	
+	/**
+	 * Helper method that removes the next node from the open list. BFS takes the oldest node
+	 * which is still open, and UCS and A* the node of the state with the lowest key.
+	 * 
+	 * @return removed node, <code>-1</code> if open list is empty
+	 */
+	private int pollOpen() {
+		if(algorithm == Algorithm.BFS) {
+			while(queueHead < nodeCount) {
+				int n = queueHead++;
+				if(openHelp[state[n]] == n) {
+					openCount--;
+					return n;
+				}
+			}
+			return -1;
+		}
+		if(openHeap.isEmpty()) return -1;
+		metrics.heapPolls++;
+		openCount--;
+		return openHelp[openHeap.poll()];
+	}
+	
+	/**
+	 * Helper method that clears open and closed entries of the given state if they were left
+	 * by one of the previous runs.
+	 * 
+	 * @param s id of the state
+	 */
+	private void mark(int s) {
+		if(runMark[s] != run) {
+			runMark[s] = run;
+			openHelp[s] = -1;
+			closed[s] = -1;
+		}
+	}
+	
+	/**
+	 * Helper method that checks if node with given state already exists in closed list.
+	 * If it does and its price is greater than given price, it is removed from list.
+	 * 
+	 * @param s id of the state
+	 * @param price of the new node
+	 * @return <code>true</code> if closed already contains the state and its price is lower then given,
 	 * otherwise <code>false</code>
 	 */
-	private boolean containsClosed(Node node) {
-		Node n = closed.get(node.getState());
-		if(n != null) {
-			if(n.getPrice() > node.getPrice()) {
-				closed.remove(node.getState());
+	private boolean containsClosed(int s, double price) {
+		int n = closed[s];
+		if(n >= 0) {
+			if(g[n] > price) {
+				closed[s] = -1;
+				closedCount--;
+				metrics.reopened++;
 				return false;
 			}
 			return true;
@@ -129,19 +691,21 @@ public class Search {
 	}
 	
 	/**
-	 * Helper method that checks if node with given node's state already exists in open list.
-	 * If it does and its price is greater than given node's price, it is removed from list.
+	 * Helper method that checks if node with given state already exists in open list.
+	 * If it does and its price is greater than given price, it is removed from list
+	 * (heap keeps the state so its key can be decreased).
 	 * 
-	 * @param node to check if open list contains it
-	 * @return <code>true</code> if open already contains node's state and its price is lower then node's,
+	 * @param s id of the state
+	 * @param price of the new node
+	 * @return <code>true</code> if open already contains the state and its price is lower then given,
 	 * otherwise <code>false</code>
 	 */
-	private boolean containsOpen(Node node) {
-		Node n = openHelp.get(node.getState());
-		if(n != null) {
-			if(n.getPrice() > node.getPrice()) {
-				open.remove(node);
-				openHelp.remove(node.getState());
+	private boolean containsOpen(int s, double price) {
+		int n = openHelp[s];
+		if(n >= 0) {
+			if(g[n] > price) {
+				openHelp[s] = -1;
+				openCount--;
 				return false;
 			}
 			return true;
@@ -149,12 +713,62 @@ public class Search {
 		return false;
 	}
 	
+	/**
+	 * Helper method that converts result of the search to the nodes named by states.
+	 * 
+	 * @param n result node of the search
+	 * @return node with the same state, price and path, or <code>null</code> if given node is <code>-1</code>
+	 */
+	private Node toNode(int n) {
+		if(n < 0) return null;
+		
+		int length = 0;
+		for(int p = n; p >= 0; p = parent[p]) length++;
+		int[] path = new int[length];
+		for(int p = n, i = length - 1; p >= 0; p = parent[p]) path[i--] = p;
+		
+		Node result = null;
+		for(int p : path) {
+			result = new Node(graph.name(state[p]), g[p], result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Helper method that converts path of state ids to the nodes named by states.
+	 * Prices are summed from the first state forward, like it is done during the search.
+	 * 
+	 * @param path ids of states on the path
+	 * @return node with the last state of the path, or <code>null</code> if given path is <code>null</code>
+	 */
+	private Node toNode(int[] path) {
+		if(path == null) return null;
+		
+		Node result = null;
+		double price = 0.0;
+		for(int i = 0; i < path.length; i++) {
+			if(i > 0) price += graph.succCost(graph.findEdge(path[i - 1], path[i]));
+			result = new Node(graph.name(path[i]), price, result);
+		}
+		return result;
+	}
+	
 	/**
 	 * Method that prints the results of search.
 	 * 
 	 * @param n result node of search algorithm
 	 */
 	public void printResult(Node n) {
+		System.out.print(formatResult(n));
+	}
+	
+	/**
+	 * Formats result of the search the same way {@link #printResult(Node)} prints it.
+	 * 
+	 * @param n result node of the search algorithm, or <code>null</code> if node is not found
+	 * @return formatted result, ending with a line separator
+	 */
+	public String formatResult(Node n) {
 		Stack<Node> path = new Stack<>();
 		Node parent = n;
 		while(parent != null) {
@@ -162,21 +776,30 @@ public class Search {
 			parent = parent.getParent();
 		}
 		
-		System.out.print("# " + algorithm.getName());
-		System.out.println(algorithm == Algorithm.ASTAR ? (" " + ss.getHeuristicPath()) : "");
+		String nl = System.lineSeparator();
+		StringBuilder sb = new StringBuilder();
+		sb.append("# ").append(algorithm.getName());
+		String heuristic = generator != null ? generator.getName()
+				: landmarks != null && graph != source ? landmarks.getName()
+				: ss != null ? ss.getHeuristicPath() : "octile";
+		sb.append(algorithm.isHeuristic() ? (" " + heuristic) : "").append(nl);
 		if(n != null) {
-			System.out.println("[FOUND_SOLUTION]: yes");
-			System.out.println("[STATES_VISITED]: " + closed.size());
-			System.out.println("[PATH_LENGTH]: " + path.size());
-			System.out.println("[TOTAL_COST]: " +  n.getPrice());
-			System.out.print("[PATH]: " + path.pop().getState());
+			sb.append("[FOUND_SOLUTION]: yes").append(nl);
+			sb.append("[STATES_VISITED]: ").append(closedCount).append(nl);
+			sb.append("[PATH_LENGTH]: ").append(path.size()).append(nl);
+			sb.append("[TOTAL_COST]: ").append(n.getPrice()).append(nl);
+			if(algorithm == Algorithm.ARASTAR) sb.append("[SUBOPTIMALITY_BOUND]: ").append(bound).append(nl);
+			if(algorithm == Algorithm.BEAM || algorithm == Algorithm.GREEDY) sb.append("[STATES_PRUNED]: ").append(pruned).append(nl);
+			if(algorithm == Algorithm.JPS) sb.append("[JUMP_POINTS]: ").append(jumpPoints).append(nl);
+			sb.append("[PATH]: ").append(path.pop().getState());
 			while (!path.isEmpty()) {
-				System.out.print(" => " + path.pop().getState());
+				sb.append(" => ").append(path.pop().getState());
 			}
-			System.out.println();
+			sb.append(nl);
 		} else {
-			System.out.println("[FOUND_SOLUTION]: no");
+			sb.append("[FOUND_SOLUTION]: no").append(nl);
+			if(algorithm == Algorithm.BEAM || algorithm == Algorithm.GREEDY) sb.append("[STATES_PRUNED]: ").append(pruned).append(nl);
 		}
-
+		return sb.toString();
 	}
 }
@@ -0,0 +1,178 @@
+package ui;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Class models counters and phase times of one run of the program, reported as one JSON line.<br>
+ * Counters are plain fields increased by the search loop, so they cost no more than the
+ * bookkeeping the loop already does and can stay on. Wall and CPU time are read only at the start
+ * and the end of each phase. CPU time is the time of the thread which runs the phase, so it
+ * doesn't include worker threads of parallel algorithms.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class SearchMetrics {
+	
+	/**
+	 * Phases of one run.
+	 */
+	public enum Phase {
+		/** Loading the state space or building precomputed data. */
+		LOAD,
+		/** Running the search algorithm. */
+		SEARCH,
+		/** Checking the heuristic. */
+		CHECK,
+		/** Printing the result. */
+		OUTPUT
+	}
+	
+	/** Bean used to read CPU time of the current thread. */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	
+	/** Name of the algorithm or check, <code>null</code> if it is not known. */
+	private String name;
+	/** Number of generated successors, or checked conditions for checks. */
+	long generated;
+	/** Number of expanded nodes, or checked states for checks. */
+	long expanded;
+	/** Number of closed nodes which were opened again with a lower price. */
+	long reopened;
+	/** Number of violated conditions found by checks. */
+	long violated;
+	/** Number of states added to the open queue. */
+	long heapAdds;
+	/** Number of decreased keys in the open queue. */
+	long heapDecreases;
+	/** Number of states removed from the open queue. */
+	long heapPolls;
+	/** Greatest number of open nodes. */
+	long peakOpen;
+	/** Greatest number of closed nodes. */
+	long peakClosed;
+	/** Wall time of each phase in nanoseconds. */
+	private final long[] wall = new long[Phase.values().length];
+	/** CPU time of each phase in nanoseconds. */
+	private final long[] cpu = new long[Phase.values().length];
+	/** Wall time at the start of each running phase. */
+	private final long[] wallStart = new long[Phase.values().length];
+	/** CPU time at the start of each running phase. */
+	private final long[] cpuStart = new long[Phase.values().length];
+	
+	/**
+	 * @param name of the algorithm or check
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * @return number of expanded nodes, or checked states for checks
+	 */
+	public long getExpanded() {
+		return expanded;
+	}
+	
+	/**
+	 * @return number of generated successors, or checked conditions for checks
+	 */
+	public long getGenerated() {
+		return generated;
+	}
+	
+	/**
+	 * @return number of closed nodes which were opened again with a lower price
+	 */
+	public long getReopened() {
+		return reopened;
+	}
+	
+	/**
+	 * Starts measuring time of the phase.
+	 * 
+	 * @param phase to start
+	 */
+	public void start(Phase phase) {
+		wallStart[phase.ordinal()] = System.nanoTime();
+		cpuStart[phase.ordinal()] = cpuTime();
+	}
+	
+	/**
+	 * Stops measuring time of the phase and adds it to the time of the phase.
+	 * 
+	 * @param phase to stop
+	 */
+	public void stop(Phase phase) {
+		wall[phase.ordinal()] += System.nanoTime() - wallStart[phase.ordinal()];
+		cpu[phase.ordinal()] += cpuTime() - cpuStart[phase.ordinal()];
+	}
+	
+	/**
+	 * @param phase to read
+	 * @return wall time of the phase in nanoseconds
+	 */
+	public long getWallNanos(Phase phase) {
+		return wall[phase.ordinal()];
+	}
+	
+	/**
+	 * Helper method that records number of open nodes if it is the greatest so far.
+	 * 
+	 * @param open number of open nodes
+	 */
+	void open(long open) {
+		if(open > peakOpen) peakOpen = open;
+	}
+	
+	/**
+	 * Helper method that records number of closed nodes if it is the greatest so far.
+	 * 
+	 * @param closed number of closed nodes
+	 */
+	void closed(long closed) {
+		if(closed > peakClosed) peakClosed = closed;
+	}
+	
+	/**
+	 * Formats the metrics as one line of JSON. Times are in milliseconds.
+	 * 
+	 * @return JSON object without line separator
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder(512);
+		sb.append('{');
+		sb.append("\"name\":");
+		if(name == null) {
+			sb.append("null");
+		} else {
+			sb.append('"').append(name.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+		}
+		sb.append(",\"generated\":").append(generated);
+		sb.append(",\"expanded\":").append(expanded);
+		sb.append(",\"reopened\":").append(reopened);
+		sb.append(",\"violated\":").append(violated);
+		sb.append(",\"heap_adds\":").append(heapAdds);
+		sb.append(",\"heap_decreases\":").append(heapDecreases);
+		sb.append(",\"heap_polls\":").append(heapPolls);
+		sb.append(",\"peak_open\":").append(peakOpen);
+		sb.append(",\"peak_closed\":").append(peakClosed);
+		for(Phase p : Phase.values()) {
+			String key = p.name().toLowerCase(Locale.ROOT);
+			sb.append(",\"").append(key).append("_wall_ms\":").append(String.format(Locale.ROOT, "%.3f", wall[p.ordinal()] / 1e6));
+			sb.append(",\"").append(key).append("_cpu_ms\":").append(String.format(Locale.ROOT, "%.3f", cpu[p.ordinal()] / 1e6));
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+	
+	/**
+	 * @return CPU time of the current thread in nanoseconds, or 0 if it can't be measured
+	 */
+	private static long cpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0L;
+	}
+	
+}
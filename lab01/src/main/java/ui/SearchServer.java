@@ -0,0 +1,289 @@
+package ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Class is used to answer many search queries against one loaded state space.<br>
+ * Loaded state space is never changed. Every query gets its own {@link StateSpace} which shares
+ * the compact form of the loaded one, and its own {@link Search}, so queries run concurrently on
+ * a thread pool. Queries are lines of <code>key=value</code> pairs:
+ * <pre>
+ * alg=astar start=state goals=state1,state2 h=path_to_heuristic
+ * </pre>
+ * Only <code>alg</code> is required. Initial state, goal states and heuristic default to the
+ * loaded ones, and heuristic functions given by path are loaded once and cached. Blank lines and
+ * lines starting with '#' are skipped. Answers are written in the order of the queries, in the
+ * same format as {@link Search#printResult(Node)}, each followed by an empty line. Query which
+ * can't be answered, or whose search fails with an error, gets an <code>[ERROR]</code> line instead.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class SearchServer {
+	
+	/** Loaded state space. */
+	private final StateSpace ss;
+	/** Pool on which queries run. */
+	private final ExecutorService pool;
+	/** Graphs with heuristic functions loaded by path. */
+	private final Map<String, StateGraph> heuristics = new ConcurrentHashMap<>();
+	/** Maximal number of nodes kept in memory by SMA* algorithm. */
+	private int nodeBudget = Search.DEFAULT_NODE_BUDGET;
+	/** Precomputed distances to the goal used to answer UCS queries, <code>null</code> if there are none. */
+	private DistanceTable table;
+	/** Contraction hierarchy used to answer UCS queries, <code>null</code> if there is none. */
+	private ContractionHierarchy hierarchy;
+	/** Landmarks whose ALT heuristic is used by heuristic queries, <code>null</code> if there are none. */
+	private Landmarks landmarks;
+	/** Initial weight of the heuristic used by ARA* algorithm. */
+	private double weight = Search.DEFAULT_WEIGHT;
+	/** Time in milliseconds after which ARA* algorithm stops improving the path. */
+	private long deadline = Search.DEFAULT_DEADLINE;
+	/** Number of states kept in each level by beam search, or open by greedy search. */
+	private int beamWidth = Search.DEFAULT_BEAM_WIDTH;
+	
+	/**
+	 * Constructor creates server for given state space.
+	 * 
+	 * @param ss loaded state space, which must not be changed afterwards
+	 * @param threads number of queries run at the same time
+	 */
+	public SearchServer(StateSpace ss, int threads) {
+		this.ss = ss;
+		this.pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "search-query");
+			t.setDaemon(true);
+			return t;
+		});
+		ss.getGraph();
+	}
+	
+	/**
+	 * Sets the maximal number of nodes kept in memory by SMA* algorithm.
+	 * 
+	 * @param nodeBudget maximal number of nodes
+	 */
+	public void setNodeBudget(int nodeBudget) {
+		this.nodeBudget = nodeBudget;
+	}
+	
+	/**
+	 * Sets precomputed distances to the goal, used by UCS queries with the goal states they were computed for.
+	 * 
+	 * @param table precomputed distances, or <code>null</code> to always search
+	 */
+	public void setDistanceTable(DistanceTable table) {
+		this.table = table;
+	}
+	
+	/**
+	 * Sets contraction hierarchy of the loaded state space, used by UCS queries.
+	 * 
+	 * @param hierarchy of the loaded state space, or <code>null</code> to always search
+	 */
+	public void setHierarchy(ContractionHierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+	}
+	
+	/**
+	 * Sets landmarks of the loaded state space, whose ALT heuristic is used by heuristic queries
+	 * instead of the loaded or given heuristic function.
+	 * 
+	 * @param landmarks of the loaded state space, or <code>null</code> to use heuristic functions
+	 */
+	public void setLandmarks(Landmarks landmarks) {
+		this.landmarks = landmarks;
+	}
+	
+	/**
+	 * Sets the initial weight of the heuristic used by ARA* algorithm.
+	 * 
+	 * @param weight initial weight, at least 1
+	 */
+	public void setWeight(double weight) {
+		this.weight = weight;
+	}
+	
+	/**
+	 * Sets the time after which ARA* algorithm stops improving the path.
+	 * 
+	 * @param deadline time in milliseconds
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Sets the number of states kept in each level by beam search, or open by greedy search.
+	 * 
+	 * @param beamWidth number of states, at least 1
+	 */
+	public void setBeamWidth(int beamWidth) {
+		this.beamWidth = beamWidth;
+	}
+	
+	/**
+	 * Answers queries read from given input until its end. Queries are started as soon as they
+	 * are read, and answers are written while reading continues.
+	 * 
+	 * @param in input of queries
+	 * @param out output of answers
+	 * @throws IOException if reading fails
+	 */
+	public void serve(BufferedReader in, PrintWriter out) throws IOException {
+		BlockingQueue<Future<String>> answers = new LinkedBlockingQueue<>();
+		Thread writer = new Thread(() -> write(answers, out), "search-answers");
+		writer.start();
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				String query = line.strip();
+				if(query.isEmpty() || query.startsWith("#")) continue;
+				answers.add(pool.submit(() -> answer(query)));
+			}
+		} finally {
+			answers.add(CompletableFuture.completedFuture(null));
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Listens for connections on given local port, answering queries of each connection
+	 * until it is closed. Method doesn't return unless listening fails.
+	 * 
+	 * @param port local port
+	 * @throws IOException if listening fails
+	 */
+	public void listen(int port) throws IOException {
+		try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			while(true) {
+				Socket socket = server.accept();
+				Thread t = new Thread(() -> {
+					try(socket;
+						BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+						PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+						serve(in, out);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}, "search-connection");
+				t.setDaemon(true);
+				t.start();
+			}
+		}
+	}
+	
+	/**
+	 * Answers one query.
+	 * 
+	 * @param query line with <code>key=value</code> pairs
+	 * @return formatted result of the search, or error line
+	 */
+	public String answer(String query) {
+		try {
+			Algorithm algorithm = null;
+			String start = ss.getInitState();
+			Set<String> goals = ss.getGoalStates();
+			String hPath = ss.getHeuristicPath();
+			for(String pair : query.split("\\s+")) {
+				int eq = pair.indexOf('=');
+				if(eq < 0)
+					throw new IllegalArgumentException("Expected key=value, got " + pair + ".");
+				String value = pair.substring(eq + 1);
+				switch(pair.substring(0, eq)) {
+				case "alg" -> algorithm = Algorithm.parse(value);
+				case "start" -> start = value;
+				case "goals" -> goals = new HashSet<>(Arrays.asList(value.split(",")));
+				case "h" -> hPath = value;
+				default -> throw new IllegalArgumentException("Unknown key " + pair.substring(0, eq) + ".");
+				}
+			}
+			if(algorithm == null)
+				throw new IllegalArgumentException("Algorithm is not given.");
+			
+			StateSpace q = StateSpace.query(start, goals, graph(hPath), hPath);
+			Search search = new Search(q, algorithm);
+			search.setNodeBudget(nodeBudget);
+			search.setDistanceTable(table);
+			search.setHierarchy(hierarchy);
+			search.setLandmarks(landmarks);
+			search.setWeight(weight);
+			search.setDeadline(deadline);
+			search.setBeamWidth(beamWidth);
+			return search.formatResult(search.runAlgorithm());
+		} catch (RuntimeException e) {
+			return "[ERROR]: " + e.getMessage() + System.lineSeparator();
+		}
+	}
+	
+	/**
+	 * Helper method that returns compact form with given heuristic function, loading it if needed.
+	 * 
+	 * @param hPath path to the heuristic function descriptor
+	 * @return compact form of the loaded state space with given heuristic function
+	 */
+	private StateGraph graph(String hPath) {
+		if(hPath == null || hPath.equals(ss.getHeuristicPath())) return ss.getGraph();
+		return heuristics.computeIfAbsent(hPath, path -> {
+			try {
+				return ss.getGraph().withHeuristic(StateSpaceLoader.loadHeuristic(ss.getGraph(), path));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+	
+	/**
+	 * Helper method that writes answers in order until the answer marking the end. Query whose
+	 * search failed with an error gets an error line, so later answers are still written.
+	 * 
+	 * @param answers queue of answers
+	 * @param out output of answers
+	 */
+	private static void write(BlockingQueue<Future<String>> answers, PrintWriter out) {
+		try {
+			while(true) {
+				String answer;
+				try {
+					answer = answers.take().get();
+				} catch (ExecutionException e) {
+					answer = "[ERROR]: " + e.getCause() + System.lineSeparator();
+				}
+				if(answer == null) break;
+				out.print(answer);
+				out.println();
+				if(answers.isEmpty()) out.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			out.flush();
+		}
+	}
+	
+}
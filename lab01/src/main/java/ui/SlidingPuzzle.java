@@ -0,0 +1,194 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Class models sliding puzzle of size up to 4x4 (15-puzzle) as a generated state space.<br>
+ * State is packed in a <code>long</code>, four bits per position holding the tile on it, with
+ * 0 for the empty position. Goal state has tiles in increasing order and the empty position
+ * last. Every move costs 1, and heuristic is the sum of Manhattan distances of tiles from their
+ * goal positions, which is consistent. When pattern databases are set, heuristic is the greater
+ * of that sum and the value of the databases, which is also consistent. States are named by their rows of hexadecimal tiles,
+ * for example <code>123_456_780</code>.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class SlidingPuzzle implements StateGenerator {
+	
+	/** Number of rows and columns. */
+	private int size;
+	/** Encoded initial state. */
+	private long initial;
+	/** Encoded goal state. */
+	private long goal;
+	/** Pattern databases used by the heuristic, <code>null</code> if there are none. */
+	private PatternDatabase patterns;
+	
+	/**
+	 * Constructor creates puzzle with given initial tiles.
+	 * 
+	 * @param tiles tiles row by row, with 0 for the empty position
+	 * @throws IllegalArgumentException if tiles are not a permutation of 0 to n*n-1 for n from 2 to 4,
+	 * or the goal can't be reached from them
+	 */
+	public SlidingPuzzle(int[] tiles) {
+		size = (int) Math.round(Math.sqrt(tiles.length));
+		if(size < 2 || size > 4 || size * size != tiles.length)
+			throw new IllegalArgumentException("Puzzle must have 4, 9 or 16 tiles, had " + tiles.length + ".");
+		int[] sorted = tiles.clone();
+		Arrays.sort(sorted);
+		for(int i = 0; i < sorted.length; i++) {
+			if(sorted[i] != i)
+				throw new IllegalArgumentException("Tiles must be numbers from 0 to " + (tiles.length - 1) + ".");
+		}
+		if(!solvable(tiles))
+			throw new IllegalArgumentException("Goal can't be reached from " + Arrays.toString(tiles) + ".");
+		
+		for(int i = 0; i < tiles.length; i++) {
+			initial |= (long) tiles[i] << (4 * i);
+			goal |= (long) ((i + 1) % tiles.length) << (4 * i);
+		}
+	}
+	
+	/**
+	 * Parses puzzle from comma separated tiles given row by row.
+	 * 
+	 * @param tiles comma separated tiles, with 0 for the empty position
+	 * @return parsed puzzle
+	 * @throws IllegalArgumentException if tiles are not a valid puzzle
+	 */
+	public static SlidingPuzzle parse(String tiles) {
+		String[] parts = tiles.split(",");
+		int[] values = new int[parts.length];
+		for(int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		return new SlidingPuzzle(values);
+	}
+	
+	/**
+	 * Sets pattern databases used by the heuristic together with the sum of Manhattan distances.
+	 * 
+	 * @param patterns built for puzzles of this size, or <code>null</code> to use only Manhattan distances
+	 * @throws IllegalArgumentException if databases were built for a different size
+	 */
+	public void setPatternDatabase(PatternDatabase patterns) {
+		if(patterns != null && patterns.getSize() != size)
+			throw new IllegalArgumentException("Pattern databases are for size " + patterns.getSize() + ", puzzle has size " + size + ".");
+		this.patterns = patterns;
+	}
+	
+	/**
+	 * @return number of rows and columns
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	@Override
+	public String getName() {
+		String name = "sliding-puzzle-" + size + "x" + size;
+		return patterns == null ? name : name + "+" + patterns.getName();
+	}
+	
+	@Override
+	public long initialState() {
+		return initial;
+	}
+	
+	@Override
+	public boolean isGoal(long state) {
+		return state == goal;
+	}
+	
+	@Override
+	public int maxSuccessors() {
+		return 4;
+	}
+	
+	@Override
+	public int successors(long state, long[] next, double[] costs) {
+		int empty = 0;
+		while(tile(state, empty) != 0) empty++;
+		int row = empty / size;
+		int column = empty % size;
+		
+		int count = 0;
+		if(row > 0) next[count++] = move(state, empty, empty - size);
+		if(row < size - 1) next[count++] = move(state, empty, empty + size);
+		if(column > 0) next[count++] = move(state, empty, empty - 1);
+		if(column < size - 1) next[count++] = move(state, empty, empty + 1);
+		for(int i = 0; i < count; i++) {
+			costs[i] = 1.0;
+		}
+		return count;
+	}
+	
+	@Override
+	public double heuristic(long state) {
+		int distance = 0;
+		for(int i = 0, n = size * size; i < n; i++) {
+			int t = tile(state, i);
+			if(t == 0) continue;
+			distance += Math.abs(i / size - (t - 1) / size) + Math.abs(i % size - (t - 1) % size);
+		}
+		return patterns == null ? distance : Math.max(distance, patterns.heuristic(state));
+	}
+	
+	@Override
+	public String name(long state) {
+		StringBuilder sb = new StringBuilder(size * (size + 1));
+		for(int i = 0, n = size * size; i < n; i++) {
+			if(i > 0 && i % size == 0) sb.append('_');
+			sb.append(Character.forDigit(tile(state, i), 16));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @param state encoded state
+	 * @param position index of the position
+	 * @return tile on the position
+	 */
+	private static int tile(long state, int position) {
+		return (int) (state >>> (4 * position)) & 0xF;
+	}
+	
+	/**
+	 * Helper method that moves tile to the empty position.
+	 * 
+	 * @param state encoded state
+	 * @param empty index of the empty position
+	 * @param from index of the position of the moved tile
+	 * @return encoded state after the move
+	 */
+	private static long move(long state, int empty, int from) {
+		long t = tile(state, from);
+		return state & ~(0xFL << (4 * from)) | t << (4 * empty);
+	}
+	
+	/**
+	 * Helper method that checks if the goal can be reached from given tiles, using parity
+	 * of inversions and of the row of the empty position.
+	 * 
+	 * @param tiles tiles row by row
+	 * @return <code>true</code> if the goal can be reached, otherwise <code>false</code>
+	 */
+	private boolean solvable(int[] tiles) {
+		int inversions = 0;
+		int emptyRow = 0;
+		for(int i = 0; i < tiles.length; i++) {
+			if(tiles[i] == 0) {
+				emptyRow = i / size;
+				continue;
+			}
+			for(int j = i + 1; j < tiles.length; j++) {
+				if(tiles[j] != 0 && tiles[j] < tiles[i]) inversions++;
+			}
+		}
+		if(size % 2 == 1) return inversions % 2 == 0;
+		return (inversions + size - 1 - emptyRow) % 2 == 0;
+	}
+	
+}
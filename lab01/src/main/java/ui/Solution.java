@@ -1,32 +1,95 @@
 package ui;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Scanner;
-import java.util.TreeMap;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Main program to run search algorithms or check heuristic.<br>
  * Use parameters:<br>
- * --alg bfs/ucs/astar <br>
+ * --alg bfs/ucs/astar/bibfs/biucs/idastar/smastar/hdastar/arastar/pbfs/beam/greedy/jps <br>
+ * --budget maximal_number_of_nodes_in_memory (for smastar)<br>
+ * --threads number_of_threads (for hdastar and pbfs, all cores by default)<br>
+ * --weight initial_heuristic_weight (for arastar, 3 by default)<br>
+ * --width number_of_states (for beam, states kept in each level, and for greedy, open states, 100 by default)<br>
+ * --deadline milliseconds (for arastar, time after which the path is no longer improved, 1000 by default)<br>
  * --ss path_to_state_space<br>
+ * --puzzle comma_separated_tiles (generated sliding puzzle searched instead of --ss, 0 is the empty position)<br>
+ * --grid path_to_grid_map (8-connected grid map searched instead of --ss, jps searches it directly and other algorithms expand it)<br>
+ * --start column,row (start cell of --grid)<br>
+ * --goal column,row (goal cell of --grid)<br>
+ * --limit number_of_checked_states (for checks of --puzzle)<br>
+ * --external path_to_directory (bfs and ucs of --puzzle keep reached states in files in the directory and print each layer)<br>
+ * --memory megabytes (memory budget of --external, 64 by default)<br>
+ * --pdb path_to_pattern_databases (--puzzle heuristic also uses additive pattern databases memory-mapped from a binary file)<br>
+ * --build-pdb tile_groups (build pattern databases for groups like 1,2,3,4/5,6,7,8 and write them to --pdb first)<br>
+ * --pdb-report (print states visited by --alg with Manhattan distance and with pattern databases)<br>
+ * --precompute path_to_distance_table (compute distances to the goal states and write them to a binary file)<br>
+ * --table path_to_distance_table (answer ucs by following precomputed next states where the path is the same)<br>
+ * --contract path_to_hierarchy (build contraction hierarchy of the state space and write it to a binary file)<br>
+ * --hierarchy path_to_hierarchy (answer ucs from contraction hierarchy where the path is the same)<br>
+ * --landmarks path_to_landmarks (heuristic algorithms use ALT heuristic of landmarks read from a binary file instead of --h)<br>
+ * --select-landmarks number_of_landmarks (choose landmarks by farthest-point selection and write them to --landmarks first)<br>
+ * --alt-report (print states visited by --alg with --h and with ALT heuristic)<br>
+ * --updates path_to_cost_updates (ucs or astar plans again with LPA* after each group of changed costs and prints
+ * expanded states against a new search; lines are <code>state next_state cost</code> and groups are separated by empty lines)<br>
+ * --server (load state space given as --ss once and answer queries from the standard input, see {@link SearchServer})<br>
+ * --port local_port (like --server, but answer queries of connections to the local port)<br>
  * --h pah_to_heuristic_function<br>
  * --check-optimistic<br>
  * --check-consistent<br>
+ * --parallel (check consistency on all cores)<br>
+ * --summary (print only violated conditions and the conclusion)<br>
+ * --stats (print loading statistics to the standard error)<br>
+ * --metrics (print counters and load, search, check and output times of the search or check as a JSON line to the standard error)<br>
+ * --compile path_to_compiled_state_space (also writes state space and heuristic to a binary file,
+ * which can later be given as --ss)<br>
  * 
  * @author Ana Bagić
  *
  */
 public class Solution {
-
+	
 	public static void main(String[] args) {
 		String algorithm = null;
 		String ssPath = null;
 		String hPath = null;
 		boolean checkOptimistic = false;
 		boolean checkConsistent = false;
+		boolean parallel = false;
+		boolean summary = false;
+		boolean stats = false;
+		boolean printMetrics = false;
+		String compilePath = null;
+		String precomputePath = null;
+		String tablePath = null;
+		String contractPath = null;
+		String hierarchyPath = null;
+		String landmarksPath = null;
+		int landmarkCount = 0;
+		boolean altReport = false;
+		String updatesPath = null;
+		int budget = Search.DEFAULT_NODE_BUDGET;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double weight = Search.DEFAULT_WEIGHT;
+		long deadline = Search.DEFAULT_DEADLINE;
+		int width = Search.DEFAULT_BEAM_WIDTH;
+		String puzzle = null;
+		String gridPath = null;
+		String start = null;
+		String goal = null;
+		int limit = Check.DEFAULT_LIMIT;
+		String externalPath = null;
+		long memory = ExternalSearch.DEFAULT_MEMORY;
+		String pdbPath = null;
+		String pdbGroups = null;
+		boolean pdbReport = false;
+		boolean server = false;
+		int port = -1;
 		
 		for(int i = 0; i < args.length; i++) {
 			switch(args[i]) {
@@ -35,82 +98,334 @@ public class Solution {
 			case "--h" -> hPath = args[++i];
 			case "--check-optimistic" -> checkOptimistic = true;
 			case "--check-consistent" -> checkConsistent = true;
+			case "--parallel" -> parallel = true;
+			case "--summary" -> summary = true;
+			case "--stats" -> stats = true;
+			case "--metrics" -> printMetrics = true;
+			case "--compile" -> compilePath = args[++i];
+			case "--precompute" -> precomputePath = args[++i];
+			case "--table" -> tablePath = args[++i];
+			case "--contract" -> contractPath = args[++i];
+			case "--hierarchy" -> hierarchyPath = args[++i];
+			case "--landmarks" -> landmarksPath = args[++i];
+			case "--select-landmarks" -> landmarkCount = Integer.parseInt(args[++i]);
+			case "--alt-report" -> altReport = true;
+			case "--budget" -> budget = Integer.parseInt(args[++i]);
+			case "--threads" -> threads = Integer.parseInt(args[++i]);
+			case "--weight" -> weight = Double.parseDouble(args[++i]);
+			case "--deadline" -> deadline = Long.parseLong(args[++i]);
+			case "--width" -> width = Integer.parseInt(args[++i]);
+			case "--puzzle" -> puzzle = args[++i];
+			case "--grid" -> gridPath = args[++i];
+			case "--start" -> start = args[++i];
+			case "--goal" -> goal = args[++i];
+			case "--external" -> externalPath = args[++i];
+			case "--memory" -> memory = Long.parseLong(args[++i]) << 20;
+			case "--updates" -> updatesPath = args[++i];
+			case "--pdb" -> pdbPath = args[++i];
+			case "--build-pdb" -> pdbGroups = args[++i];
+			case "--pdb-report" -> pdbReport = true;
+			case "--limit" -> limit = Integer.parseInt(args[++i]);
+			case "--server" -> server = true;
+			case "--port" -> port = Integer.parseInt(args[++i]);
 			}
 		}
 		
-		StateSpace ss = new StateSpace();
+		if((server || port >= 0) && (puzzle != null || gridPath != null))
+			throw new IllegalArgumentException("Server answers queries only on a state space given as --ss, not on --puzzle or --grid.");
 		
-		try(Scanner sc = new Scanner(new File(ssPath))) {
-			ss.setInitialState(readNextLine(sc));
-			ss.setGoalStates(new HashSet<String>(Arrays.asList(readNextLine(sc).split(" "))));
-			String line = readNextLine(sc).trim();
-			while(line != "") {
-				if(!line.endsWith(":")) {
-					String[] split = line.split(" ");
-					String from = split[0].substring(0, split[0].length()-1);
-					TreeMap<String, Double> to = new TreeMap<>();
-					for(int i = 1; i < split.length; i++) {
-						String[] nextState = split[i].split(",");
-						to.put(nextState[0], Double.parseDouble(nextState[1]));
-					}
-					ss.addSuccFunction(from, to);
+		StateSpace ss = null;
+		DistanceTable table = null;
+		Landmarks landmarks = null;
+		ContractionHierarchy hierarchy = null;
+		StateGenerator generator = null;
+		GridMap map = null;
+		PatternDatabase patterns = null;
+		SearchMetrics metrics = new SearchMetrics();
+		metrics.start(SearchMetrics.Phase.LOAD);
+		if(puzzle != null) {
+			SlidingPuzzle sp = SlidingPuzzle.parse(puzzle);
+			try {
+				if(pdbPath != null && pdbGroups != null) {
+					patterns = PatternDatabase.build(sp.getSize(), PatternDatabase.parseGroups(pdbGroups));
+					patterns.save(pdbPath);
+					printPdbStats(patterns);
+				} else if(pdbPath != null) {
+					patterns = PatternDatabase.load(pdbPath);
 				}
-				line = readNextLine(sc).trim();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			sp.setPatternDatabase(patterns);
+			generator = sp;
+		} else if(gridPath != null) {
+			try {
+				map = GridMap.load(gridPath);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			if(start == null || goal == null)
+				throw new IllegalArgumentException("Grid map needs --start and --goal cells.");
+			map.setStart(start);
+			map.setGoal(goal);
+			if(!"jps".equalsIgnoreCase(algorithm)) ss = map.toStateSpace();
+		} else {
+			try {
+				if(CompiledStateSpace.isCompiled(ssPath)) {
+					CompiledStateSpace loader = new CompiledStateSpace();
+					ss = loader.load(ssPath, hPath);
+					if(stats) printLoadStats(loader.getBytesRead(), loader.getLoadNanos(), loader.getThroughput());
+				} else {
+					StateSpaceLoader loader = new StateSpaceLoader();
+					ss = loader.load(ssPath, hPath);
+					if(stats) printLoadStats(loader.getBytesRead(), loader.getLoadNanos(), loader.getThroughput());
+				}
+				if(compilePath != null) {
+					CompiledStateSpace.write(ss, compilePath);
+				}
+				if(precomputePath != null) {
+					StateGraph graph = ss.getGraph();
+					table = DistanceTable.toGoals(graph, graph.flags(ss.getGoalStates()));
+					table.save(precomputePath);
+				} else if(tablePath != null) {
+					table = DistanceTable.load(ss.getGraph(), tablePath);
+				}
+				if(contractPath != null) {
+					hierarchy = ContractionHierarchy.build(ss.getGraph());
+					hierarchy.save(contractPath);
+				} else if(hierarchyPath != null) {
+					hierarchy = ContractionHierarchy.load(ss.getGraph(), hierarchyPath);
+				}
+				if(landmarksPath != null && landmarkCount > 0) {
+					StateGraph graph = ss.getGraph();
+					landmarks = Landmarks.select(graph, landmarkCount, Math.max(0, graph.indexOf(ss.getInitState())));
+					landmarks.save(landmarksPath);
+				} else if(landmarksPath != null) {
+					landmarks = Landmarks.load(ss.getGraph(), landmarksPath);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
 		}
+		metrics.stop(SearchMetrics.Phase.LOAD);
 		
-		if(hPath != null) {
-			try(Scanner sc = new Scanner(new File(hPath))) {
-				String line = readNextLine(sc).trim();
-				while(line != "") {
-					String[] split = line.split(":");
-					ss.addHeurFunction(split[0], Double.parseDouble(split[1]));
-					line = readNextLine(sc).trim();
+		if(server || port >= 0) {
+			SearchServer searchServer = new SearchServer(ss, threads);
+			searchServer.setNodeBudget(budget);
+			searchServer.setDistanceTable(table);
+			searchServer.setHierarchy(hierarchy);
+			searchServer.setLandmarks(landmarks);
+			searchServer.setWeight(weight);
+			searchServer.setDeadline(deadline);
+			searchServer.setBeamWidth(width);
+			try {
+				if(port >= 0) {
+					searchServer.listen(port);
+				} else {
+					searchServer.serve(new BufferedReader(new InputStreamReader(System.in)), new PrintWriter(System.out));
 				}
-				ss.setHeuristicPath(hPath);
-			} catch (FileNotFoundException e) {
+			} catch (IOException e) {
 				e.printStackTrace();
 			}
+			return;
+		}
+		
+		if(pdbReport && patterns != null) {
+			printPdbReport(puzzle, Algorithm.parse(algorithm == null ? "astar" : algorithm), patterns);
+			return;
+		}
+		
+		if(updatesPath != null && ss != null) {
+			try {
+				printIncremental(ss, Algorithm.parse(algorithm == null ? "ucs" : algorithm), updatesPath);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		
+		if(altReport && landmarks != null) {
+			printAltReport(ss, Algorithm.parse(algorithm == null ? "astar" : algorithm), landmarks);
+			return;
 		}
 		
 		if(algorithm != null) {
-			Algorithm al = switch(algorithm.toLowerCase()) {
-			case "bfs" -> Algorithm.BFS;
-			case "ucs" -> Algorithm.UCS;
-			case "astar" -> Algorithm.ASTAR;
-			default -> throw new IllegalArgumentException("Wrong algorithm: " + algorithm);
-			};
+			Algorithm al = Algorithm.parse(algorithm);
 			
-			Search search = new Search(ss, al);
-			search.printResult(search.runAlgorithm());
+			Search search = generator != null ? new Search(generator, al)
+					: ss == null ? new Search(map, al) : new Search(ss, al);
+			search.setNodeBudget(budget);
+			search.setThreads(threads);
+			search.setDistanceTable(table);
+			search.setWeight(weight);
+			search.setDeadline(deadline);
+			search.setBeamWidth(width);
+			search.setLandmarks(landmarks);
+			search.setHierarchy(hierarchy);
+			search.setMetrics(metrics);
+			if(externalPath != null) {
+				search.setExternal(Path.of(externalPath), memory);
+				search.setLayerReport(System.out::println);
+			}
+			if(al == Algorithm.ARASTAR) {
+				search.setProgress(result -> {
+					System.out.print(result);
+					System.out.println();
+				});
+				Node result = search.runAlgorithm();
+				metrics.start(SearchMetrics.Phase.OUTPUT);
+				if(result == null) search.printResult(result);
+				metrics.stop(SearchMetrics.Phase.OUTPUT);
+			} else {
+				Node result = search.runAlgorithm();
+				metrics.start(SearchMetrics.Phase.OUTPUT);
+				search.printResult(result);
+				metrics.stop(SearchMetrics.Phase.OUTPUT);
+			}
+			if(printMetrics) System.err.println(metrics.toJson());
 			return;
 		}
 		
-		Check check = new Check(ss);
+		Check check = generator != null ? new Check(generator, limit, summary) : new Check(ss, parallel, summary);
+		check.setMetrics(metrics);
 		
 		if(checkConsistent) {
 			check.checkConsistent();
 		} else if(checkOptimistic) {
 			check.checkOptimistic();
 		}
+		if(printMetrics) System.err.println(metrics.toJson());
 	}
 	
 	/**
-	 * Helper method to read next line from given {@link Scanner} ignoring line starting with '#'.
+	 * Helper method that plans with LPA* and plans again after each group of cost updates from the
+	 * file, printing the cost of each plan and the number of expanded states against a new search.
 	 * 
-	 * @param sc {@link Scanner} from where the line should be read
-	 * @return next line
+	 * @param ss state space to search
+	 * @param algorithm ucs, or astar to use heuristic of the state space
+	 * @param updatesPath path to the cost updates
+	 * @throws IOException if updates can't be read
+	 * @throws IllegalArgumentException if algorithm is not ucs or astar, or an update is wrong
 	 */
-	private static String readNextLine(Scanner sc) {
-		while(sc.hasNext()) {
-			String line = sc.nextLine();
-			if(line.startsWith("#"))
-				continue;	
-			return line;
+	private static void printIncremental(StateSpace ss, Algorithm algorithm, String updatesPath) throws IOException {
+		if(algorithm != Algorithm.UCS && algorithm != Algorithm.ASTAR)
+			throw new IllegalArgumentException("Cost updates can be used only with ucs and astar.");
+		IncrementalSearch search = new IncrementalSearch(ss, algorithm == Algorithm.ASTAR);
+		Node n = search.plan();
+		System.out.println("# LPA-" + algorithm.getName() + (algorithm.isHeuristic() ? " " + ss.getHeuristicPath() : ""));
+		System.out.println("[TOTAL_COST]: " + (n == null ? "-" : n.getPrice()));
+		System.out.println("[STATES_VISITED]: " + search.getExpanded());
+		
+		int update = 0;
+		try(BufferedReader reader = Files.newBufferedReader(Path.of(updatesPath), StandardCharsets.UTF_8)) {
+			String line;
+			boolean more = true;
+			while(more) {
+				line = reader.readLine();
+				more = line != null;
+				if(more && line.startsWith("#")) continue;
+				if(more && !line.isBlank()) {
+					String[] parts = line.trim().split("\\s+");
+					if(parts.length != 3)
+						throw new IllegalArgumentException("Wrong cost update: " + line);
+					search.updateCost(parts[0], parts[1], Double.parseDouble(parts[2]));
+					continue;
+				}
+				if(search.getPending() == 0) continue;
+				
+				n = search.plan();
+				int fresh = search.freshVisited();
+				int expanded = search.getExpanded();
+				System.out.printf("[UPDATE]: %d [CHANGED]: %d [TOTAL_COST]: %s [EXPANDED]: %d vs %d (%.1f%% fewer)%n",
+						++update, search.getChanged(), n == null ? "-" : n.getPrice(), expanded, fresh,
+						fresh == 0 ? 0.0 : 100.0 * (fresh - expanded) / fresh);
+			}
+		}
+		
+		if(n != null) {
+			StringBuilder sb = new StringBuilder(n.getState());
+			for(Node p = n.getParent(); p != null; p = p.getParent()) {
+				sb.insert(0, p.getState() + " => ");
+			}
+			System.out.println("[PATH]: " + sb);
 		}
-		return "";
 	}
-
+	
+	/**
+	 * Helper method that runs the algorithm with the heuristic of the state space and with ALT
+	 * heuristic of the landmarks, and prints the numbers of visited states.
+	 * 
+	 * @param ss state space to search
+	 * @param algorithm heuristic algorithm to run
+	 * @param landmarks chosen for the state space
+	 */
+	private static void printAltReport(StateSpace ss, Algorithm algorithm, Landmarks landmarks) {
+		Search supplied = new Search(ss, algorithm);
+		Node n1 = supplied.runAlgorithm();
+		Search alt = new Search(ss, algorithm);
+		alt.setLandmarks(landmarks);
+		Node n2 = alt.runAlgorithm();
+		
+		int v1 = supplied.getVisited();
+		int v2 = alt.getVisited();
+		System.out.println("# " + algorithm.getName() + " " + ss.getHeuristicPath() + " vs " + landmarks.getName());
+		System.out.println("[TOTAL_COST]: " + (n1 == null ? "-" : n1.getPrice()) + " vs " + (n2 == null ? "-" : n2.getPrice()));
+		System.out.printf("[STATES_VISITED]: %d vs %d (%.1f%% fewer)%n", v1, v2, v1 == 0 ? 0.0 : 100.0 * (v1 - v2) / v1);
+	}
+	
+	/**
+	 * Helper method that runs the algorithm on the puzzle with Manhattan distance and with
+	 * pattern databases, and prints the numbers of visited states and search times.
+	 * 
+	 * @param puzzle comma separated tiles of the puzzle
+	 * @param algorithm heuristic algorithm to run
+	 * @param patterns built for the puzzle
+	 */
+	private static void printPdbReport(String puzzle, Algorithm algorithm, PatternDatabase patterns) {
+		SlidingPuzzle plain = SlidingPuzzle.parse(puzzle);
+		Search manhattan = new Search(plain, algorithm);
+		long start = System.nanoTime();
+		Node n1 = manhattan.runAlgorithm();
+		long t1 = System.nanoTime() - start;
+		
+		SlidingPuzzle withPatterns = SlidingPuzzle.parse(puzzle);
+		withPatterns.setPatternDatabase(patterns);
+		Search pdb = new Search(withPatterns, algorithm);
+		start = System.nanoTime();
+		Node n2 = pdb.runAlgorithm();
+		long t2 = System.nanoTime() - start;
+		
+		int v1 = manhattan.getVisited();
+		int v2 = pdb.getVisited();
+		System.out.println("# " + algorithm.getName() + " " + plain.getName() + " vs " + withPatterns.getName());
+		System.out.println("[PATTERN_DATABASE]: " + patterns.entries() + " bytes");
+		System.out.println("[TOTAL_COST]: " + (n1 == null ? "-" : n1.getPrice()) + " vs " + (n2 == null ? "-" : n2.getPrice()));
+		System.out.printf("[STATES_VISITED]: %d vs %d (%.1f%% fewer)%n", v1, v2, v1 == 0 ? 0.0 : 100.0 * (v1 - v2) / v1);
+		System.out.printf("[TIME]: %.1f ms vs %.1f ms%n", t1 / 1e6, t2 / 1e6);
+	}
+	
+	/**
+	 * Helper method that prints building statistics of pattern databases to the standard error.
+	 * 
+	 * @param patterns built databases
+	 */
+	private static void printPdbStats(PatternDatabase patterns) {
+		System.err.printf("[BUILD]: %s, %d bytes in %.1f ms, %d abstract states expanded%n", patterns.getName(),
+				patterns.entries(), patterns.getBuildNanos() / 1e6, patterns.getExpanded());
+	}
+	
+	/**
+	 * Helper method that prints loading statistics to the standard error.
+	 * 
+	 * @param bytes number of bytes read
+	 * @param nanos time spent loading, in nanoseconds
+	 * @param throughput in megabytes per second
+	 */
+	private static void printLoadStats(long bytes, long nanos, double throughput) {
+		System.err.printf("[LOAD]: %d bytes in %.1f ms (%.1f MB/s)%n", bytes, nanos / 1e6, throughput);
+	}
+	
 }
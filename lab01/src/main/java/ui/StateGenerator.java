@@ -0,0 +1,58 @@
+package ui;
+
+/**
+ * Interface models state space which is not stored, but generated on demand.<br>
+ * States are encoded as <code>long</code> values, and their successors and heuristic values
+ * are computed only when they are needed, so spaces much larger than memory can be searched.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public interface StateGenerator {
+	
+	/**
+	 * @return name of the state space, printed instead of the heuristic path
+	 */
+	String getName();
+	
+	/**
+	 * @return encoded initial state
+	 */
+	long initialState();
+	
+	/**
+	 * @param state encoded state
+	 * @return <code>true</code> if state is a goal state, otherwise <code>false</code>
+	 */
+	boolean isGoal(long state);
+	
+	/**
+	 * @return maximal number of successors of one state
+	 */
+	int maxSuccessors();
+	
+	/**
+	 * Generates successors of the state.
+	 * 
+	 * @param state encoded state
+	 * @param next array to fill with encoded successors, of length at least {@link #maxSuccessors()}
+	 * @param costs array to fill with costs of transitions to successors, of length at least {@link #maxSuccessors()}
+	 * @return number of successors
+	 */
+	int successors(long state, long[] next, double[] costs);
+	
+	/**
+	 * @param state encoded state
+	 * @return heuristic value of the state
+	 */
+	default double heuristic(long state) {
+		return 0.0;
+	}
+	
+	/**
+	 * @param state encoded state
+	 * @return readable name of the state
+	 */
+	String name(long state);
+	
+}
@@ -0,0 +1,394 @@
+package ui;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Class models a compact, integer-indexed form of a state space.<br>
+ * State names are interned to dense ids once, sorted by name, so comparing two ids
+ * gives the same result as comparing their state names. Successors are kept in
+ * compressed-sparse-row arrays: transitions of state <code>s</code> are stored at indices
+ * <code>[succStart(s), succEnd(s))</code>, sorted by id of the next state.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class StateGraph {
+	
+	/** Initial value of the checksum. */
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	/** Multiplier of the checksum. */
+	private static final long FNV_PRIME = 0x100000001B3L;
+	
+	/** State names, sorted, indexed by state id. */
+	private final String[] names;
+	/** Offsets of each state's transitions, <code>offsets[s + 1] - offsets[s]</code> is the number of successors. */
+	private final int[] offsets;
+	/** Ids of next states of all transitions. */
+	private final int[] targets;
+	/** Costs of all transitions. */
+	private final double[] costs;
+	/** Heuristic value of each state, <code>NaN</code> if it is not defined. */
+	private final double[] heuristic;
+	/** Graph with reversed transitions, <code>null</code> until it is needed. */
+	private volatile StateGraph reversed;
+	/** Greatest transition cost if all costs are non-negative integers, <code>-1</code> if they aren't, <code>-2</code> until it is needed. */
+	private volatile int maxIntegerCost = -2;
+	/** Checksum of states, transitions and their costs, <code>0</code> until it is needed. */
+	private volatile long checksum;
+	
+	/**
+	 * Constructor creates graph from given arrays without copying them.
+	 * 
+	 * @param names sorted state names
+	 * @param offsets offsets of each state's transitions
+	 * @param targets ids of next states
+	 * @param costs costs of transitions
+	 * @param heuristic heuristic value of each state
+	 */
+	StateGraph(String[] names, int[] offsets, int[] targets, double[] costs, double[] heuristic) {
+		this.names = names;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.costs = costs;
+		this.heuristic = heuristic;
+	}
+	
+	/**
+	 * Creates graph from map based successor and heuristic functions.
+	 * 
+	 * @param states additional states that should be indexed (initial and goal states)
+	 * @param succ successor function
+	 * @param heur heuristic function
+	 * @return new graph
+	 */
+	public static StateGraph of(Collection<String> states, Map<String, TreeMap<String, Double>> succ,
+			Map<String, Double> heur) {
+		Set<String> all = new HashSet<>(states);
+		for(var e : succ.entrySet()) {
+			all.add(e.getKey());
+			all.addAll(e.getValue().keySet());
+		}
+		all.addAll(heur.keySet());
+		
+		String[] names = all.toArray(new String[all.size()]);
+		Arrays.sort(names);
+		Map<String, Integer> ids = new HashMap<>(names.length * 2);
+		for(int i = 0; i < names.length; i++) {
+			ids.put(names[i], i);
+		}
+		
+		int edges = 0;
+		for(var to : succ.values()) {
+			edges += to.size();
+		}
+		
+		int[] offsets = new int[names.length + 1];
+		int[] targets = new int[edges];
+		double[] costs = new double[edges];
+		int e = 0;
+		for(int i = 0; i < names.length; i++) {
+			offsets[i] = e;
+			var to = succ.get(names[i]);
+			if(to == null) continue;
+			for(var t : to.entrySet()) {
+				targets[e] = ids.get(t.getKey());
+				costs[e++] = t.getValue();
+			}
+		}
+		offsets[names.length] = e;
+		
+		double[] heuristic = new double[names.length];
+		Arrays.fill(heuristic, Double.NaN);
+		for(var h : heur.entrySet()) {
+			heuristic[ids.get(h.getKey())] = h.getValue();
+		}
+		
+		return new StateGraph(names, offsets, targets, costs, heuristic);
+	}
+	
+	/**
+	 * @return number of states
+	 */
+	public int size() {
+		return names.length;
+	}
+	
+	/**
+	 * @return number of transitions
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+	
+	/**
+	 * @param id of the state
+	 * @return name of the state
+	 */
+	public String name(int id) {
+		return names[id];
+	}
+	
+	/**
+	 * Returns id of the state with given name.
+	 * 
+	 * @param name of the state
+	 * @return id of the state, or negative number if state doesn't exist
+	 */
+	public int indexOf(String name) {
+		return name == null ? -1 : Arrays.binarySearch(names, name);
+	}
+	
+	/**
+	 * @param id of the state
+	 * @return index of the state's first transition
+	 */
+	public int succStart(int id) {
+		return offsets[id];
+	}
+	
+	/**
+	 * @param id of the state
+	 * @return index after the state's last transition
+	 */
+	public int succEnd(int id) {
+		return offsets[id + 1];
+	}
+	
+	/**
+	 * @param e index of the transition
+	 * @return id of the next state
+	 */
+	public int succState(int e) {
+		return targets[e];
+	}
+	
+	/**
+	 * @param e index of the transition
+	 * @return cost of the transition
+	 */
+	public double succCost(int e) {
+		return costs[e];
+	}
+	
+	/**
+	 * @param id of the state
+	 * @return <code>true</code> if state has heuristic value, otherwise <code>false</code>
+	 */
+	public boolean hasHeuristic(int id) {
+		return !Double.isNaN(heuristic[id]);
+	}
+	
+	/**
+	 * @param id of the state
+	 * @return heuristic value of the state, <code>NaN</code> if it is not defined
+	 */
+	public double heuristic(int id) {
+		return heuristic[id];
+	}
+	
+	/**
+	 * Returns the greatest transition cost if costs of all transitions are non-negative integers,
+	 * which lets searches use bucket queues. It is computed once, when it is first needed.
+	 * 
+	 * @return greatest transition cost, or <code>-1</code> if some cost is not a non-negative integer
+	 * or is greater than {@link Integer#MAX_VALUE}
+	 */
+	public int maxIntegerCost() {
+		int max = maxIntegerCost;
+		if(max == -2) {
+			max = 0;
+			for(double cost : costs) {
+				if(!(cost >= 0.0 && cost <= Integer.MAX_VALUE && cost == Math.rint(cost))) {
+					max = -1;
+					break;
+				}
+				max = Math.max(max, (int) cost);
+			}
+			maxIntegerCost = max;
+		}
+		return max;
+	}
+	
+	/**
+	 * Returns checksum of state names, transitions and their costs, which is saved with data
+	 * precomputed for the graph so it isn't used for a different graph with the same number of
+	 * states and transitions. Heuristic values are not included. It is computed once, when it is
+	 * first needed.
+	 * 
+	 * @return checksum of the graph, never <code>0</code>
+	 */
+	public long checksum() {
+		long sum = checksum;
+		if(sum == 0) {
+			sum = mix(FNV_OFFSET, names.length);
+			for(String name : names) {
+				sum = mix(sum, name.length());
+				for(int i = 0; i < name.length(); i++) {
+					sum = mix(sum, name.charAt(i));
+				}
+			}
+			for(int offset : offsets) {
+				sum = mix(sum, offset);
+			}
+			for(int target : targets) {
+				sum = mix(sum, target);
+			}
+			for(double cost : costs) {
+				sum = mix(sum, Double.doubleToLongBits(cost));
+			}
+			if(sum == 0) sum = 1;
+			checksum = sum;
+		}
+		return sum;
+	}
+	
+	/**
+	 * Returns index of the transition between given states.
+	 * 
+	 * @param from id of the state
+	 * @param to id of the next state
+	 * @return index of the transition, or <code>-1</code> if it doesn't exist
+	 */
+	public int findEdge(int from, int to) {
+		int e = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+		return e < 0 ? -1 : e;
+	}
+	
+	/**
+	 * Creates flags marking given states by their ids. States which don't exist are ignored.
+	 * 
+	 * @param states names of the states
+	 * @return flags indexed by state id
+	 */
+	public boolean[] flags(Collection<String> states) {
+		boolean[] flags = new boolean[names.length];
+		for(String state : states) {
+			int id = indexOf(state);
+			if(id >= 0) flags[id] = true;
+		}
+		return flags;
+	}
+	
+	/**
+	 * Creates graph with the same states and transitions as this one, sharing their arrays,
+	 * but with different heuristic values.
+	 * 
+	 * @param heuristic heuristic value of each state, <code>NaN</code> if it is not defined
+	 * @return new graph
+	 * @throws IllegalArgumentException if number of values differs from number of states
+	 */
+	public StateGraph withHeuristic(double[] heuristic) {
+		if(heuristic.length != names.length)
+			throw new IllegalArgumentException("Expected " + names.length + " heuristic values, got " + heuristic.length + ".");
+		StateGraph g = new StateGraph(names, offsets, targets, costs, heuristic);
+		g.checksum = checksum;
+		return g;
+	}
+	
+	/**
+	 * Creates graph with the same states, transitions and heuristic values as this one, sharing
+	 * their arrays, but with different transition costs.
+	 * 
+	 * @param costs cost of each transition, indexed like transitions of this graph
+	 * @return new graph
+	 * @throws IllegalArgumentException if number of costs differs from number of transitions
+	 */
+	public StateGraph withCosts(double[] costs) {
+		if(costs.length != targets.length)
+			throw new IllegalArgumentException("Expected " + targets.length + " costs, got " + costs.length + ".");
+		return new StateGraph(names, offsets, targets, costs, heuristic);
+	}
+	
+	/**
+	 * Returns graph with all transitions reversed. States keep their ids and heuristic values,
+	 * and transitions of each state stay sorted by id of the next state. Reversed graph is built
+	 * once, when it is first needed.
+	 * 
+	 * @return reversed graph
+	 */
+	public StateGraph reverse() {
+		StateGraph r = reversed;
+		if(r == null) {
+			r = buildReverse();
+			r.reversed = this;
+			reversed = r;
+		}
+		return r;
+	}
+	
+	/**
+	 * Helper method that adds value to the checksum (64-bit FNV-1a over whole values).
+	 * 
+	 * @param sum checksum so far
+	 * @param value to add
+	 * @return new checksum
+	 */
+	private static long mix(long sum, long value) {
+		return (sum ^ value) * FNV_PRIME;
+	}
+	
+	/**
+	 * @return new graph with all transitions reversed
+	 */
+	private StateGraph buildReverse() {
+		int[] rOffsets = new int[names.length + 1];
+		for(int t : targets) {
+			rOffsets[t + 1]++;
+		}
+		for(int i = 0; i < names.length; i++) {
+			rOffsets[i + 1] += rOffsets[i];
+		}
+		
+		int[] fill = Arrays.copyOf(rOffsets, names.length);
+		int[] rTargets = new int[targets.length];
+		double[] rCosts = new double[costs.length];
+		for(int i = 0; i < names.length; i++) {
+			for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+				int r = fill[targets[e]]++;
+				rTargets[r] = i;
+				rCosts[r] = costs[e];
+			}
+		}
+		
+		return new StateGraph(names, rOffsets, rTargets, rCosts, heuristic);
+	}
+	
+	/**
+	 * Creates map based successor function from this graph.
+	 * 
+	 * @return successor function
+	 */
+	LinkedHashMap<String, TreeMap<String, Double>> succFunction() {
+		var succ = new LinkedHashMap<String, TreeMap<String, Double>>();
+		for(int i = 0; i < names.length; i++) {
+			if(offsets[i] == offsets[i + 1]) continue;
+			var to = new TreeMap<String, Double>();
+			for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+				to.put(names[targets[e]], costs[e]);
+			}
+			succ.put(names[i], to);
+		}
+		return succ;
+	}
+	
+	/**
+	 * Creates map based heuristic function from this graph.
+	 * 
+	 * @return heuristic function
+	 */
+	LinkedHashMap<String, Double> heurFunction() {
+		var heur = new LinkedHashMap<String, Double>();
+		for(int i = 0; i < names.length; i++) {
+			if(hasHeuristic(i)) heur.put(names[i], heuristic[i]);
+		}
+		return heur;
+	}
+	
+}
@@ -0,0 +1,103 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Class models map from encoded states to ids given in the order in which states were added.<br>
+ * States are kept in an open addressing hash table of primitive values, so that searches over
+ * generated state spaces don't allocate an object for every reached state.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class StateIndex {
+	
+	/** Encoded state of each id. */
+	private long[] states;
+	/** Hash table of ids, <code>-1</code> marks empty slot. */
+	private int[] table;
+	/** Number of states. */
+	private int size;
+	
+	/**
+	 * Constructor creates empty index.
+	 */
+	public StateIndex() {
+		states = new long[1 << 10];
+		table = new int[1 << 11];
+		Arrays.fill(table, -1);
+	}
+	
+	/**
+	 * @return number of states
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @param id of the state
+	 * @return encoded state
+	 */
+	public long state(int id) {
+		return states[id];
+	}
+	
+	/**
+	 * @param state encoded state
+	 * @return id of the state, or <code>-1</code> if state wasn't added
+	 */
+	public int get(long state) {
+		int mask = table.length - 1;
+		for(int i = hash(state) & mask; table[i] >= 0; i = (i + 1) & mask) {
+			if(states[table[i]] == state) return table[i];
+		}
+		return -1;
+	}
+	
+	/**
+	 * Adds state to the index if it wasn't added before.
+	 * 
+	 * @param state encoded state
+	 * @return id of the state
+	 */
+	public int add(long state) {
+		int mask = table.length - 1;
+		int i = hash(state) & mask;
+		for(; table[i] >= 0; i = (i + 1) & mask) {
+			if(states[table[i]] == state) return table[i];
+		}
+		
+		if(size == states.length) states = Arrays.copyOf(states, 2 * size);
+		states[size] = state;
+		table[i] = size;
+		if(2 * ++size > table.length) rehash();
+		return size - 1;
+	}
+	
+	/**
+	 * Helper method that doubles the hash table.
+	 */
+	private void rehash() {
+		table = new int[2 * table.length];
+		Arrays.fill(table, -1);
+		int mask = table.length - 1;
+		for(int id = 0; id < size; id++) {
+			int i = hash(states[id]) & mask;
+			while(table[i] >= 0) i = (i + 1) & mask;
+			table[i] = id;
+		}
+	}
+	
+	/**
+	 * @param state encoded state
+	 * @return hash of the state
+	 */
+	private static int hash(long state) {
+		state ^= state >>> 33;
+		state *= 0xFF51AFD7ED558CCDL;
+		state ^= state >>> 33;
+		return (int) state;
+	}
+	
+}
@@ -0,0 +1,58 @@
+package ui;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Interface models priority queue of state ids used as an open list, which supports
+ * decreasing key of a state.<br>
+ * States are ordered by their keys, and states with equal keys by their ids, so states with
+ * equal keys come out in the order of their names.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public interface StateQueue {
+	
+	/**
+	 * @return <code>true</code> if queue is empty, otherwise <code>false</code>
+	 */
+	boolean isEmpty();
+	
+	/**
+	 * @param state id of the state
+	 * @return <code>true</code> if the state is in the queue, otherwise <code>false</code>
+	 */
+	boolean contains(int state);
+	
+	/**
+	 * Adds state with given key to the queue.
+	 * 
+	 * @param state id of the state
+	 * @param key of the state
+	 * @throws IllegalArgumentException if state is already in the queue
+	 */
+	void add(int state, double key);
+	
+	/**
+	 * Decreases the key of the state in the queue.
+	 * 
+	 * @param state id of the state
+	 * @param key new key of the state, not greater than the current one
+	 * @throws IllegalArgumentException if state is not in the queue or key is greater than the current one
+	 */
+	void decreaseKey(int state, double key);
+	
+	/**
+	 * Removes state with the lowest key from the queue.
+	 * 
+	 * @return id of the removed state
+	 * @throws NoSuchElementException if queue is empty
+	 */
+	int poll();
+	
+	/**
+	 * Removes all states from the queue.
+	 */
+	void clear();
+	
+}
@@ -1,12 +1,17 @@
 package ui;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Set;
 import java.util.TreeMap;
 
 /**
- * Class models a state space used to run search algorithms on.
+ * Class models a state space used to run search algorithms on.<br>
+ * State space is filled using map based successor and heuristic functions. Search algorithms
+ * use its compact {@link StateGraph} form, which is built once, after the state space is loaded.
+ * After {@link #compact()} only the compact form is kept and map based functions are
+ * recreated from it when they are requested.
  * 
  * @author Ana Bagić
  *
@@ -18,11 +23,13 @@ public class StateSpace {
 	/** Goal states. */
 	private Set<String> goalStates = new HashSet<>();
 	/** Successor function. */
-	private LinkedHashMap<String, TreeMap<String, Double>> succFunction = new LinkedHashMap<>();;
+	private LinkedHashMap<String, TreeMap<String, Double>> succFunction = new LinkedHashMap<>();
 	/** Heuristic function used in A-STAR algorithm. */
 	private LinkedHashMap<String, Double> heuristicFunction = new LinkedHashMap<>();
 	/** Path to the heuristic function descriptor used in A-STAR algorithm. */
 	private String heuristicPath;
+	/** Compact form of the state space, <code>null</code> if it is not built yet. */
+	private StateGraph graph;
 
 	/**
 	 * @return initial state
@@ -42,6 +49,9 @@ public class StateSpace {
 	 * @return successor function
 	 */
 	public LinkedHashMap<String, TreeMap<String, Double>> getSuccFunction() {
+		if(succFunction == null) {
+			succFunction = graph.succFunction();
+		}
 		return succFunction;
 	}
 
@@ -49,9 +59,47 @@ public class StateSpace {
 	 * @return heuristic function
 	 */
 	public LinkedHashMap<String, Double> getHeurFunction() {
+		if(heuristicFunction == null) {
+			heuristicFunction = graph.heurFunction();
+		}
 		return heuristicFunction;
 	}
 	
+	/**
+	 * Returns compact form of the state space, building it if needed.
+	 * Map based functions should not be changed directly once the compact form is built.
+	 * 
+	 * @return compact form of the state space
+	 */
+	public StateGraph getGraph() {
+		if(graph == null) {
+			var states = new ArrayList<String>(goalStates);
+			if(initialState != null) states.add(initialState);
+			graph = StateGraph.of(states, succFunction, heuristicFunction);
+		}
+		return graph;
+	}
+	
+	/**
+	 * Sets compact form of the state space, replacing map based functions.
+	 * 
+	 * @param graph compact form of the state space
+	 */
+	public void setGraph(StateGraph graph) {
+		this.graph = graph;
+		succFunction = null;
+		heuristicFunction = null;
+	}
+	
+	/**
+	 * Builds compact form of the state space and releases map based functions.
+	 */
+	public void compact() {
+		getGraph();
+		succFunction = null;
+		heuristicFunction = null;
+	}
+	
 	/**
 	 * @return path to the heuristic function descriptor
 	 */
@@ -66,6 +114,9 @@ public class StateSpace {
 	 */
 	public void setInitialState(String initialState) {
 		this.initialState = initialState;
+		if(graph != null && graph.indexOf(initialState) < 0) {
+			invalidate();
+		}
 	}
 
 	/**
@@ -75,6 +126,7 @@ public class StateSpace {
 	 */
 	public void setGoalStates(Set<String> goalStates) {
 		this.goalStates = goalStates;
+		invalidate();
 	}
 
 	/**
@@ -84,7 +136,8 @@ public class StateSpace {
 	 * @param to state
 	 */
 	public void addSuccFunction(String fromState, TreeMap<String, Double> toStates) {
-		succFunction.put(fromState, toStates);
+		getSuccFunction().put(fromState, toStates);
+		invalidate();
 	}
 	
 	/**
@@ -94,7 +147,8 @@ public class StateSpace {
 	 * @param value to be set
 	 */
 	public void addHeurFunction(String state, double value) {
-		heuristicFunction.put(state, value);
+		getHeurFunction().put(state, value);
+		invalidate();
 	}
 	
 	/**
@@ -106,4 +160,33 @@ public class StateSpace {
 		this.heuristicPath = heuristicPath;
 	}
 	
+	/**
+	 * Creates state space for one query, which shares the compact form of a loaded state space but
+	 * has its own initial and goal states, so the loaded state space doesn't have to be changed.
+	 * 
+	 * @param initialState initial state of the query
+	 * @param goalStates goal states of the query
+	 * @param graph compact form to share
+	 * @param heuristicPath path to the heuristic function descriptor used by the graph
+	 * @return new state space
+	 */
+	public static StateSpace query(String initialState, Set<String> goalStates, StateGraph graph, String heuristicPath) {
+		StateSpace ss = new StateSpace();
+		ss.initialState = initialState;
+		ss.goalStates = goalStates;
+		ss.setGraph(graph);
+		ss.heuristicPath = heuristicPath;
+		return ss;
+	}
+	
+	/**
+	 * Drops compact form of the state space, making sure map based functions exist first.
+	 */
+	private void invalidate() {
+		if(graph == null) return;
+		getSuccFunction();
+		getHeurFunction();
+		graph = null;
+	}
+	
 }
@@ -0,0 +1,561 @@
+package ui;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class is used to load state space and heuristic function descriptors.<br>
+ * Files are read through a large byte buffer and tokenized in place: state names are interned
+ * straight from bytes, so only one {@link String} is created per distinct state, and costs are
+ * parsed without creating strings for common decimal numbers. Loader fills the compact
+ * {@link StateGraph} form of the state space directly, without building map based functions.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class StateSpaceLoader {
+	
+	/** Size of the read buffer. */
+	private static final int BUFFER_SIZE = 1 << 20;
+	/** Exactly representable powers of ten. */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	/** Hash table of interned states, each slot holds state id increased by one. */
+	private int[] table = new int[1 << 10];
+	/** Bytes of all interned state names. */
+	private byte[] arena = new byte[1 << 12];
+	/** Number of used bytes in the arena. */
+	private int arenaSize;
+	/** Start of each state name in the arena. */
+	private int[] nameStart = new int[1 << 9];
+	/** Length of each state name. */
+	private int[] nameLength = new int[1 << 9];
+	/** Hash of each state name. */
+	private int[] nameHash = new int[1 << 9];
+	/** Number of interned states. */
+	private int count;
+	
+	/** Index of the first transition of the last line read for each state, <code>-1</code> if there is none. */
+	private int[] rowStart = new int[1 << 9];
+	/** Index after the last transition of the last line read for each state. */
+	private int[] rowEnd = new int[1 << 9];
+	/** Heuristic value of each state, <code>NaN</code> if it is not defined. */
+	private double[] heuristic = new double[1 << 9];
+	/** Ids of next states of all read transitions. */
+	private int[] edgeTarget = new int[1 << 10];
+	/** Costs of all read transitions. */
+	private double[] edgeCost = new double[1 << 10];
+	/** Number of read transitions. */
+	private int edgeCount;
+	
+	/** Number of bytes read from the files. */
+	private long bytesRead;
+	/** Time spent loading, in nanoseconds. */
+	private long loadNanos;
+	
+	/**
+	 * Loads state space and heuristic function from the given files. Each loader can be used only once.
+	 * 
+	 * @param ssPath path to the state space descriptor
+	 * @param hPath path to the heuristic function descriptor, or <code>null</code> if there is none
+	 * @return loaded state space
+	 * @throws IOException if reading fails
+	 * @throws IllegalStateException if loader was already used
+	 */
+	public StateSpace load(String ssPath, String hPath) throws IOException {
+		if(bytesRead > 0 || count > 0)
+			throw new IllegalStateException("Loader was already used.");
+		
+		long start = System.nanoTime();
+		Arrays.fill(rowStart, -1);
+		Arrays.fill(heuristic, Double.NaN);
+		
+		int initial = -1;
+		int[] goals = new int[0];
+		try(LineReader reader = new LineReader(Path.of(ssPath))) {
+			if(reader.nextLine()) {
+				int from = skipSpaces(reader.line, reader.start, reader.end);
+				initial = intern(reader.line, from, tokenEnd(reader.line, from, reader.end));
+			}
+			if(reader.nextLine()) {
+				goals = readGoals(reader.line, reader.start, reader.end);
+			}
+			while(reader.nextLine()) {
+				readTransitions(reader.line, reader.start, reader.end);
+			}
+			bytesRead += reader.bytesRead;
+		}
+		
+		if(hPath != null) {
+			try(LineReader reader = new LineReader(Path.of(hPath))) {
+				while(reader.nextLine()) {
+					readHeuristic(reader.line, reader.start, reader.end);
+				}
+				bytesRead += reader.bytesRead;
+			}
+		}
+		
+		StateSpace ss = new StateSpace();
+		String[] names = new String[count];
+		for(int i = 0; i < count; i++) {
+			names[i] = new String(arena, nameStart[i], nameLength[i], StandardCharsets.UTF_8);
+		}
+		if(initial >= 0) {
+			ss.setInitialState(names[initial]);
+		}
+		Set<String> goalStates = new HashSet<>();
+		for(int g : goals) {
+			goalStates.add(names[g]);
+		}
+		ss.setGoalStates(goalStates);
+		ss.setGraph(buildGraph(names));
+		ss.setHeuristicPath(hPath);
+		
+		loadNanos = System.nanoTime() - start;
+		return ss;
+	}
+	
+	/**
+	 * Loads heuristic function for states of an already loaded graph. Values of states which
+	 * are not in the graph are ignored.
+	 * 
+	 * @param graph whose states are given values
+	 * @param hPath path to the heuristic function descriptor
+	 * @return heuristic value of each state, <code>NaN</code> if it is not defined
+	 * @throws IOException if reading fails
+	 */
+	public static double[] loadHeuristic(StateGraph graph, String hPath) throws IOException {
+		double[] values = new double[graph.size()];
+		Arrays.fill(values, Double.NaN);
+		try(LineReader reader = new LineReader(Path.of(hPath))) {
+			while(reader.nextLine()) {
+				byte[] line = reader.line;
+				int from = skipSpaces(line, reader.start, reader.end);
+				int colon = from;
+				while(colon < reader.end && line[colon] != ':') colon++;
+				if(colon == reader.end)
+					throw new IllegalArgumentException("Wrong heuristic value: " + new String(line, from, reader.end - from, StandardCharsets.UTF_8));
+				
+				int state = graph.indexOf(new String(line, from, colon - from, StandardCharsets.UTF_8));
+				if(state < 0) continue;
+				int start = skipSpaces(line, colon + 1, reader.end);
+				int end = reader.end;
+				while(end > start && isSpace(line[end - 1])) end--;
+				values[state] = parseDouble(line, start, end);
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * @return number of bytes read by the last load
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	/**
+	 * @return time spent in the last load, in nanoseconds
+	 */
+	public long getLoadNanos() {
+		return loadNanos;
+	}
+	
+	/**
+	 * @return throughput of the last load in megabytes per second
+	 */
+	public double getThroughput() {
+		return loadNanos == 0 ? 0 : bytesRead / 1e6 / (loadNanos / 1e9);
+	}
+	
+	/**
+	 * Helper method that reads goal states separated by whitespace.
+	 * 
+	 * @param line bytes of the line
+	 * @param from start of the line
+	 * @param to end of the line
+	 * @return ids of goal states
+	 */
+	private int[] readGoals(byte[] line, int from, int to) {
+		int[] goals = new int[4];
+		int n = 0;
+		int i = skipSpaces(line, from, to);
+		while(i < to) {
+			int end = tokenEnd(line, i, to);
+			if(n == goals.length) goals = Arrays.copyOf(goals, 2 * n);
+			goals[n++] = intern(line, i, end);
+			i = skipSpaces(line, end, to);
+		}
+		return Arrays.copyOf(goals, n);
+	}
+	
+	/**
+	 * Helper method that reads line of the form <code>state: next1,cost1 next2,cost2 ...</code>.
+	 * Lines without transitions are ignored, and a later line for the same state replaces the earlier one.
+	 * 
+	 * @param line bytes of the line
+	 * @param from start of the line
+	 * @param to end of the line
+	 */
+	private void readTransitions(byte[] line, int from, int to) {
+		int i = skipSpaces(line, from, to);
+		int end = tokenEnd(line, i, to);
+		int next = skipSpaces(line, end, to);
+		if(end - i < 2 || next == to) return;
+		
+		int state = intern(line, i, end - 1);
+		int first = edgeCount;
+		for(i = next; i < to; i = skipSpaces(line, end, to)) {
+			end = tokenEnd(line, i, to);
+			int comma = i;
+			while(comma < end && line[comma] != ',') comma++;
+			if(comma == end)
+				throw new IllegalArgumentException("Wrong transition: " + new String(line, i, end - i, StandardCharsets.UTF_8));
+			
+			int target = intern(line, i, comma);
+			if(edgeCount == edgeTarget.length) {
+				edgeTarget = Arrays.copyOf(edgeTarget, 2 * edgeCount);
+				edgeCost = Arrays.copyOf(edgeCost, 2 * edgeCount);
+			}
+			edgeTarget[edgeCount] = target;
+			edgeCost[edgeCount++] = parseDouble(line, comma + 1, end);
+		}
+		rowStart[state] = first;
+		rowEnd[state] = edgeCount;
+	}
+	
+	/**
+	 * Helper method that reads line of the form <code>state: value</code>.
+	 * 
+	 * @param line bytes of the line
+	 * @param from start of the line
+	 * @param to end of the line
+	 */
+	private void readHeuristic(byte[] line, int from, int to) {
+		from = skipSpaces(line, from, to);
+		int colon = from;
+		while(colon < to && line[colon] != ':') colon++;
+		if(colon == to)
+			throw new IllegalArgumentException("Wrong heuristic value: " + new String(line, from, to - from, StandardCharsets.UTF_8));
+		
+		int state = intern(line, from, colon);
+		int start = skipSpaces(line, colon + 1, to);
+		int end = to;
+		while(end > start && isSpace(line[end - 1])) end--;
+		heuristic[state] = parseDouble(line, start, end);
+	}
+	
+	/**
+	 * Helper method that builds compact graph from read states and transitions.
+	 * States are sorted by name and transitions of each state by id of the next state.
+	 * 
+	 * @param names of the states indexed by order in which they were read
+	 * @return built graph
+	 */
+	private StateGraph buildGraph(String[] names) {
+		String[] sorted = names.clone();
+		Arrays.sort(sorted);
+		int[] id = new int[count];
+		int[] readOrder = new int[count];
+		for(int i = 0; i < count; i++) {
+			id[i] = Arrays.binarySearch(sorted, names[i]);
+			readOrder[id[i]] = i;
+		}
+		
+		int[] offsets = new int[count + 1];
+		int[] targets = new int[edgeCount];
+		double[] costs = new double[edgeCount];
+		double[] heur = new double[count];
+		long[] keys = new long[16];
+		int e = 0;
+		for(int s = 0; s < count; s++) {
+			int r = readOrder[s];
+			offsets[s] = e;
+			heur[s] = heuristic[r];
+			if(rowStart[r] < 0) continue;
+			
+			int length = rowEnd[r] - rowStart[r];
+			if(keys.length < length) keys = new long[Math.max(length, 2 * keys.length)];
+			for(int j = 0; j < length; j++) {
+				keys[j] = ((long) id[edgeTarget[rowStart[r] + j]] << 32) | j;
+			}
+			Arrays.sort(keys, 0, length);
+			for(int j = 0; j < length; j++) {
+				int target = (int) (keys[j] >>> 32);
+				if(j + 1 < length && (int) (keys[j + 1] >>> 32) == target) continue;
+				targets[e] = target;
+				costs[e++] = edgeCost[rowStart[r] + (int) keys[j]];
+			}
+		}
+		offsets[count] = e;
+		
+		if(e < edgeCount) {
+			targets = Arrays.copyOf(targets, e);
+			costs = Arrays.copyOf(costs, e);
+		}
+		return new StateGraph(sorted, offsets, targets, costs, heur);
+	}
+	
+	/**
+	 * Helper method that returns id of the state with name stored in the given bytes,
+	 * creating new id if the state is read for the first time.
+	 * 
+	 * @param data bytes of the name
+	 * @param from start of the name
+	 * @param to end of the name
+	 * @return id of the state
+	 */
+	private int intern(byte[] data, int from, int to) {
+		int hash = 0;
+		for(int i = from; i < to; i++) {
+			hash = 31 * hash + data[i];
+		}
+		
+		int mask = table.length - 1;
+		int slot = mix(hash) & mask;
+		while(table[slot] != 0) {
+			int id = table[slot] - 1;
+			if(nameHash[id] == hash && Arrays.equals(arena, nameStart[id], nameStart[id] + nameLength[id], data, from, to))
+				return id;
+			slot = (slot + 1) & mask;
+		}
+		
+		int length = to - from;
+		if(arenaSize + length > arena.length) {
+			arena = Arrays.copyOf(arena, Math.max(2 * arena.length, arenaSize + length));
+		}
+		System.arraycopy(data, from, arena, arenaSize, length);
+		if(count == nameStart.length) {
+			int capacity = 2 * count;
+			nameStart = Arrays.copyOf(nameStart, capacity);
+			nameLength = Arrays.copyOf(nameLength, capacity);
+			nameHash = Arrays.copyOf(nameHash, capacity);
+			rowStart = Arrays.copyOf(rowStart, capacity);
+			rowEnd = Arrays.copyOf(rowEnd, capacity);
+			heuristic = Arrays.copyOf(heuristic, capacity);
+			Arrays.fill(rowStart, count, capacity, -1);
+			Arrays.fill(heuristic, count, capacity, Double.NaN);
+		}
+		nameStart[count] = arenaSize;
+		nameLength[count] = length;
+		nameHash[count] = hash;
+		arenaSize += length;
+		table[slot] = ++count;
+		
+		if(2 * count > table.length) {
+			rehash();
+		}
+		return count - 1;
+	}
+	
+	/**
+	 * Helper method that doubles the size of the hash table.
+	 */
+	private void rehash() {
+		table = new int[2 * table.length];
+		int mask = table.length - 1;
+		for(int id = 0; id < count; id++) {
+			int slot = mix(nameHash[id]) & mask;
+			while(table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+	
+	/**
+	 * @param hash of the name
+	 * @return hash with spread bits, used to pick a slot in the hash table
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+	
+	/**
+	 * Parses a number stored in the given bytes. Plain decimal numbers with up to 15 digits are
+	 * parsed directly, giving the same result as {@link Double#parseDouble(String)}, and all other
+	 * numbers are parsed using it.
+	 * 
+	 * @param data bytes of the number
+	 * @param from start of the number
+	 * @param to end of the number
+	 * @return parsed number
+	 */
+	static double parseDouble(byte[] data, int from, int to) {
+		int i = from;
+		boolean negative = false;
+		if(i < to && (data[i] == '-' || data[i] == '+')) {
+			negative = data[i++] == '-';
+		}
+		
+		long mantissa = 0;
+		int digits = 0;
+		int fraction = -1;
+		for(; i < to; i++) {
+			byte b = data[i];
+			if(b >= '0' && b <= '9') {
+				mantissa = 10 * mantissa + (b - '0');
+				digits++;
+				if(fraction >= 0) fraction++;
+			} else if(b == '.' && fraction < 0) {
+				fraction = 0;
+			} else {
+				break;
+			}
+		}
+		
+		if(i < to || digits == 0 || digits > 15) {
+			return Double.parseDouble(new String(data, from, to - from, StandardCharsets.UTF_8));
+		}
+		double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * @param data bytes of the line
+	 * @param from position to start from
+	 * @param to end of the line
+	 * @return position of the first byte which is not whitespace
+	 */
+	private static int skipSpaces(byte[] data, int from, int to) {
+		while(from < to && isSpace(data[from])) from++;
+		return from;
+	}
+	
+	/**
+	 * @param data bytes of the line
+	 * @param from start of the token
+	 * @param to end of the line
+	 * @return position after the last byte of the token
+	 */
+	private static int tokenEnd(byte[] data, int from, int to) {
+		while(from < to && !isSpace(data[from])) from++;
+		return from;
+	}
+	
+	/**
+	 * @param b byte to check
+	 * @return <code>true</code> if byte is whitespace, otherwise <code>false</code>
+	 */
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+	
+	/**
+	 * Class is used to read lines from file through a large buffer. Lines which are blank
+	 * or start with '#' are skipped. Line is available in place, as a range of bytes in {@link #line}.
+	 */
+	private static class LineReader implements AutoCloseable {
+		
+		/** Channel of the file. */
+		private final FileChannel channel;
+		/** Read buffer. */
+		private byte[] buffer = new byte[BUFFER_SIZE];
+		/** Position of the next unread byte in the buffer. */
+		private int position;
+		/** Number of valid bytes in the buffer. */
+		private int limit;
+		/** Flag that marks if the whole file was read. */
+		private boolean eof;
+		/** Number of bytes read from the file. */
+		long bytesRead;
+		
+		/** Bytes holding the current line. */
+		byte[] line;
+		/** Start of the current line. */
+		int start;
+		/** End of the current line, without line terminator. */
+		int end;
+		
+		/**
+		 * Constructor opens the file at given path.
+		 * 
+		 * @param path of the file
+		 * @throws IOException if file can't be opened
+		 */
+		LineReader(Path path) throws IOException {
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+		}
+		
+		/**
+		 * Reads next line which is not blank or a comment.
+		 * 
+		 * @return <code>true</code> if line was read, <code>false</code> at the end of the file
+		 * @throws IOException if reading fails
+		 */
+		boolean nextLine() throws IOException {
+			while(readLine()) {
+				int i = skipSpaces(line, start, end);
+				if(i < end && line[start] != '#') return true;
+			}
+			return false;
+		}
+		
+		/**
+		 * Helper method that reads next line, growing the buffer if line doesn't fit in it.
+		 * 
+		 * @return <code>true</code> if line was read, <code>false</code> at the end of the file
+		 * @throws IOException if reading fails
+		 */
+		private boolean readLine() throws IOException {
+			int scan = position;
+			while(true) {
+				while(scan < limit && buffer[scan] != '\n') scan++;
+				if(scan < limit || eof) break;
+				
+				int offset = scan - position;
+				fill();
+				scan = position + offset;
+			}
+			if(position == limit && eof) return false;
+			
+			line = buffer;
+			start = position;
+			end = scan;
+			if(end > start && buffer[end - 1] == '\r') end--;
+			position = Math.min(scan + 1, limit);
+			return true;
+		}
+		
+		/**
+		 * Helper method that moves unread bytes to the start of the buffer and reads more bytes after them.
+		 * 
+		 * @throws IOException if reading fails
+		 */
+		private void fill() throws IOException {
+			int remaining = limit - position;
+			if(remaining == buffer.length) {
+				buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+			}
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+			position = 0;
+			limit = remaining;
+			
+			ByteBuffer bb = ByteBuffer.wrap(buffer, limit, buffer.length - limit);
+			int n = channel.read(bb);
+			if(n < 0) {
+				eof = true;
+			} else {
+				limit += n;
+				bytesRead += n;
+			}
+		}
+		
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+	
+}
@@ -0,0 +1,316 @@
+package ui;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Class creates reproducible synthetic state spaces used by benchmarks: grids, random geometric
+ * graphs and sliding puzzles.<br>
+ * Same arguments and seed always give the same state space. Graphs are built directly in the
+ * compact form, with state names padded to the same length so that their sorted order is the
+ * order in which they were created. Heuristic of each graph is the distance to the goal state in
+ * the plane, which is both optimistic and consistent. Distances which aren't integers are lowered
+ * by {@link GridMap#HEURISTIC_MARGIN}, so rounding of summed costs doesn't break the checks.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class SyntheticGraph {
+	
+	/** Number of cells per point in the buckets used to find nearest points. */
+	private static final int POINTS_PER_CELL = 2;
+	
+	/**
+	 * Creates square grid with the initial state in one corner and the goal state in the opposite corner.
+	 * 
+	 * @param width number of cells in one row
+	 * @param branching 4 for moves along rows and columns, 8 to also allow diagonal moves
+	 * @param obstacles fraction of blocked cells, which have no transitions
+	 * @param seed of the random generator which places obstacles
+	 * @return new state space
+	 * @throws IllegalArgumentException if width is lower than 2, branching is not 4 or 8,
+	 * or fraction of obstacles is not in range [0, 1)
+	 */
+	public static StateSpace grid(int width, int branching, double obstacles, long seed) {
+		if(width < 2)
+			throw new IllegalArgumentException("Grid width must be at least 2, was " + width + ".");
+		if(branching != 4 && branching != 8)
+			throw new IllegalArgumentException("Grid branching must be 4 or 8, was " + branching + ".");
+		if(obstacles < 0 || obstacles >= 1)
+			throw new IllegalArgumentException("Fraction of obstacles must be in range [0, 1), was " + obstacles + ".");
+		
+		int n = width * width;
+		boolean[] blocked = new boolean[n];
+		Random random = new Random(seed);
+		for(int s = 0; s < n; s++) {
+			blocked[s] = random.nextDouble() < obstacles;
+		}
+		blocked[0] = false;
+		blocked[n - 1] = false;
+		
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[n * branching];
+		double[] costs = new double[n * branching];
+		double[] heuristic = new double[n];
+		double diagonal = Math.sqrt(2);
+		int e = 0;
+		for(int s = 0; s < n; s++) {
+			offsets[s] = e;
+			int x = s % width;
+			int y = s / width;
+			int dx = width - 1 - x;
+			int dy = width - 1 - y;
+			heuristic[s] = branching == 4 ? dx + dy
+					: (Math.abs(dx - dy) + diagonal * Math.min(dx, dy)) * (1 - GridMap.HEURISTIC_MARGIN);
+			if(blocked[s]) continue;
+			for(int ny = y - 1; ny <= y + 1; ny++) {
+				for(int nx = x - 1; nx <= x + 1; nx++) {
+					if(nx < 0 || ny < 0 || nx >= width || ny >= width || (nx == x && ny == y)) continue;
+					boolean straight = nx == x || ny == y;
+					if(!straight && branching == 4) continue;
+					int t = ny * width + nx;
+					if(blocked[t]) continue;
+					targets[e] = t;
+					costs[e++] = straight ? 1 : diagonal;
+				}
+			}
+		}
+		offsets[n] = e;
+		
+		StateGraph graph = new StateGraph(names(n), offsets, Arrays.copyOf(targets, e), Arrays.copyOf(costs, e), heuristic);
+		return StateSpace.query(graph.name(0), Set.of(graph.name(n - 1)), graph, "grid");
+	}
+	
+	/**
+	 * Creates random geometric graph of points in the unit square. Each point is connected in both
+	 * directions to its nearest points, and cost of each transition is the distance between the points.
+	 * Initial state is the point closest to the origin, and the goal state is the point closest to
+	 * the opposite corner.
+	 * 
+	 * @param n number of points
+	 * @param branching number of nearest points each point is connected to
+	 * @param seed of the random generator which places points
+	 * @return new state space
+	 * @throws IllegalArgumentException if there are fewer than 2 points, or branching is not in range [1, n)
+	 */
+	public static StateSpace geometric(int n, int branching, long seed) {
+		if(n < 2)
+			throw new IllegalArgumentException("Graph must have at least 2 points, had " + n + ".");
+		if(branching < 1 || branching >= n)
+			throw new IllegalArgumentException("Branching must be in range [1, " + n + "), was " + branching + ".");
+		
+		Random random = new Random(seed);
+		double[] px = new double[n];
+		double[] py = new double[n];
+		for(int s = 0; s < n; s++) {
+			px[s] = random.nextDouble();
+			py[s] = random.nextDouble();
+		}
+		
+		int cells = Math.max(1, (int) Math.sqrt((double) n / POINTS_PER_CELL));
+		int[] cellStart = new int[cells * cells + 1];
+		for(int s = 0; s < n; s++) {
+			cellStart[cell(px[s], py[s], cells) + 1]++;
+		}
+		for(int c = 0; c < cells * cells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int[] cellPoints = new int[n];
+		int[] fill = Arrays.copyOf(cellStart, cells * cells);
+		for(int s = 0; s < n; s++) {
+			cellPoints[fill[cell(px[s], py[s], cells)]++] = s;
+		}
+		
+		int[] degree = new int[n];
+		int[] nearest = new int[n * branching];
+		int[] found = new int[branching];
+		double[] distances = new double[branching];
+		for(int s = 0; s < n; s++) {
+			nearest(s, px, py, cells, cellStart, cellPoints, found, distances);
+			for(int i = 0; i < branching; i++) {
+				nearest[s * branching + i] = found[i];
+				degree[s]++;
+				degree[found[i]]++;
+			}
+		}
+		
+		int[] offsets = new int[n + 1];
+		for(int s = 0; s < n; s++) {
+			offsets[s + 1] = offsets[s] + degree[s];
+		}
+		int[] targets = new int[offsets[n]];
+		int[] end = Arrays.copyOf(offsets, n);
+		for(int s = 0; s < n; s++) {
+			for(int i = 0; i < branching; i++) {
+				int t = nearest[s * branching + i];
+				targets[end[s]++] = t;
+				targets[end[t]++] = s;
+			}
+		}
+		
+		int e = 0;
+		int[] compact = new int[targets.length];
+		int[] compactOffsets = new int[n + 1];
+		for(int s = 0; s < n; s++) {
+			compactOffsets[s] = e;
+			int from = e;
+			int[] succ = Arrays.copyOfRange(targets, offsets[s], offsets[s + 1]);
+			Arrays.sort(succ);
+			for(int i = 0; i < succ.length; i++) {
+				if(e > from && compact[e - 1] == succ[i]) continue;
+				compact[e++] = succ[i];
+			}
+		}
+		compactOffsets[n] = e;
+		
+		int init = closest(px, py, 0, 0);
+		int goal = closest(px, py, 1, 1);
+		double[] costs = new double[e];
+		for(int s = 0; s < n; s++) {
+			for(int i = compactOffsets[s]; i < compactOffsets[s + 1]; i++) {
+				costs[i] = Math.hypot(px[s] - px[compact[i]], py[s] - py[compact[i]]);
+			}
+		}
+		double[] heuristic = new double[n];
+		for(int s = 0; s < n; s++) {
+			heuristic[s] = Math.hypot(px[s] - px[goal], py[s] - py[goal]) * (1 - GridMap.HEURISTIC_MARGIN);
+		}
+		
+		StateGraph graph = new StateGraph(names(n), compactOffsets, Arrays.copyOf(compact, e), costs, heuristic);
+		return StateSpace.query(graph.name(init), Set.of(graph.name(goal)), graph, "euclidean");
+	}
+	
+	/**
+	 * Creates sliding puzzle by a random walk from the goal tiles, never undoing the previous move.
+	 * 
+	 * @param size number of tiles in one row, from 2 to 4
+	 * @param steps number of moves made from the goal tiles
+	 * @param seed of the random generator which chooses moves
+	 * @return new puzzle
+	 * @throws IllegalArgumentException if size is not in range [2, 4] or number of steps is negative
+	 */
+	public static SlidingPuzzle puzzle(int size, int steps, long seed) {
+		if(size < 2 || size > 4)
+			throw new IllegalArgumentException("Puzzle size must be in range [2, 4], was " + size + ".");
+		if(steps < 0)
+			throw new IllegalArgumentException("Number of steps must not be negative, was " + steps + ".");
+		
+		int[] tiles = new int[size * size];
+		for(int i = 0; i < tiles.length; i++) {
+			tiles[i] = (i + 1) % tiles.length;
+		}
+		int blank = tiles.length - 1;
+		int previous = -1;
+		int[] moves = new int[4];
+		Random random = new Random(seed);
+		for(int step = 0; step < steps; step++) {
+			int count = 0;
+			int x = blank % size;
+			int y = blank / size;
+			if(x > 0) moves[count++] = blank - 1;
+			if(x < size - 1) moves[count++] = blank + 1;
+			if(y > 0) moves[count++] = blank - size;
+			if(y < size - 1) moves[count++] = blank + size;
+			int next;
+			do {
+				next = moves[random.nextInt(count)];
+			} while(next == previous && count > 1);
+			tiles[blank] = tiles[next];
+			tiles[next] = 0;
+			previous = blank;
+			blank = next;
+		}
+		return new SlidingPuzzle(tiles);
+	}
+	
+	/**
+	 * Helper method that creates state names which sort in the order of their ids.
+	 * 
+	 * @param n number of states
+	 * @return names of states
+	 */
+	private static String[] names(int n) {
+		int digits = Integer.toString(n - 1).length();
+		String format = "s%0" + digits + "d";
+		String[] names = new String[n];
+		for(int s = 0; s < n; s++) {
+			names[s] = String.format(format, s);
+		}
+		return names;
+	}
+	
+	/**
+	 * @param x coordinate of the point
+	 * @param y coordinate of the point
+	 * @param cells number of cells in one row
+	 * @return index of the cell which contains the point
+	 */
+	private static int cell(double x, double y, int cells) {
+		int cx = Math.min(cells - 1, (int) (x * cells));
+		int cy = Math.min(cells - 1, (int) (y * cells));
+		return cy * cells + cx;
+	}
+	
+	/**
+	 * Helper method that finds nearest points to the point, searching rings of cells around its
+	 * cell until no closer point can be found.
+	 * 
+	 * @param s index of the point
+	 * @param px x coordinates of points
+	 * @param py y coordinates of points
+	 * @param cells number of cells in one row
+	 * @param cellStart index of the first point of each cell in the cell points
+	 * @param cellPoints points sorted by cells
+	 * @param found array which gets nearest points, closest first
+	 * @param distances array which gets distances to nearest points
+	 */
+	private static void nearest(int s, double[] px, double[] py, int cells, int[] cellStart, int[] cellPoints,
+			int[] found, double[] distances) {
+		int k = found.length;
+		int count = 0;
+		int cx = Math.min(cells - 1, (int) (px[s] * cells));
+		int cy = Math.min(cells - 1, (int) (py[s] * cells));
+		for(int ring = 0; ring < cells; ring++) {
+			if(count == k && distances[k - 1] <= (ring - 1) / (double) cells) break;
+			for(int y = cy - ring; y <= cy + ring; y++) {
+				if(y < 0 || y >= cells) continue;
+				for(int x = cx - ring; x <= cx + ring; x++) {
+					if(x < 0 || x >= cells) continue;
+					if(Math.abs(x - cx) != ring && Math.abs(y - cy) != ring) continue;
+					int c = y * cells + x;
+					for(int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+						int t = cellPoints[i];
+						if(t == s) continue;
+						double d = Math.hypot(px[s] - px[t], py[s] - py[t]);
+						if(count == k && d >= distances[k - 1]) continue;
+						int j = count < k ? count++ : k - 1;
+						while(j > 0 && (distances[j - 1] > d || distances[j - 1] == d && found[j - 1] > t)) {
+							distances[j] = distances[j - 1];
+							found[j] = found[j - 1];
+							j--;
+						}
+						distances[j] = d;
+						found[j] = t;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param px x coordinates of points
+	 * @param py y coordinates of points
+	 * @param x coordinate of the target
+	 * @param y coordinate of the target
+	 * @return index of the point closest to the target
+	 */
+	private static int closest(double[] px, double[] py, double x, double y) {
+		int best = 0;
+		for(int s = 1; s < px.length; s++) {
+			if(Math.hypot(px[s] - x, py[s] - y) < Math.hypot(px[best] - x, py[best] - y)) best = s;
+		}
+		return best;
+	}
+	
+}
@@ -0,0 +1,79 @@
+package ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests SMA* with node budgets which are only a little larger than the cheapest path.
+ * 
+ * @author Ana Bagić
+ *
+ */
+public class MemoryBoundedSearchTest {
+	
+	/**
+	 * Graph with 34 states on which SMA* used to forget backed-up values with small budgets and
+	 * expanded the same nodes forever.
+	 */
+	@Test
+	public void smallBudgetFindsCheapestPath() {
+		StateSpace ss = SyntheticGraph.geometric(34, 3, 30);
+		StateGraph graph = ss.getGraph();
+		int init = graph.indexOf(ss.getInitState());
+		boolean[] goal = graph.flags(ss.getGoalStates());
+		Node cheapest = new Search(ss, Algorithm.UCS).runAlgorithm();
+		int length = pathLength(cheapest);
+		
+		for(int budget : new int[] {length, length + 1, 16, 2 * length}) {
+			MemoryBoundedSearch search = new MemoryBoundedSearch(graph);
+			int[] path = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> search.smaStar(init, goal, budget));
+			assertNotNull(path, "No path with budget " + budget);
+			assertEquals(cheapest.getPrice(), cost(graph, path), 1e-9, "Budget " + budget);
+		}
+	}
+	
+	/**
+	 * Path that doesn't fit in the budget is not found.
+	 */
+	@Test
+	public void pathLongerThanBudgetIsNotFound() {
+		StateSpace ss = SyntheticGraph.geometric(34, 3, 30);
+		StateGraph graph = ss.getGraph();
+		int length = pathLength(new Search(ss, Algorithm.UCS).runAlgorithm());
+		
+		MemoryBoundedSearch search = new MemoryBoundedSearch(graph);
+		int init = graph.indexOf(ss.getInitState());
+		boolean[] goal = graph.flags(ss.getGoalStates());
+		assertNull(assertTimeoutPreemptively(Duration.ofSeconds(10), () -> search.smaStar(init, goal, length - 1)));
+	}
+	
+	/**
+	 * @param n last node of the path
+	 * @return number of states on the path
+	 */
+	private static int pathLength(Node n) {
+		int length = 0;
+		for(; n != null; n = n.getParent()) length++;
+		return length;
+	}
+	
+	/**
+	 * @param graph of the path
+	 * @param path ids of states on the path
+	 * @return cost of the path
+	 */
+	private static double cost(StateGraph graph, int[] path) {
+		double cost = 0.0;
+		for(int i = 1; i < path.length; i++) {
+			cost += graph.succCost(graph.findEdge(path[i - 1], path[i]));
+		}
+		return cost;
+	}
+	
+}